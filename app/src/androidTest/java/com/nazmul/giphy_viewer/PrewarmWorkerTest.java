@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer;
+
+import android.app.Application;
+import android.content.Context;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.SavedStateHandle;
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+import androidx.work.Configuration;
+import androidx.work.ListenableWorker;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.WorkerFactory;
+import androidx.work.WorkerParameters;
+import androidx.work.testing.SynchronousExecutor;
+import androidx.work.testing.WorkManagerTestInitHelper;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.nazmul.giphy_viewer.core.FeedSnapshot;
+import com.nazmul.giphy_viewer.core.GiphyClient;
+import com.nazmul.giphy_viewer.core.MediaItem;
+import com.nazmul.giphy_viewer.core.MockGiphyTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the {@link PrewarmWorker} through WorkManager's test driver, against a {@link GiphyClient}
+ * that's backed by a {@link MockGiphyTransport} instead of the network.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PrewarmWorkerTest {
+
+private Context      context;
+private GiphyClient  giphyClient;
+private List<String> fetchedUrls;
+private File         prewarmedFeedFile;
+private boolean      fetchedWhilePipelinePaused;
+
+@Before
+public void setUp() {
+  context = InstrumentationRegistry.getTargetContext();
+  giphyClient = new GiphyClient(
+      MockGiphyTransport.Builder.builder().latencyMs(0).jitterMs(0).build(), Runnable::run);
+  fetchedUrls = new ArrayList<>();
+  prewarmedFeedFile = new File(context.getCacheDir(), PrewarmWorker.PREWARMED_FEED_FILE);
+  prewarmedFeedFile.delete();
+
+  Configuration configuration =
+      new Configuration.Builder()
+          .setMinimumLoggingLevel(Log.DEBUG)
+          .setExecutor(new SynchronousExecutor())
+          .setWorkerFactory(new WorkerFactory() {
+            @Override
+            public ListenableWorker createWorker(
+                @NonNull Context appContext,
+                @NonNull String workerClassName,
+                @NonNull WorkerParameters workerParameters) {
+              return new PrewarmWorker(
+                  appContext,
+                  workerParameters,
+                  giphyClient,
+                  new PrewarmWorker.ThumbnailFetcher() {
+                    @Override
+                    public void fetch(@NonNull MediaItem.Rendition rendition) {
+                      // A paused pipeline would hold up the real fetcher until the job timed out.
+                      if (Fresco.getImagePipeline().isPaused()) fetchedWhilePipelinePaused = true;
+                      fetchedUrls.add(rendition.getUrl());
+                    }
+
+                    @Override
+                    public void cancel() {
+                    }
+                  });
+            }
+          })
+          .build();
+  WorkManagerTestInitHelper.initializeTestWorkManager(context, configuration);
+}
+
+@After
+public void tearDown() {
+  giphyClient.shutdown();
+  prewarmedFeedFile.delete();
+}
+
+@Test
+public void constraintsMet_savesTrendingAndFetchesThumbnailsWithinBudget() throws Exception {
+  PrewarmWorker.schedule();
+  UUID id = getWorkInfo().getId();
+
+  WorkManagerTestInitHelper.getTestDriver().setAllConstraintsMet(id);
+
+  FeedSnapshot snapshot = FeedSnapshot.load(prewarmedFeedFile);
+  assertNotNull(snapshot);
+  assertTrue(snapshot.getMode().isTrendingMode());
+  assertEquals(100, snapshot.getItems().size());
+  // The mock's thumbnails are 80kB each, so all of them fit in the budget.
+  assertEquals(100, fetchedUrls.size());
+  assertEquals(snapshot.getItems().get(0).getGrid().getUrl(), fetchedUrls.get(0));
+  // It's periodic, so it's scheduled to run again.
+  assertEquals(WorkInfo.State.ENQUEUED, getWorkInfo().getState());
+}
+
+@Test
+public void constraintsNotMet_doesNothing() throws Exception {
+  PrewarmWorker.schedule();
+
+  assertEquals(WorkInfo.State.ENQUEUED, getWorkInfo().getState());
+  assertFalse(prewarmedFeedFile.exists());
+  assertTrue(fetchedUrls.isEmpty());
+}
+
+@Test
+public void appInBackground_doesNotPauseTheImagePipelineThatTheJobUses() throws Exception {
+  // The app's process is alive, and it's gone to the background, when the job runs.
+  AppViewModel[] appViewModel = new AppViewModel[1];
+  InstrumentationRegistry.getInstrumentation().runOnMainSync(
+      () -> {
+        appViewModel[0] = new AppViewModel(
+            (Application) context.getApplicationContext(), new SavedStateHandle());
+        appViewModel[0].getWorkController().pause();
+      });
+  try {
+    PrewarmWorker.schedule();
+    WorkManagerTestInitHelper.getTestDriver().setAllConstraintsMet(getWorkInfo().getId());
+
+    assertEquals(100, fetchedUrls.size());
+    assertFalse(fetchedWhilePipelinePaused);
+  } finally {
+    InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> appViewModel[0].onCleared());
+  }
+}
+
+private WorkInfo getWorkInfo() throws Exception {
+  List<WorkInfo> workInfos =
+      WorkManager.getInstance().getWorkInfosForUniqueWork(PrewarmWorker.UNIQUE_WORK_NAME).get();
+  assertEquals(1, workInfos.size());
+  return workInfos.get(0);
+}
+}
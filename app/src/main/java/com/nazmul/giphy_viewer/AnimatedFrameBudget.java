@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.drawable.Animatable;
+import android.view.View;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+import com.facebook.fresco.animation.drawable.AnimatedDrawable2;
+import com.facebook.imagepipeline.image.ImageInfo;
+import com.nazmul.giphy_viewer.core.FrameBudget;
+import com.nazmul.giphy_viewer.core.Metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Plays the animations in the grid within one byte budget for all of their cached frames, using a
+ * {@link FrameBudget}.
+ *
+ * <ol>
+ * <li>Animations aren't auto played. Each cell's animation is put in the budget once its image is
+ * set, and only the ones that are admitted are started.
+ * <li>An animation is evicted when cells nearer the middle of the viewport need its share of the
+ * budget. It's stopped, and its frame caches are dropped, so it shows its current frame, which is
+ * decoded again if it has to be redrawn.
+ * <li>Frames are rendered at the size of the cell (see {@link GiphyViewerApplication}), so an
+ * animation's share is the size of the cell times its number of frames.
+ * <li>While the app is in the background, every animation is evicted, see {@link #pause()}.
+ * <li>Only use this on the main thread.
+ * </ol>
+ */
+final class AnimatedFrameBudget implements FrameBudget.Callback<View> {
+
+public static final String METRIC_ADMITTED_BYTES = "anim.admitted_bytes";
+public static final String METRIC_EVICTIONS      = "anim.evictions";
+
+/**
+ * The budget is this fraction of the app's heap (its memory class).
+ */
+public static final int HEAP_FRACTION   = 8;
+public static final int BYTES_PER_PIXEL = 4;
+
+private final FrameBudget<View>            budget;
+private final Map<View, AnimatedDrawable2> animations = new HashMap<>();
+private final Metrics.Counter              evictions;
+private       boolean                      paused;
+
+static long getBudgetBytes(@NonNull Context context) {
+  ActivityManager activityManager =
+      (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+  return activityManager.getMemoryClass() * 1024L * 1024L / HEAP_FRACTION;
+}
+
+AnimatedFrameBudget(long budgetBytes, @NonNull Metrics metrics) {
+  budget = new FrameBudget<>(budgetBytes, this);
+  evictions = metrics.counter(METRIC_EVICTIONS);
+  metrics.gauge(METRIC_ADMITTED_BYTES, budget::getAdmittedBytes);
+}
+
+/**
+ * @param view A cell of the RecyclerView, whose image has just been set.
+ */
+void onImageSet(
+    @NonNull RecyclerView parent,
+    @NonNull View view,
+    @Nullable ImageInfo imageInfo,
+    @Nullable Animatable animatable) {
+  remove(view);
+  if (!(animatable instanceof AnimatedDrawable2)) return;
+  AnimatedDrawable2 animation = (AnimatedDrawable2) animatable;
+  long frameBytes = view.getWidth() > 0
+                    ? (long) view.getWidth() * view.getHeight()
+                    : imageInfo == null ? 0 : (long) imageInfo.getWidth() * imageInfo.getHeight();
+  long bytes = frameBytes * BYTES_PER_PIXEL * Math.max(1, animation.getFrameCount());
+  animations.put(view, animation);
+  budget.put(view, bytes, getDistance(parent, view));
+  if (!paused) budget.rebalance();
+}
+
+/**
+ * Forgets the animation in this cell (eg: when it's recycled, or bound to another item).
+ */
+void remove(@NonNull View view) {
+  budget.remove(view);
+  animations.remove(view);
+}
+
+void onScrolled(@NonNull RecyclerView parent) {
+  if (paused || animations.isEmpty()) return;
+  for (View view : animations.keySet()) {
+    budget.setDistance(view, getDistance(parent, view));
+  }
+  budget.rebalance();
+}
+
+/**
+ * Stops every animation and drops its frames, until {@link #resume(RecyclerView)}.
+ */
+void pause() {
+  paused = true;
+  budget.evictAll();
+}
+
+void resume(@NonNull RecyclerView parent) {
+  paused = false;
+  onScrolled(parent);
+}
+
+private static long getDistance(@NonNull RecyclerView parent, @NonNull View view) {
+  return Math.abs((view.getTop() + view.getBottom()) / 2 - parent.getHeight() / 2);
+}
+
+// FrameBudget.Callback.
+
+@Override
+public void onAdmitted(@NonNull View view) {
+  AnimatedDrawable2 animation = animations.get(view);
+  if (animation != null) animation.start();
+}
+
+@Override
+public void onEvicted(@NonNull View view) {
+  AnimatedDrawable2 animation = animations.get(view);
+  if (animation == null) return;
+  animation.stop();
+  animation.dropCaches();
+  evictions.increment();
+}
+}
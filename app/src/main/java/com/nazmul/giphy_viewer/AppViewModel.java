@@ -17,19 +17,45 @@
 package com.nazmul.giphy_viewer;
 
 import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import com.facebook.drawee.backends.pipeline.Fresco;
-import com.giphy.sdk.core.models.Media;
-
+import androidx.lifecycle.OnLifecycleEvent;
+import androidx.lifecycle.ProcessLifecycleOwner;
+import androidx.lifecycle.SavedStateHandle;
+import com.nazmul.giphy_viewer.core.AppMode;
+import com.nazmul.giphy_viewer.core.DataEvent;
+import com.nazmul.giphy_viewer.core.FavoritesStore;
+import com.nazmul.giphy_viewer.core.FeedEngine;
+import com.nazmul.giphy_viewer.core.FeedSnapshot;
+import com.nazmul.giphy_viewer.core.GiphyClient;
+import com.nazmul.giphy_viewer.core.Hedging;
+import com.nazmul.giphy_viewer.core.MediaIndex;
+import com.nazmul.giphy_viewer.core.MediaItem;
+import com.nazmul.giphy_viewer.core.Metrics;
+import com.nazmul.giphy_viewer.core.NetworkQualityEstimator;
+import com.nazmul.giphy_viewer.core.RateLimiter;
+import com.nazmul.giphy_viewer.core.Tracer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Creates and manages data that survives past multiple {@link MainActivity} creation and
@@ -40,24 +66,93 @@ import java.util.Objects;
  * <p>This class should not contain any references to Views.
  * <li>When the {@link MainActivity} is destroyed by the user leaving the app (by pressing back,
  * not home), this ViewModel is cleaned up and destroyed.
+ * <li>When the process is killed in the background, this ViewModel is recreated with the {@link
+ * SavedStateHandle} that the last one wrote to, and the feed is restored from it and from the
+ * snapshot that was written to disk.
+ * <li>The paging, caching and request logic lives in the {@link FeedEngine} (in the
+ * <code>:core</code> module, which has no Android dependencies). This class wires it to the main
+ * thread, the disk and Fresco, and turns its callbacks into LiveData.
  * </ol>
  */
 public final class AppViewModel extends AndroidViewModel {
 
 public static final String TAG = "logtag";
 
-private final GiphyClient giphyClient = new GiphyClient();
+private final Tracer      tracer      =
+    new Tracer(BuildConfig.DEBUG ? Tracer.Level.Info : Tracer.Level.Off);
+private final Handler     handler     = new Handler(Looper.getMainLooper());
+private final RateLimiter rateLimiter =
+    new RateLimiter(FeedEngine.RATE_LIMIT_BURST,
+                    FeedEngine.RATE_LIMIT_REFILL_MS,
+                    System::currentTimeMillis);
+
+private final FeedEngine.Scheduler scheduler = new FeedEngine.Scheduler() {
+  @Override
+  public void postDelayed(@NonNull Runnable runnable, long delayMs) {
+    handler.postDelayed(runnable, delayMs);
+  }
 
-private final MutableLiveData<AppMode> appModeLiveData = new MutableLiveData<>();
+  @Override
+  public void cancel(@NonNull Runnable runnable) {
+    handler.removeCallbacks(runnable);
+  }
+};
+
+private final MutableLiveData<AppMode>   appModeLiveData   = new MutableLiveData<>();
+private final MutableLiveData<DataEvent> dataEventLiveData = new MutableLiveData<>();
+
+private final Metrics                 metrics;
+private final NetworkQualityEstimator networkQuality;
+private final GiphyClient             giphyClient;
+private final FeedEngine              feedEngine;
+private final SavedStateHandle        savedState;
 
 /**
  * ViewModel.ON_CREATE
  */
-public AppViewModel(@NonNull Application application) {
+public AppViewModel(@NonNull Application application, @NonNull SavedStateHandle savedState) {
   super(application);
-  Fresco.initialize(application);
-  appModeLiveData.setValue(AppMode.Builder.builder().mode(AppMode.Mode.Trending).build());
-  Log.d(TAG, "AppViewModel: create giphyClient, init Fresco, set appMode");
+  this.savedState = savedState;
+  // Fresco is initialized by the GiphyViewerApplication, with the same Metrics and transport.
+  GiphyViewerApplication app = GiphyViewerApplication.get(application);
+  metrics = app.getMetrics();
+  networkQuality = app.getNetworkQualityEstimator();
+  giphyClient = new GiphyClient(app.getTransport(), handler::post);
+  giphyClient.setMetrics(metrics);
+  giphyClient.setTracer(tracer);
+  giphyClient.setHedging(Hedging.Builder.builder()
+                                        .scheduler(scheduler)
+                                        .rateLimiter(rateLimiter)
+                                        .build());
+  setupMediaIndex(application);
+  setupFavorites(application);
+  feedEngine = FeedEngine.Builder.builder()
+                                 .giphyApi(giphyClient)
+                                 .mediaIndex(mediaIndex)
+                                 .favoritesStore(favoritesStore)
+                                 .metrics(metrics)
+                                 .tracer(tracer)
+                                 .scheduler(scheduler)
+                                 .rateLimiter(rateLimiter)
+                                 .listener(new FeedEngine.Listener() {
+                                   @Override
+                                   public void onAppModeChanged(@NonNull AppMode appMode) {
+                                     appModeLiveData.setValue(appMode);
+                                     saveInstanceState();
+                                   }
+
+                                   @Override
+                                   public void onDataEvent(@NonNull DataEvent dataEvent) {
+                                     dataEventLiveData.setValue(dataEvent);
+                                     saveInstanceState();
+                                   }
+                                 })
+                                 .build();
+  appModeLiveData.setValue(feedEngine.getAppMode());
+  setupFeedSnapshot(application);
+  setupWorkController();
+  PrewarmWorker.schedule();
+  Log.d(TAG, "AppViewModel: create giphyClient and feedEngine, set appMode");
 }
 
 /**
@@ -66,8 +161,59 @@ public AppViewModel(@NonNull Application application) {
 @Override
 protected void onCleared() {
   super.onCleared();
-  Log.d(TAG, "AppViewModel: shutdown Fresco");
-  Fresco.shutDown();
+  Log.d(TAG, "AppViewModel: shutdown feedEngine");
+  cleared = true;
+  ProcessLifecycleOwner.get().getLifecycle().removeObserver(processLifecycleObserver);
+  ProcessLifecycleOwner.get().getLifecycle().removeObserver(workController);
+  // The feed engine cancels its requests. The transport is shared, so it isn't shut down.
+  feedEngine.shutdown();
+  giphyClient.setPageObserver(null);
+  saveMediaIndex();
+  ioExecutor.shutdown();
+}
+
+// Network quality.
+
+/**
+ * Samples come from API responses and image fetches (see {@link GiphyViewerApplication}). It's
+ * read when a decision is made, eg: how many pages to load at once, see {@link
+ * RecyclerViewManager}.
+ */
+@NonNull
+public NetworkQualityEstimator.Tier getNetworkTier() {
+  return networkQuality.getTier();
+}
+
+// Pausing work in the background.
+
+private final WorkController workController = new WorkController();
+
+/**
+ * The feed engine cancels its requests (and makes them again on resume). The list and the full
+ * screen pager add themselves, and stop their own image work (see {@link RecyclerViewManager} and
+ * {@link FullScreenFragment}).
+ *
+ * <p>Fresco's pipeline itself is never paused, since it's shared with the {@link PrewarmWorker},
+ * which runs while the app is in the background, and would wait on it until it timed out.
+ */
+private void setupWorkController() {
+  workController.add(new WorkController.Participant() {
+    @Override
+    public void pause() {
+      feedEngine.pause();
+    }
+
+    @Override
+    public void resume() {
+      feedEngine.resume();
+    }
+  });
+  ProcessLifecycleOwner.get().getLifecycle().addObserver(workController);
+}
+
+@NonNull
+WorkController getWorkController() {
+  return workController;
 }
 
 // Manage AppMode.
@@ -76,169 +222,419 @@ public LiveData<AppMode> getAppModeLiveData() {
   return appModeLiveData;
 }
 
+/**
+ * @see FeedEngine#setTrendingMode()
+ */
 public void setTrendingMode() {
-  appModeLiveData.setValue(AppMode.Builder.builder().mode(AppMode.Mode.Trending).build());
+  feedEngine.setTrendingMode();
 }
 
+/**
+ * @see FeedEngine#setSearchMode(String)
+ */
 public void setSearchMode(String query) {
-  appModeLiveData.setValue(
-      AppMode.Builder.builder().mode(AppMode.Mode.Search).query(query).build());
+  feedEngine.setSearchMode(query);
 }
 
-// Current scrolled position of the RecyclerView.
+/**
+ * @see FeedEngine#setFavoritesMode()
+ */
+public void setFavoritesMode() {
+  feedEngine.setFavoritesMode();
+}
+
+public boolean isFavoritesMode() {
+  return feedEngine.getAppMode().isFavoritesMode();
+}
 
-private int position = 0;
+// Favorites.
 
-public int getPosition() {
-  return position;
+public static final String FAVORITES_FILE = "favorites.bin";
+
+private final FavoritesStore favoritesStore = new FavoritesStore();
+private       File           favoritesFile;
+
+/**
+ * The favorites are loaded in the background, on the same executor that loads the feed snapshot,
+ * so they are there by the time a favorites feed is restored.
+ */
+private void setupFavorites(@NonNull Application application) {
+  favoritesFile = new File(application.getFilesDir(), FAVORITES_FILE);
+  ioExecutor.execute(
+      () -> {
+        try {
+          favoritesStore.load(favoritesFile);
+          Log.d(TAG, "setupFavorites: loaded " + favoritesStore.size() + " favorites");
+        } catch (IOException e) {
+          Log.d(TAG, "setupFavorites: could not load favorites: " + e.getMessage());
+        }
+      });
 }
 
-public void setPosition(int position) {
-  this.position = position;
+public boolean isFavorite(@NonNull MediaItem item) {
+  return favoritesStore.contains(item.getId());
 }
 
-// Underlying data storage.
+/**
+ * The item is already in the {@link MediaIndex} (every decoded page is), so showing the favorites
+ * won't need to look it up again until it's evicted from there.
+ *
+ * @return true if the item is now a favorite.
+ */
+public boolean toggleFavorite(@NonNull MediaItem item) {
+  boolean favorite = favoritesStore.toggle(item.getId());
+  feedEngine.onFavoritesChanged();
+  ioExecutor.execute(
+      () -> {
+        try {
+          favoritesStore.save(favoritesFile);
+        } catch (IOException e) {
+          Log.d(TAG, "toggleFavorite: could not save favorites: " + e.getMessage());
+        }
+      });
+  return favorite;
+}
 
-private final ArrayList<Media> underlyingData = new ArrayList<>();
+// Local search index.
 
-public List<Media> getUnderlyingData() {
-  return Collections.unmodifiableList(underlyingData);
-}
+public static final int    MAX_INDEXED_ITEMS        = 5_000;
+public static final int    SAVE_INDEX_AFTER_CHANGES = 250;
+public static final String MEDIA_INDEX_FILE         = "media_index.bin";
 
-// Broadcast underlying data storage changes.
+private final MediaIndex      mediaIndex = new MediaIndex(MAX_INDEXED_ITEMS);
+private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+private       File            mediaIndexFile;
 
-private final MutableLiveData<DataEvent> dataEventLiveData = new MutableLiveData<>();
+/**
+ * The index is loaded from disk in the background, and every page that GiphyClient decodes is
+ * added to it (on the transport thread). It's saved after every few pages, and when this
+ * ViewModel is cleared.
+ */
+private void setupMediaIndex(@NonNull Application application) {
+  mediaIndexFile = new File(application.getFilesDir(), MEDIA_INDEX_FILE);
+  ioExecutor.execute(
+      () -> {
+        try {
+          mediaIndex.load(mediaIndexFile);
+          Log.d(TAG, "setupMediaIndex: loaded " + mediaIndex.size() + " items");
+        } catch (IOException e) {
+          Log.d(TAG, "setupMediaIndex: could not load index: " + e.getMessage());
+        }
+      });
+  giphyClient.setPageObserver(
+      page -> {
+        mediaIndex.addAll(page.getItems(), System.currentTimeMillis());
+        if (mediaIndex.getUnsavedChanges() >= SAVE_INDEX_AFTER_CHANGES) saveMediaIndex();
+      });
+}
 
-public LiveData<DataEvent> getDataEventLiveData() {
-  return dataEventLiveData;
+private void saveMediaIndex() {
+  ioExecutor.execute(
+      () -> {
+        if (mediaIndex.getUnsavedChanges() == 0) return;
+        try {
+          mediaIndex.save(mediaIndexFile);
+        } catch (IOException e) {
+          Log.d(TAG, "saveMediaIndex: could not save index: " + e.getMessage());
+        }
+      });
 }
 
-// Methods that UI can use to request API calls.
+// Restoring after process death, or from the prewarmed feed.
 
-public void requestRefreshData(@Nullable Runnable runOnRefreshComplete) {
-  AppMode appMode = Objects.requireNonNull(appModeLiveData.getValue());
-  if (appMode.isTrendingMode()) {
-    Log.d(TAG, "requestRefreshData: make trending request");
-    giphyClient.makeTrendingRequest(
-        runOnRefreshComplete,
-        new GiphyClient.GiphyResultsHandler() {
-          @Override
-          public void onResponse(List<Media> mediaList) {
-            Log.d(TAG, "requestRefreshData: got response: " + mediaList.size());
-            resetData(mediaList);
-          }
-
-          @Override
-          public void onError() {
-            errorData();
-          }
-        },
-        null);
-  } else {
-    Log.d(TAG, "requestRefreshData: make search request");
-    giphyClient.makeSearchRequest(
-        appMode.getSearchQuery(),
-        runOnRefreshComplete,
-        new GiphyClient.GiphyResultsHandler() {
-          @Override
-          public void onResponse(List<Media> mediaList) {
-            Log.d(TAG, "requestRefreshData: got response: " + mediaList.size());
-            resetData(mediaList);
-          }
-
-          @Override
-          public void onError() {
-          }
-        },
-        null);
+public static final String FEED_SNAPSHOT_FILE        = "feed_snapshot.bin";
+public static final long   PREWARMED_FEED_MAX_AGE_MS =
+    TimeUnit.HOURS.toMillis(PrewarmWorker.REPEAT_INTERVAL_HOURS);
+
+private static final String KEY_MODE        = "mode";
+private static final String KEY_QUERY       = "query";
+private static final String KEY_NEXT_OFFSET = "next_offset";
+private static final String KEY_POSITION    = "position";
+
+private File    feedSnapshotFile;
+private File    prewarmedFeedFile;
+private boolean restorePending;
+private boolean cleared;
+
+/**
+ * The feed is written to disk when the app goes to the background (which is when it can be
+ * killed), after the activity has saved its scroll position. It's written in the background, from
+ * a copy that's taken on the main thread.
+ */
+private final LifecycleObserver processLifecycleObserver = new LifecycleObserver() {
+  @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
+  void onStop() {
+    saveFeedSnapshot();
   }
+};
+
+/**
+ * The snapshot is read in the background, and the feed is restored from it.
+ *
+ * <ol>
+ * <li>If the SavedStateHandle has a mode in it, this ViewModel is being recreated after process
+ * death, so the snapshot is the one that was saved when the app went to the background.
+ * <li>Otherwise, if the {@link PrewarmWorker} has left a trending feed that's recent enough, it's
+ * shown (once) instead of waiting for the network.
+ * <li>Otherwise the first refresh is made once the read comes back empty (the activity skips it
+ * while {@link #isRestoring()}).
+ * <li>Even checking whether a file exists is disk I/O, so it's all done on the ioExecutor.
+ * </ol>
+ */
+private void setupFeedSnapshot(@NonNull Application application) {
+  feedSnapshotFile = new File(application.getCacheDir(), FEED_SNAPSHOT_FILE);
+  prewarmedFeedFile = new File(application.getCacheDir(), PrewarmWorker.PREWARMED_FEED_FILE);
+  ProcessLifecycleOwner.get().getLifecycle().addObserver(processLifecycleObserver);
+  final boolean afterProcessDeath = savedState.contains(KEY_MODE);
+  final FeedSnapshot saved = afterProcessDeath ? readInstanceState() : null;
+  restorePending = true;
+  ioExecutor.execute(
+      () -> {
+        FeedSnapshot fromDisk = null;
+        try {
+          fromDisk = afterProcessDeath ? FeedSnapshot.load(feedSnapshotFile) : loadPrewarmedFeed();
+        } catch (IOException e) {
+          Log.d(TAG, "setupFeedSnapshot: could not load snapshot: " + e.getMessage());
+        }
+        final FeedSnapshot snapshot = fromDisk;
+        handler.post(
+            () -> {
+              restorePending = false;
+              if (cleared) return;
+              if (saved != null) {
+                feedEngine.restore(saved, snapshot);
+              } else if (snapshot != null) {
+                feedEngine.restore(snapshot, snapshot);
+              } else {
+                // The activity skipped its first refresh, waiting for this.
+                feedEngine.requestRefreshData(null);
+              }
+            });
+      });
 }
 
-public void requestMoreData() {
-  AppMode appMode = Objects.requireNonNull(appModeLiveData.getValue());
-  if (appMode.isTrendingMode()) {
-    Log.d(TAG, "requestMoreData: make trending request: offset= " + underlyingData.size());
-    giphyClient.makeTrendingRequest(
-        null,
-        new GiphyClient.GiphyResultsHandler() {
-          @Override
-          public void onResponse(List<Media> mediaList) {
-            Log.d(TAG, "requestMoreData: got response: " + mediaList.size());
-            updateData(mediaList);
-          }
-
-          @Override
-          public void onError() {
-            errorData();
-          }
-        },
-        underlyingData.size());
-  } else {
-    Log.d(TAG, "requestMoreData: make search request: offset= " + underlyingData.size());
-    giphyClient.makeSearchRequest(
-        appMode.getSearchQuery(),
-        null,
-        new GiphyClient.GiphyResultsHandler() {
-          @Override
-          public void onResponse(List<Media> mediaList) {
-            Log.d(TAG, "requestMoreData: got response: " + mediaList.size());
-            updateData(mediaList);
-          }
-
-          @Override
-          public void onError() {
-          }
-        },
-        underlyingData.size());
-  }
+/**
+ * The prewarmed feed is deleted once it's read, so a launch after this one (if the job hasn't run
+ * again in the meantime) loads trending from the network. It's only shown if it's younger than
+ * the job's interval: an older one means the job hasn't been able to run since (eg: the device
+ * hasn't been charging on wifi), and trending has moved on.
+ *
+ * @return null if there's no prewarmed feed, or it's too old to be worth showing.
+ */
+@Nullable
+private FeedSnapshot loadPrewarmedFeed() throws IOException {
+  if (!prewarmedFeedFile.exists()) return null;
+  FeedSnapshot snapshot = FeedSnapshot.load(prewarmedFeedFile);
+  if (!prewarmedFeedFile.delete()) Log.d(TAG, "loadPrewarmedFeed: could not delete it");
+  if (snapshot == null) return null;
+  long ageMs = System.currentTimeMillis() - snapshot.getRefreshedAtMs();
+  return ageMs < PREWARMED_FEED_MAX_AGE_MS ? snapshot : null;
 }
 
-// Methods that modify the underlyingData & update the RecyclerView.
+/**
+ * @return true while the feed is being restored (after process death, or from the prewarmed
+ * feed). The activity shouldn't make its first refresh in the meantime, since the restored feed is
+ * delivered as a Refresh event.
+ */
+public boolean isRestoring() {
+  return restorePending || feedEngine.isRestoring();
+}
 
-private void updateData(List<Media> newData) {
-  underlyingData.addAll(newData);
-  Log.d(TAG, "updateData: data size: " + underlyingData.size());
-  dataEventLiveData.setValue(
-      DataEvent.Builder.builder()
-                       .type(DataEvent.Type.GetMore)
-                       .newSize(newData.size())
-                       .build());
+/**
+ * Kept current on every change (these are a few small values), since the SavedStateHandle is read
+ * when the activity saves its instance state, which can happen before or after it's stopped.
+ */
+private void saveInstanceState() {
+  AppMode appMode = feedEngine.getAppMode();
+  savedState.set(KEY_MODE, appMode.getMode().name());
+  savedState.set(KEY_QUERY, appMode.getSearchQuery());
+  savedState.set(KEY_NEXT_OFFSET, feedEngine.getNextOffset());
+  savedState.set(KEY_POSITION, feedEngine.getPosition());
 }
 
-private void resetData(List<Media> newData) {
-  underlyingData.clear();
-  underlyingData.addAll(newData);
-  Log.d(TAG, "resetData: data size: " + underlyingData.size());
-  dataEventLiveData.setValue(
-      DataEvent.Builder.builder().type(DataEvent.Type.Refresh).build());
+private FeedSnapshot readInstanceState() {
+  AppMode appMode = AppMode.Builder.builder()
+                                   .mode(AppMode.Mode.valueOf(savedState.get(KEY_MODE)))
+                                   .query(savedState.get(KEY_QUERY))
+                                   .build();
+  Integer nextOffset = savedState.get(KEY_NEXT_OFFSET);
+  Integer position = savedState.get(KEY_POSITION);
+  return new FeedSnapshot(appMode,
+                          nextOffset == null ? 0 : nextOffset,
+                          position == null ? 0 : position,
+                          0,
+                          new ArrayList<>());
 }
 
-private void errorData() {
-  dataEventLiveData.setValue(DataEvent.Builder.builder().type(DataEvent.Type.Error).build());
+private void saveFeedSnapshot() {
+  final FeedSnapshot snapshot = feedEngine.snapshot();
+  if (snapshot == null) return;
+  ioExecutor.execute(
+      () -> {
+        try {
+          snapshot.save(feedSnapshotFile);
+        } catch (IOException e) {
+          Log.d(TAG, "saveFeedSnapshot: could not save snapshot: " + e.getMessage());
+        }
+      });
 }
 
-// Events.
+// Metrics.
 
-public static class UpdateDataEvent {
+public static final String METRICS_FILE_PREFIX = "metrics-";
 
-  public final List<Media> newData;
-  public final List<Media> underlyingData;
+private boolean statsOverlayEnabled;
 
-  public UpdateDataEvent(List<Media> newData, List<Media> underlyingData) {
-    this.newData = newData;
-    this.underlyingData = underlyingData;
-  }
+public Metrics getMetrics() {
+  return metrics;
 }
 
-public static class RefreshDataEvent {
+public boolean isStatsOverlayEnabled() {
+  return statsOverlayEnabled;
+}
 
-  public final List<Media> underlyingData;
+public void setStatsOverlayEnabled(boolean statsOverlayEnabled) {
+  this.statsOverlayEnabled = statsOverlayEnabled;
+}
 
-  public RefreshDataEvent(List<Media> underlyingData) {
-    this.underlyingData = underlyingData;
+/**
+ * Writes a snapshot of the metrics as JSON to a new file in the cache dir. The snapshot is taken
+ * right away (gauges read the feed engine, which lives on the main thread) and the file is written
+ * in the background.
+ *
+ * @return The file that's being written.
+ */
+public File dumpMetrics() {
+  final long now = System.currentTimeMillis();
+  final File file = new File(getApplication().getCacheDir(), METRICS_FILE_PREFIX + now + ".json");
+  final StringWriter snapshot = new StringWriter();
+  try {
+    metrics.writeJson(snapshot, now);
+  } catch (IOException e) {
+    // A StringWriter doesn't throw.
+    throw new IllegalStateException(e);
   }
+  ioExecutor.execute(
+      () -> {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+          writer.write(snapshot.toString());
+        } catch (IOException e) {
+          Log.d(TAG, "dumpMetrics: could not write " + file + ": " + e.getMessage());
+        }
+      });
+  return file;
+}
+
+// Tracing.
+
+public static final String TRACE_FILE_PREFIX = "trace-";
+
+/**
+ * Traces requests and pages being published in debug builds. In release builds it's off (so hot
+ * paths don't build strings or allocate), unless it's turned on with {@link Tracer#setLevel}.
+ */
+public Tracer getTracer() {
+  return tracer;
+}
+
+/**
+ * Writes the events in the trace buffer to a new file in the cache dir, in the Chrome trace
+ * format (open it in ui.perfetto.dev). The file is written in the background.
+ *
+ * @return The file that's being written.
+ */
+public File dumpTrace() {
+  final File file = new File(
+      getApplication().getCacheDir(), TRACE_FILE_PREFIX + System.currentTimeMillis() + ".json");
+  ioExecutor.execute(
+      () -> {
+        try (Writer writer = new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+          tracer.writeChromeTrace(writer);
+        } catch (IOException e) {
+          Log.d(TAG, "dumpTrace: could not write " + file + ": " + e.getMessage());
+        }
+      });
+  return file;
+}
+
+// Search as you type.
+
+/**
+ * @see FeedEngine#onSearchQueryChanged(String)
+ */
+public void onSearchQueryChanged(@NonNull String text) {
+  feedEngine.onSearchQueryChanged(text);
+}
+
+/**
+ * @see FeedEngine#submitSearch(String)
+ */
+public void submitSearch(@NonNull String text) {
+  feedEngine.submitSearch(text);
+}
+
+// Width of a grid cell.
+
+private int gridSpanWidthPx;
+
+/**
+ * The width that the grid's cells were last bound with, so that other screens can make image
+ * requests that match the grid's (see {@link RecyclerViewManager#newGridImageRequest}). 0 until
+ * the grid has been bound.
+ */
+public int getGridSpanWidthPx() {
+  return gridSpanWidthPx;
 }
 
-public static class ErrorDataEvent {
+public void setGridSpanWidthPx(int gridSpanWidthPx) {
+  this.gridSpanWidthPx = gridSpanWidthPx;
+}
+
+// Current scrolled position of the RecyclerView.
+
+public int getPosition() {
+  return feedEngine.getPosition();
+}
+
+public void setPosition(int position) {
+  feedEngine.setPosition(position);
+  saveInstanceState();
+}
+
+// Underlying data storage.
+
+public List<MediaItem> getUnderlyingData() {
+  return feedEngine.getUnderlyingData();
+}
+
+// Broadcast underlying data storage changes.
+
+public LiveData<DataEvent> getDataEventLiveData() {
+  return dataEventLiveData;
+}
+
+// Methods that UI can use to request API calls.
+
+public void requestRefreshData(@Nullable Runnable runOnRefreshComplete) {
+  feedEngine.requestRefreshData(runOnRefreshComplete);
+}
+
+public void requestMoreData() {
+  feedEngine.requestMoreData();
+}
+
+/**
+ * @see FeedEngine#hasMore()
+ */
+public boolean hasMore() {
+  return feedEngine.hasMore();
+}
+
+/**
+ * @see FeedEngine#requestMoreData(int)
+ */
+public void requestMoreData(int pageCount) {
+  feedEngine.requestMoreData(pageCount);
 }
 }
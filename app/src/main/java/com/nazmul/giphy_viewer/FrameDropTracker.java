@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer;
+
+import android.view.Choreographer;
+import androidx.annotation.NonNull;
+import com.nazmul.giphy_viewer.core.Metrics;
+
+/**
+ * Counts frames, and frames that were dropped, while it's running (eg: while the list is being
+ * scrolled). A frame is dropped when the time between two vsync callbacks is longer than one
+ * refresh interval.
+ *
+ * <ol>
+ * <li>Only use this on the main thread.
+ * <li>It posts a Choreographer callback for every frame while it's running, so only run it while
+ * there's something to measure.
+ * </ol>
+ */
+final class FrameDropTracker implements Choreographer.FrameCallback {
+
+public static final String METRIC_FRAMES         = "ui.frames";
+public static final String METRIC_FRAMES_DROPPED = "ui.frames_dropped";
+public static final String METRIC_FRAME_TIME_MS  = "ui.frame_time_ms";
+
+private final Metrics.Counter   frames;
+private final Metrics.Counter   framesDropped;
+private final Metrics.Histogram frameTimeMs;
+private final long              frameIntervalNs;
+private       boolean           running;
+private       long              lastFrameTimeNs;
+
+/**
+ * @param refreshRate The display's refresh rate, in frames per second.
+ */
+FrameDropTracker(@NonNull Metrics metrics, float refreshRate) {
+  frames = metrics.counter(METRIC_FRAMES);
+  framesDropped = metrics.counter(METRIC_FRAMES_DROPPED);
+  frameTimeMs = metrics.histogram(METRIC_FRAME_TIME_MS);
+  frameIntervalNs = (long) (1_000_000_000L / (refreshRate > 0 ? refreshRate : 60));
+}
+
+void start() {
+  if (running) return;
+  running = true;
+  lastFrameTimeNs = 0;
+  Choreographer.getInstance().postFrameCallback(this);
+}
+
+void stop() {
+  if (!running) return;
+  running = false;
+  Choreographer.getInstance().removeFrameCallback(this);
+}
+
+@Override
+public void doFrame(long frameTimeNanos) {
+  if (!running) return;
+  if (lastFrameTimeNs != 0) {
+    long elapsedNs = frameTimeNanos - lastFrameTimeNs;
+    frames.increment();
+    frameTimeMs.record(elapsedNs / 1_000_000);
+    // Round, so that vsync jitter isn't counted as a dropped frame.
+    long dropped = (elapsedNs + frameIntervalNs / 2) / frameIntervalNs - 1;
+    if (dropped > 0) framesDropped.add(dropped);
+  }
+  lastFrameTimeNs = frameTimeNanos;
+  Choreographer.getInstance().postFrameCallback(this);
+}
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer;
+
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.CheckBox;
+import android.widget.Toast;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.DialogFragment;
+import androidx.fragment.app.FragmentActivity;
+import androidx.lifecycle.ViewModelProviders;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.viewpager2.widget.ViewPager2;
+import com.facebook.datasource.DataSource;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.drawee.view.SimpleDraweeView;
+import com.facebook.imagepipeline.core.ImagePipeline;
+import com.facebook.imagepipeline.request.ImageRequest;
+import com.nazmul.giphy_viewer.core.DataEvent;
+import com.nazmul.giphy_viewer.core.MediaItem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Displays animated GIFs full screen, in a pager over the {@link AppViewModel}'s feed that starts
+ * at the item that was tapped in the grid. It's a full screen dialog in the {@link MainActivity}
+ * (rather than an Activity of its own), so that it shares the activity's AppViewModel.
+ *
+ * <ol>
+ * <li>Each page shows the smallest rendition that fills the display (see {@link
+ * MediaItem#getFullScreen(int)}), with the grid rendition (which is already in Fresco's memory
+ * cache) shown while it loads.
+ * <li>When a page is selected, the renditions of the pages on either side of it are decoded into
+ * the memory cache, so swiping to them shows them right away. The ones two pages away are evicted
+ * from it (they are still on disk), since their views have been detached and Fresco has released
+ * them. These prefetches are cancelled while the app is in the background, and made again when
+ * it comes back (see {@link WorkController}).
+ * <li>Getting within {@link RecyclerViewManager#TRIGGER_LOADING_THRESHOLD} pages of the end loads
+ * more data, just like the grid does.
+ * <li>The star in the corner adds the page that's shown to the favorites, or removes it.
+ * </ol>
+ */
+public final class FullScreenFragment extends DialogFragment {
+
+public static final String TAG_FULL_SCREEN = "full_screen";
+public static final String POSITION        = "position";
+public static final String URL             = "url";
+
+public static void show(@NonNull FragmentActivity activity, int position) {
+  FullScreenFragment fragment = new FullScreenFragment();
+  Bundle arguments = new Bundle();
+  arguments.putInt(POSITION, position);
+  fragment.setArguments(arguments);
+  fragment.show(activity.getSupportFragmentManager(), TAG_FULL_SCREEN);
+}
+
+private AppViewModel appViewModel;
+private ViewPager2   viewPager;
+private PageAdapter  pageAdapter;
+private CheckBox     favoriteView;
+private int          displayWidth;
+
+/**
+ * The page to show once the feed has that many items (eg: after it's restored following process
+ * death), or {@link RecyclerView#NO_POSITION}.
+ */
+private int pendingPosition = RecyclerView.NO_POSITION;
+
+@Override
+public void onCreate(@Nullable Bundle savedInstanceState) {
+  super.onCreate(savedInstanceState);
+  setStyle(STYLE_NO_FRAME, android.R.style.Theme_Black_NoTitleBar_Fullscreen);
+}
+
+@Nullable
+@Override
+public View onCreateView(
+    @NonNull LayoutInflater inflater,
+    @Nullable ViewGroup container,
+    @Nullable Bundle savedInstanceState) {
+  return inflater.inflate(R.layout.fullscreen_pager, container, false);
+}
+
+@Override
+public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+  super.onViewCreated(view, savedInstanceState);
+  appViewModel = ViewModelProviders.of(requireActivity()).get(AppViewModel.class);
+  displayWidth = getResources().getDisplayMetrics().widthPixels;
+  viewPager = view.findViewById(R.id.fullscreen_pager);
+  pageAdapter = new PageAdapter();
+  viewPager.setAdapter(pageAdapter);
+  favoriteView = view.findViewById(R.id.fullscreen_favorite);
+  favoriteView.setOnClickListener(v -> toggleFavorite());
+  viewPager.registerOnPageChangeCallback(
+      new ViewPager2.OnPageChangeCallback() {
+        @Override
+        public void onPageSelected(int position) {
+          onPageShown(position);
+        }
+      });
+  appViewModel.getDataEventLiveData().observe(getViewLifecycleOwner(), this::onDataEvent);
+  appViewModel.getWorkController().add(workParticipant);
+
+  Bundle state = savedInstanceState != null ? savedInstanceState : getArguments();
+  showPosition(state == null ? 0 : state.getInt(POSITION));
+  if (savedInstanceState == null && pendingPosition == RecyclerView.NO_POSITION) {
+    copyUrlToClipboard(getData().get(viewPager.getCurrentItem()).getOriginal().getUrl());
+  }
+}
+
+@Override
+public void onDestroyView() {
+  super.onDestroyView();
+  appViewModel.getWorkController().remove(workParticipant);
+  cancelPrefetches();
+}
+
+@Override
+public void onSaveInstanceState(@NonNull Bundle outState) {
+  super.onSaveInstanceState(outState);
+  outState.putInt(
+      POSITION,
+      pendingPosition != RecyclerView.NO_POSITION ? pendingPosition : viewPager.getCurrentItem());
+}
+
+private List<MediaItem> getData() {
+  return appViewModel.getUnderlyingData();
+}
+
+private void showPosition(int position) {
+  if (position < pageAdapter.getItemCount()) {
+    pendingPosition = RecyclerView.NO_POSITION;
+    viewPager.setCurrentItem(position, false);
+  } else {
+    pendingPosition = position;
+  }
+}
+
+// Preloading, releasing and paging.
+
+private final List<DataSource<Void>> prefetches = new ArrayList<>();
+
+private final WorkController.Participant workParticipant = new WorkController.Participant() {
+  @Override
+  public void pause() {
+    cancelPrefetches();
+  }
+
+  @Override
+  public void resume() {
+    prefetchNeighbors(viewPager.getCurrentItem());
+  }
+};
+
+private void onPageShown(int position) {
+  ImagePipeline imagePipeline = Fresco.getImagePipeline();
+  List<MediaItem> data = getData();
+  if (position < data.size()) favoriteView.setChecked(appViewModel.isFavorite(data.get(position)));
+  prefetchNeighbors(position);
+  for (int farAway : new int[]{position - 2, position + 2}) {
+    if (farAway >= 0 && farAway < data.size()) {
+      imagePipeline.evictFromMemoryCache(getUri(data.get(farAway)));
+    }
+  }
+  if (position >= data.size() - RecyclerViewManager.TRIGGER_LOADING_THRESHOLD) {
+    appViewModel.requestMoreData();
+  }
+}
+
+/**
+ * The prefetches for the page that was shown before are cancelled, since it's no longer one of
+ * the neighbors (or it's the page that's shown now, and its view is loading it anyway).
+ */
+private void prefetchNeighbors(int position) {
+  cancelPrefetches();
+  if (appViewModel.getWorkController().isPaused()) return;
+  List<MediaItem> data = getData();
+  for (int neighbor : new int[]{position - 1, position + 1}) {
+    if (neighbor >= 0 && neighbor < data.size()) {
+      prefetches.add(Fresco.getImagePipeline().prefetchToBitmapCache(
+          ImageRequest.fromUri(getUri(data.get(neighbor))), null));
+    }
+  }
+}
+
+private void cancelPrefetches() {
+  for (DataSource<Void> prefetch : prefetches) {
+    prefetch.close();
+  }
+  prefetches.clear();
+}
+
+private Uri getUri(@NonNull MediaItem item) {
+  return Uri.parse(item.getFullScreen(displayWidth).getUrl());
+}
+
+/**
+ * The adapter's count is only changed here, so an event that's delivered again (eg: the last one,
+ * when this observer is attached) doesn't change anything.
+ */
+private void onDataEvent(@NonNull DataEvent dataEvent) {
+  int oldSize = pageAdapter.getItemCount();
+  int newSize = getData().size();
+  if (dataEvent.isRefreshType()) {
+    pageAdapter.itemCount = newSize;
+    pageAdapter.notifyDataSetChanged();
+  } else if (dataEvent.isGetMoreType() && newSize > oldSize) {
+    pageAdapter.itemCount = newSize;
+    pageAdapter.notifyItemRangeInserted(oldSize, newSize - oldSize);
+  }
+  if (pendingPosition != RecyclerView.NO_POSITION) showPosition(pendingPosition);
+}
+
+private void toggleFavorite() {
+  int position = viewPager.getCurrentItem();
+  if (position >= getData().size()) return;
+  boolean favorite = appViewModel.toggleFavorite(getData().get(position));
+  favoriteView.setChecked(favorite);
+  Toast.makeText(requireContext(),
+                 favorite ? R.string.favorite_added : R.string.favorite_removed,
+                 Toast.LENGTH_SHORT).show();
+}
+
+private void copyUrlToClipboard(String url) {
+  ClipboardManager clipboard =
+      (ClipboardManager) requireContext().getSystemService(Context.CLIPBOARD_SERVICE);
+  ClipData clip = ClipData.newPlainText(URL, url);
+  clipboard.setPrimaryClip(clip);
+  Toast.makeText(requireContext(), "URL copied to clipboard", Toast.LENGTH_SHORT).show();
+}
+
+// Pages.
+
+private final class PageAdapter extends RecyclerView.Adapter<PageViewHolder> {
+
+  int itemCount = getData().size();
+
+  @NonNull
+  @Override
+  public PageViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    View pageView =
+        LayoutInflater.from(parent.getContext())
+                      .inflate(R.layout.fullscreen_page, parent, false);
+    return new PageViewHolder(pageView);
+  }
+
+  @Override
+  public void onBindViewHolder(@NonNull PageViewHolder holder, int position) {
+    holder.bindDataToView(getData().get(position));
+  }
+
+  @Override
+  public int getItemCount() {
+    return itemCount;
+  }
+}
+
+private final class PageViewHolder extends RecyclerView.ViewHolder {
+
+  private final SimpleDraweeView imageView;
+
+  PageViewHolder(@NonNull View pageView) {
+    super(pageView);
+    this.imageView = pageView.findViewById(R.id.fullscreen_gif);
+  }
+
+  void bindDataToView(@NonNull MediaItem item) {
+    MediaItem.Rendition rendition = item.getFullScreen(displayWidth);
+    imageView.setAspectRatio(rendition.getAspectRatio());
+    imageView.setController(
+        Fresco.newDraweeControllerBuilder()
+              .setLowResImageRequest(RecyclerViewManager.newGridImageRequest(
+                  item.getGrid(), appViewModel.getGridSpanWidthPx()))
+              .setImageRequest(ImageRequest.fromUri(rendition.getUrl()))
+              .setAutoPlayAnimations(true)
+              .setOldController(imageView.getController())
+              .build());
+  }
+}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer;
+
+import android.app.Application;
+import android.content.Context;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.backends.okhttp3.OkHttpNetworkFetcher;
+import com.facebook.imagepipeline.core.ImagePipelineConfig;
+import com.nazmul.giphy_viewer.core.Metrics;
+import com.nazmul.giphy_viewer.core.NetworkQualityEstimator;
+import com.nazmul.giphy_viewer.core.OkHttpTransport;
+
+import okhttp3.Dispatcher;
+
+import static com.nazmul.giphy_viewer.AppViewModel.TAG;
+
+/**
+ * Owns what's shared by everything in the process: the HTTP transport, Fresco's image pipeline,
+ * and the metrics and network quality estimate that they report to.
+ *
+ * <ol>
+ * <li>This runs before any activity or background job, so Fresco is initialized once, with the
+ * same config, whether the process was started for the {@link MainActivity} or for the {@link
+ * PrewarmWorker}.
+ * <li>API requests and image fetches go through the same OkHttp connection pool, and both feed
+ * the NetworkQualityEstimator (from the bytes on the wire, see {@link
+ * com.nazmul.giphy_viewer.core.NetworkQualityInterceptor}).
+ * <li>The {@link AppViewModel} and the PrewarmWorker get these from here, since they outlive both.
+ * The transport is never shut down, since it's shared.
+ * </ol>
+ */
+public final class GiphyViewerApplication extends Application {
+
+private final Metrics                 metrics        = new Metrics();
+private final NetworkQualityEstimator networkQuality = new NetworkQualityEstimator();
+private final OkHttpTransport         transport      =
+    OkHttpTransport.Builder.builder().networkQualityEstimator(networkQuality).build();
+
+@NonNull
+public static GiphyViewerApplication get(@NonNull Context context) {
+  return (GiphyViewerApplication) context.getApplicationContext();
+}
+
+@Override
+public void onCreate() {
+  super.onCreate();
+  networkQuality.registerGauges(metrics);
+  networkQuality.setListener(
+      tier -> Log.d(TAG, "GiphyViewerApplication: network tier is now " + tier));
+  initializeFresco();
+}
+
+@NonNull
+public Metrics getMetrics() {
+  return metrics;
+}
+
+@NonNull
+public NetworkQualityEstimator getNetworkQualityEstimator() {
+  return networkQuality;
+}
+
+@NonNull
+public OkHttpTransport getTransport() {
+  return transport;
+}
+
+// Fresco.
+
+/**
+ * Fresco's pipeline is a process wide singleton, so it's only initialized here, and never shut
+ * down (the process going away takes care of that). Its OkHttp client shares the transport's
+ * connection pool and network interceptor, but has its own dispatcher, so a screenful of image
+ * fetches doesn't hold up the next page of the feed.
+ */
+private void initializeFresco() {
+  if (Fresco.hasBeenInitialized()) return;
+  Fresco.initialize(
+      this,
+      ImagePipelineConfig.newBuilder(this)
+                         .setImageCacheStatsTracker(new ImageCacheStats(metrics))
+                         .setNetworkFetcher(new OkHttpNetworkFetcher(
+                             transport.getClient()
+                                      .newBuilder()
+                                      .dispatcher(new Dispatcher())
+                                      .build()))
+                         // Static images are decoded at their ResizeOptions, and animated
+                         // frames at the size of the view they're drawn in.
+                         .setDownsampleEnabled(true)
+                         .experiment().setDownscaleFrameToDrawableDimensions(true)
+                         .build());
+  Log.d(TAG, "GiphyViewerApplication: init Fresco");
+}
+}
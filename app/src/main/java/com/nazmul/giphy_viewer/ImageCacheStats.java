@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer;
+
+import androidx.annotation.NonNull;
+import com.facebook.cache.common.CacheKey;
+import com.facebook.imagepipeline.cache.CountingMemoryCache;
+import com.facebook.imagepipeline.cache.ImageCacheStatsTracker;
+import com.nazmul.giphy_viewer.core.Metrics;
+
+/**
+ * Counts hits and misses in each of Fresco's caches, and publishes the hit ratio of each one as a
+ * gauge (as a percentage).
+ *
+ * <ol>
+ * <li>The bitmap cache holds decoded images, the encoded cache holds compressed bytes in memory,
+ * and the disk cache is the last stop before the network.
+ * <li>These callbacks run on Fresco's threads, so they only touch the lock-free counters.
+ * </ol>
+ */
+final class ImageCacheStats implements ImageCacheStatsTracker {
+
+public static final String METRIC_BITMAP_CACHE  = "image.bitmap_cache";
+public static final String METRIC_ENCODED_CACHE = "image.encoded_cache";
+public static final String METRIC_DISK_CACHE    = "image.disk_cache";
+
+private final Metrics.Counter bitmapHits;
+private final Metrics.Counter bitmapMisses;
+private final Metrics.Counter encodedHits;
+private final Metrics.Counter encodedMisses;
+private final Metrics.Counter diskHits;
+private final Metrics.Counter diskMisses;
+
+ImageCacheStats(@NonNull Metrics metrics) {
+  bitmapHits = metrics.counter(METRIC_BITMAP_CACHE + ".hits");
+  bitmapMisses = metrics.counter(METRIC_BITMAP_CACHE + ".misses");
+  encodedHits = metrics.counter(METRIC_ENCODED_CACHE + ".hits");
+  encodedMisses = metrics.counter(METRIC_ENCODED_CACHE + ".misses");
+  diskHits = metrics.counter(METRIC_DISK_CACHE + ".hits");
+  diskMisses = metrics.counter(METRIC_DISK_CACHE + ".misses");
+  registerHitRatio(metrics, METRIC_BITMAP_CACHE, bitmapHits, bitmapMisses);
+  registerHitRatio(metrics, METRIC_ENCODED_CACHE, encodedHits, encodedMisses);
+  registerHitRatio(metrics, METRIC_DISK_CACHE, diskHits, diskMisses);
+}
+
+private static void registerHitRatio(
+    @NonNull Metrics metrics,
+    @NonNull String name,
+    @NonNull Metrics.Counter hits,
+    @NonNull Metrics.Counter misses) {
+  metrics.gauge(
+      name + ".hit_pct",
+      () -> {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : hits.get() * 100 / total;
+      });
+}
+
+// Bitmap (decoded) memory cache.
+
+@Override
+public void onBitmapCachePut() {
+}
+
+@Override
+public void onBitmapCacheHit(CacheKey cacheKey) {
+  bitmapHits.increment();
+}
+
+@Override
+public void onBitmapCacheMiss() {
+  bitmapMisses.increment();
+}
+
+// Encoded memory cache.
+
+@Override
+public void onMemoryCachePut() {
+}
+
+@Override
+public void onMemoryCacheHit(CacheKey cacheKey) {
+  encodedHits.increment();
+}
+
+@Override
+public void onMemoryCacheMiss() {
+  encodedMisses.increment();
+}
+
+// Disk cache (the staging area holds entries that are still being written to disk).
+
+@Override
+public void onStagingAreaHit(CacheKey cacheKey) {
+  diskHits.increment();
+}
+
+@Override
+public void onStagingAreaMiss() {
+}
+
+@Override
+public void onDiskCacheHit(CacheKey cacheKey) {
+  diskHits.increment();
+}
+
+@Override
+public void onDiskCacheMiss() {
+  diskMisses.increment();
+}
+
+@Override
+public void onDiskCacheGetFail() {
+  diskMisses.increment();
+}
+
+@Override
+public void registerBitmapMemoryCache(CountingMemoryCache<?, ?> bitmapMemoryCache) {
+}
+
+@Override
+public void registerEncodedMemoryCache(CountingMemoryCache<?, ?> encodedMemoryCache) {
+}
+}
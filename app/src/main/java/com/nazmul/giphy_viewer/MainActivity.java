@@ -20,8 +20,10 @@ import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.SearchView;
+import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.lifecycle.SavedStateVMFactory;
 import androidx.lifecycle.ViewModelProviders;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
@@ -51,9 +53,50 @@ public boolean onCreateOptionsMenu(Menu menu) {
   MenuItem searchMenuItem = menu.findItem(R.id.action_search);
   SearchView searchView = (SearchView) searchMenuItem.getActionView();
   viewHolder.setupSearchView(searchView, searchMenuItem, appViewModel);
+  menu.findItem(R.id.action_show_stats).setChecked(viewHolder.statsOverlay.isEnabled());
   return super.onCreateOptionsMenu(menu);
 }
 
+/**
+ * The mode can change without going through the menu (eg: searching), so the favorites item is
+ * updated every time the menu is shown.
+ */
+@Override
+public boolean onPrepareOptionsMenu(Menu menu) {
+  menu.findItem(R.id.action_favorites).setChecked(appViewModel.isFavoritesMode());
+  return super.onPrepareOptionsMenu(menu);
+}
+
+@Override
+public boolean onOptionsItemSelected(MenuItem item) {
+  switch (item.getItemId()) {
+    case R.id.action_favorites:
+      if (appViewModel.isFavoritesMode()) {
+        appViewModel.setTrendingMode();
+      } else {
+        appViewModel.setFavoritesMode();
+      }
+      return true;
+    case R.id.action_show_stats:
+      item.setChecked(!item.isChecked());
+      viewHolder.statsOverlay.setEnabled(item.isChecked());
+      appViewModel.setStatsOverlayEnabled(item.isChecked());
+      return true;
+    case R.id.action_dump_stats:
+      Toast.makeText(this,
+                     getString(R.string.stats_dumped, appViewModel.dumpMetrics()),
+                     Toast.LENGTH_LONG).show();
+      return true;
+    case R.id.action_dump_trace:
+      Toast.makeText(this,
+                     getString(R.string.trace_dumped, appViewModel.dumpTrace()),
+                     Toast.LENGTH_LONG).show();
+      return true;
+    default:
+      return super.onOptionsItemSelected(item);
+  }
+}
+
 // Cold boot the Activity.
 
 private void init() {
@@ -62,17 +105,23 @@ private void init() {
   viewHolder.setupSwipeRefreshLayout();
   viewHolder.setupToolbar();
   viewHolder.setupRecyclerView();
+  viewHolder.setupStatsOverlay();
   loadData();
 }
 
 private void setupViewModel() {
-  appViewModel = ViewModelProviders.of(this).get(AppViewModel.class);
+  appViewModel =
+      ViewModelProviders.of(this, new SavedStateVMFactory(this)).get(AppViewModel.class);
 }
 
 // Load fresh data into the activity.
 
 private void loadData() {
-  if (appViewModel.getUnderlyingData().isEmpty()) {
+  if (appViewModel.isRestoring()) {
+    // The process was killed, and the AppViewModel is putting back the feed that was on screen
+    // (or it's showing the feed that was prewarmed in the background). It arrives as a Refresh
+    // event, which attaches pagination to the RecyclerView.
+  } else if (appViewModel.getUnderlyingData().isEmpty()) {
     // Activity has no data, so perform a refresh now.
     viewHolder.swipeRefreshLayout.setRefreshing(true);
     viewHolder.onRefreshGestureHandler.onRefresh();
@@ -98,6 +147,7 @@ private final class ViewHolder {
   SwipeRefreshLayout.OnRefreshListener onRefreshGestureHandler;
   Runnable                             runOnRefreshComplete;
   SearchViewManager                    searchViewManager;
+  StatsOverlay                         statsOverlay;
 
   ViewHolder(MainActivity mainActivity) {
     this.activity = mainActivity;
@@ -120,6 +170,12 @@ private final class ViewHolder {
     recyclerViewManager = new RecyclerViewManager(activity, recyclerView);
   }
 
+  void setupStatsOverlay() {
+    statsOverlay = new StatsOverlay(
+        findViewById(R.id.stats_overlay), appViewModel.getMetrics(), getLifecycle());
+    statsOverlay.setEnabled(appViewModel.isStatsOverlayEnabled());
+  }
+
   void setupSearchView(
       SearchView searchView, MenuItem searchMenuItem, AppViewModel appViewModel) {
     searchViewManager = new SearchViewManager();
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+import com.facebook.datasource.DataSource;
+import com.facebook.datasource.DataSources;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.request.ImageRequest;
+import com.nazmul.giphy_viewer.core.FeedPrewarmer;
+import com.nazmul.giphy_viewer.core.GiphyApi;
+import com.nazmul.giphy_viewer.core.GiphyClient;
+import com.nazmul.giphy_viewer.core.MediaItem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.nazmul.giphy_viewer.AppViewModel.TAG;
+
+/**
+ * A deferrable background job that loads the first pages of trending, and their thumbnails, while
+ * the device is charging on an unmetered network. The next cold launch shows them right away (see
+ * {@link AppViewModel}), without waiting for the network.
+ *
+ * <ol>
+ * <li>The pages are loaded by a {@link FeedPrewarmer} and written to {@link
+ * #PREWARMED_FEED_FILE}. Their grid renditions are then fetched into Fresco's disk cache, up to
+ * {@link #BYTE_BUDGET} in all.
+ * <li>When WorkManager stops the job (eg: the charger is unplugged), the request or fetch in
+ * flight is cancelled and the rest are skipped.
+ * <li>The GiphyApi and the thumbnail fetching can be swapped out (using a WorkerFactory), so the
+ * job can be tested without a network.
+ * </ol>
+ */
+public final class PrewarmWorker extends Worker {
+
+public static final String UNIQUE_WORK_NAME      = "prewarm_trending";
+public static final long   REPEAT_INTERVAL_HOURS = 6;
+public static final String PREWARMED_FEED_FILE   = "prewarmed_feed.bin";
+public static final long   BYTE_BUDGET           = 8 * 1024 * 1024;
+
+/**
+ * Schedules the job to run about every {@link #REPEAT_INTERVAL_HOURS}. It's safe to call this on
+ * every launch: if the job is already scheduled, it's kept as it is.
+ */
+public static void schedule() {
+  Constraints constraints = new Constraints.Builder()
+      .setRequiredNetworkType(NetworkType.UNMETERED)
+      .setRequiresCharging(true)
+      .build();
+  PeriodicWorkRequest request =
+      new PeriodicWorkRequest.Builder(PrewarmWorker.class, REPEAT_INTERVAL_HOURS, TimeUnit.HOURS)
+          .setConstraints(constraints)
+          .build();
+  WorkManager.getInstance()
+             .enqueueUniquePeriodicWork(UNIQUE_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+}
+
+/**
+ * Fetches one thumbnail into the disk cache, blocking until it's there.
+ */
+@VisibleForTesting
+interface ThumbnailFetcher {
+  void fetch(@NonNull MediaItem.Rendition rendition) throws Throwable;
+
+  /**
+   * Called from another thread to stop the fetch in flight.
+   */
+  void cancel();
+}
+
+@Nullable
+private final GiphyApi         giphyApi;
+private final ThumbnailFetcher thumbnailFetcher;
+
+@Nullable
+private volatile FeedPrewarmer prewarmer;
+
+/**
+ * Used by WorkManager's default WorkerFactory. The job makes its own GiphyClient (over the app's
+ * shared transport), and fetches thumbnails with Fresco.
+ */
+public PrewarmWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+  this(context, workerParams, null, new FrescoThumbnailFetcher());
+}
+
+/**
+ * @param giphyApi If null, a GiphyClient is made for the duration of the job.
+ */
+@VisibleForTesting
+PrewarmWorker(
+    @NonNull Context context,
+    @NonNull WorkerParameters workerParams,
+    @Nullable GiphyApi giphyApi,
+    @NonNull ThumbnailFetcher thumbnailFetcher) {
+  super(context, workerParams);
+  this.giphyApi = giphyApi;
+  this.thumbnailFetcher = thumbnailFetcher;
+}
+
+@NonNull
+@Override
+public Result doWork() {
+  // Results are delivered on the transport's threads, since this one is blocked waiting for them.
+  // The transport is shared with the rest of the app, so it isn't shut down when the job ends.
+  GiphyApi api = giphyApi != null
+                 ? giphyApi
+                 : new GiphyClient(
+                     GiphyViewerApplication.get(getApplicationContext()).getTransport(),
+                     Runnable::run);
+  try {
+    return prewarm(api);
+  } catch (InterruptedException e) {
+    Thread.currentThread().interrupt();
+    return Result.retry();
+  }
+}
+
+private Result prewarm(@NonNull GiphyApi api) throws InterruptedException {
+  FeedPrewarmer prewarmer = FeedPrewarmer.Builder.builder()
+                                             .giphyApi(api)
+                                             .byteBudget(BYTE_BUDGET)
+                                             .build();
+  this.prewarmer = prewarmer;
+  if (isStopped()) return Result.retry();
+
+  FeedPrewarmer.Result result = prewarmer.run();
+  if (result == null) return Result.retry();
+  try {
+    result.getSnapshot()
+          .save(new File(getApplicationContext().getCacheDir(), PREWARMED_FEED_FILE));
+  } catch (IOException e) {
+    Log.d(TAG, "PrewarmWorker: could not save feed: " + e.getMessage());
+    return Result.failure();
+  }
+
+  int fetched = 0;
+  for (MediaItem.Rendition thumbnail : result.getThumbnails()) {
+    if (isStopped()) return Result.retry();
+    try {
+      thumbnailFetcher.fetch(thumbnail);
+      fetched++;
+    } catch (Throwable throwable) {
+      // Not worth failing the job for. The thumbnail will be loaded when it's shown.
+    }
+  }
+  Log.d(TAG, "PrewarmWorker: " + result.getSnapshot().getItems().size() + " items, "
+             + fetched + "/" + result.getThumbnails().size() + " thumbnails");
+  return Result.success();
+}
+
+@Override
+public void onStopped() {
+  super.onStopped();
+  FeedPrewarmer prewarmer = this.prewarmer;
+  if (prewarmer != null) prewarmer.cancel();
+  thumbnailFetcher.cancel();
+}
+
+/**
+ * Uses the same image pipeline (and so the same disk cache) as the grid. It's initialized by the
+ * {@link GiphyViewerApplication} before any job runs, whether or not the app is in the foreground.
+ */
+private static final class FrescoThumbnailFetcher implements ThumbnailFetcher {
+
+  @Nullable
+  private volatile DataSource<Void> inFlight;
+
+  @Override
+  public void fetch(@NonNull MediaItem.Rendition rendition) throws Throwable {
+    DataSource<Void> dataSource = Fresco.getImagePipeline().prefetchToDiskCache(
+        ImageRequest.fromUri(Uri.parse(rendition.getUrl())), null);
+    inFlight = dataSource;
+    try {
+      DataSources.waitForFinalResult(dataSource);
+    } finally {
+      inFlight = null;
+      dataSource.close();
+    }
+  }
+
+  @Override
+  public void cancel() {
+    DataSource<Void> dataSource = inFlight;
+    if (dataSource != null) dataSource.close();
+  }
+}
+}
@@ -16,13 +16,16 @@
 
 package com.nazmul.giphy_viewer;
 
+import android.graphics.drawable.Animatable;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.lifecycle.Lifecycle;
 import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.OnLifecycleEvent;
@@ -30,8 +33,17 @@ import androidx.lifecycle.ViewModelProviders;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.StaggeredGridLayoutManager;
 import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.drawee.controller.BaseControllerListener;
 import com.facebook.drawee.view.SimpleDraweeView;
-import com.giphy.sdk.core.models.Media;
+import com.facebook.imagepipeline.common.ResizeOptions;
+import com.facebook.imagepipeline.image.ImageInfo;
+import com.facebook.imagepipeline.request.ImageRequest;
+import com.facebook.imagepipeline.request.ImageRequestBuilder;
+import com.nazmul.giphy_viewer.core.DataEvent;
+import com.nazmul.giphy_viewer.core.GiphyClient;
+import com.nazmul.giphy_viewer.core.MediaItem;
+import com.nazmul.giphy_viewer.core.Metrics;
+import com.nazmul.giphy_viewer.core.Tracer;
 import com.paginate.Paginate;
 
 import static com.nazmul.giphy_viewer.AppViewModel.TAG;
@@ -43,22 +55,46 @@ import static com.nazmul.giphy_viewer.AppViewModel.TAG;
  * <li>It is wired via LiveData to the {@link AppViewModel}. It lets the RecyclerView Adapter know
  * when the {@link GiphyClient} has more data.
  * <li>The RecyclerView uses a StaggeredGridLayoutManager.
- * <li>Fresco is used for image loading.
+ * <li>Fresco is used for image loading. Images are decoded at the width of a span, rather than at
+ * their native size.
+ * <li>Animations are played within one byte budget for all of their frames, see {@link
+ * AnimatedFrameBudget}.
  * </ol>
  */
 final class RecyclerViewManager {
 
-private final RecyclerView recyclerView;
-private final AppViewModel appViewModel;
-private final MainActivity activity;
+public static final String METRIC_TIME_TO_FIRST_IMAGE_MS = "bind.time_to_first_image_ms";
+public static final String METRIC_IMAGE_FAILURES         = "bind.image_failures";
+public static final String TRACE_BIND                    = "list.bind";
+public static final String TRACE_LOAD_MORE               = "list.load_more";
+public static final String TRACE_NOTIFY                  = "list.notify";
+
+private final RecyclerView        recyclerView;
+private final AppViewModel        appViewModel;
+private final MainActivity        activity;
+private final Metrics.Histogram   timeToFirstImageMs;
+private final Metrics.Counter     imageFailures;
+private final FrameDropTracker    frameDropTracker;
+private final AnimatedFrameBudget animatedFrameBudget;
+private final Tracer              tracer;
 
 RecyclerViewManager(MainActivity activity, RecyclerView recyclerView) {
   this.recyclerView = recyclerView;
   this.appViewModel = ViewModelProviders.of(activity).get(AppViewModel.class);
   this.activity = activity;
+  this.tracer = appViewModel.getTracer();
+  Metrics metrics = appViewModel.getMetrics();
+  this.timeToFirstImageMs = metrics.histogram(METRIC_TIME_TO_FIRST_IMAGE_MS);
+  this.imageFailures = metrics.counter(METRIC_IMAGE_FAILURES);
+  this.frameDropTracker = new FrameDropTracker(
+      metrics, activity.getWindowManager().getDefaultDisplay().getRefreshRate());
+  this.animatedFrameBudget =
+      new AnimatedFrameBudget(AnimatedFrameBudget.getBudgetBytes(activity), metrics);
   setupLiveDataObservers();
   setupLifecycleObservers();
+  setupWorkParticipant();
   setupLayoutManager();
+  setupScrollListener();
   setupDataAdapter();
 }
 
@@ -77,23 +113,40 @@ private void setupLiveDataObservers() {
                 onGetMoreEvent(dataEvent.getNewSize());
                 break;
               case Refresh:
-                onRefreshEvent();
+                onRefreshEvent(dataEvent.getPosition());
+                break;
+              case NotModified:
+                onNotModifiedEvent();
                 break;
             }
           });
 }
 
 public void onGetMoreEvent(int newDataSize) {
-  Log.d(TAG, "onGetMoreEvent: ");
   isLoading = false;
   int underlyingDataSize = appViewModel.getUnderlyingData().size();
+  tracer.begin(Tracer.Level.Info, TRACE_NOTIFY, newDataSize);
   dataAdapter.notifyItemRangeInserted(underlyingDataSize - newDataSize, newDataSize);
+  tracer.end(Tracer.Level.Info, TRACE_NOTIFY);
 }
 
-public void onRefreshEvent() {
-  Log.d(TAG, "onRefreshEvent: ");
+/**
+ * @param position The feed that's now in the AppViewModel may have been restored from its cache
+ *                 (eg: going back to trending from search), in which case this is the position it
+ *                 was left at.
+ */
+public void onRefreshEvent(int position) {
+  // A page that was loading for the old data set was cancelled when it was replaced.
+  isLoading = false;
   setupInfiniteScrolling();
   dataAdapter.notifyDataSetChanged();
+  if (position != DataEvent.NO_POSITION) layoutManager.scrollToPosition(position);
+}
+
+/**
+ * The data that's already displayed is current, so there's nothing to re-bind.
+ */
+public void onNotModifiedEvent() {
 }
 
 public void onErrorEvent() {
@@ -105,6 +158,12 @@ public void onErrorEvent() {
 // Infinite scrolling support.
 
 public static final int      TRIGGER_LOADING_THRESHOLD = 2;
+/**
+ * When the list is flung to the end of the feed, it's likely to keep going, so this many pages are
+ * loaded at once (in parallel) instead of one. Fewer are loaded on a slow network, see {@link
+ * #getPagesToLoadWhenFlung()}.
+ */
+public static final int      PAGES_TO_LOAD_WHEN_FLUNG  = 3;
 private             boolean  isLoading;
 private             Paginate paginate;
 
@@ -119,21 +178,27 @@ public void setupInfiniteScrolling() {
         new Paginate.Callbacks() {
           @Override
           public void onLoadMore() {
-            Log.d(TAG, "onLoadMore: ");
+            tracer.instant(
+                Tracer.Level.Info, TRACE_LOAD_MORE, appViewModel.getUnderlyingData().size());
             isLoading = true;
-            appViewModel.requestMoreData();
+            if (recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_SETTLING) {
+              appViewModel.requestMoreData(getPagesToLoadWhenFlung());
+            } else {
+              appViewModel.requestMoreData();
+            }
           }
 
           @Override
           public boolean isLoading() {
-            Log.d(TAG, "isLoading: " + isLoading);
-            return isLoading;
+            // Called on every scroll callback, so don't log or trace here. While paused, the feed
+            // engine ignores requests for more, so don't make any.
+            return isLoading || workPaused;
           }
 
-          /** Return false to always allow infinite scrolling */
+          /** Only the favorites feed ends, the others scroll forever. */
           @Override
           public boolean hasLoadedAllItems() {
-            return false;
+            return !appViewModel.hasMore();
           }
         };
     paginate =
@@ -146,6 +211,21 @@ public void setupInfiniteScrolling() {
   }
 }
 
+/**
+ * On a slow network, pages that are loaded in parallel share its bandwidth, so the first one (the
+ * one that the list is waiting for) arrives later than if it were loaded alone.
+ */
+private int getPagesToLoadWhenFlung() {
+  switch (appViewModel.getNetworkTier()) {
+    case Poor:
+      return 1;
+    case Moderate:
+      return 2;
+    default:
+      return PAGES_TO_LOAD_WHEN_FLUNG;
+  }
+}
+
 // Layout Manager.
 
 private static final int                        GRID_SPAN_COUNT = 2;
@@ -160,18 +240,135 @@ private void setupLayoutManager() {
   recyclerView.setLayoutManager(layoutManager);
 }
 
+// Decoded image size.
+
+/**
+ * Decoded widths are rounded up to a multiple of this, so that cells whose widths differ by a few
+ * pixels (eg: portrait and landscape on some screens) share the same bitmap cache entries.
+ */
+private static final int RESIZE_WIDTH_STEP_PX = 64;
+
+/**
+ * @return The width of a span, less the margins of a cell. Before the first layout, it's estimated
+ * from the width of the display.
+ */
+private int getSpanWidthPx() {
+  int width = recyclerView.getWidth();
+  if (width == 0) width = activity.getResources().getDisplayMetrics().widthPixels;
+  width -= recyclerView.getPaddingLeft() + recyclerView.getPaddingRight();
+  int cellMarginPx = activity.getResources().getDimensionPixelSize(R.dimen.grid_cell_margin);
+  return width / GRID_SPAN_COUNT - 2 * cellMarginPx;
+}
+
+/**
+ * The request for a grid rendition, as it's decoded in a cell. The full screen pager uses it for
+ * its placeholder too, so that it finds the bitmap that's already in memory.
+ *
+ * @param spanWidthPx The width that the grid was last bound with, see {@link
+ *                    AppViewModel#getGridSpanWidthPx()}.
+ */
+@NonNull
+static ImageRequest newGridImageRequest(@NonNull MediaItem.Rendition grid, int spanWidthPx) {
+  return ImageRequestBuilder.newBuilderWithSource(Uri.parse(grid.getUrl()))
+                            .setResizeOptions(getResizeOptions(grid, spanWidthPx))
+                            .build();
+}
+
+/**
+ * Fresco keys its bitmap cache on the resize options as well as the uri, so these are quantized.
+ *
+ * @return null if the rendition is already no wider than the (quantized) span, in which case it's
+ * decoded as is, and shares its cache entries with requests that aren't resized.
+ */
+@Nullable
+private static ResizeOptions getResizeOptions(
+    @NonNull MediaItem.Rendition rendition, int spanWidthPx) {
+  if (spanWidthPx <= 0) return null;
+  int width = (spanWidthPx + RESIZE_WIDTH_STEP_PX - 1) / RESIZE_WIDTH_STEP_PX
+              * RESIZE_WIDTH_STEP_PX;
+  if (width >= rendition.getWidth()) return null;
+  int height = (int) Math.ceil(width / rendition.getAspectRatio());
+  return new ResizeOptions(width, height);
+}
+
 // Saving/restoring list position.
 
+/**
+ * The position is saved whenever scrolling comes to rest (not on every scroll callback), so that
+ * it is current when the AppViewModel swaps feeds on a mode change. Dropped frames are counted
+ * while the list is moving.
+ */
+private void setupScrollListener() {
+  recyclerView.addOnScrollListener(
+      new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+          if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            frameDropTracker.stop();
+            saveListPosition();
+          } else {
+            frameDropTracker.start();
+          }
+        }
+
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+          animatedFrameBudget.onScrolled(recyclerView);
+        }
+      });
+}
+
+private void saveListPosition() {
+  final int firstVisibleItemPosition = layoutManager.findFirstVisibleItemPositions(null)[0];
+  if (firstVisibleItemPosition != RecyclerView.NO_POSITION) {
+    appViewModel.setPosition(firstVisibleItemPosition);
+  }
+}
+
+// Pausing work in the background.
+
+private boolean workPaused;
+
+/**
+ * While the app is in the background, the list doesn't ask for more pages, and its animations
+ * are stopped and their frames released. A page that was loading is requested again by the feed
+ * engine on resume, and its GetMore event clears {@link #isLoading}.
+ */
+private void setupWorkParticipant() {
+  final WorkController.Participant participant = new WorkController.Participant() {
+    @Override
+    public void pause() {
+      workPaused = true;
+      animatedFrameBudget.pause();
+    }
+
+    @Override
+    public void resume() {
+      workPaused = false;
+      animatedFrameBudget.resume(recyclerView);
+    }
+  };
+  final WorkController workController = appViewModel.getWorkController();
+  workController.add(participant);
+  activity.getLifecycle()
+          .addObserver(
+              new LifecycleObserver() {
+                @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+                void onDestroy() {
+                  workController.remove(participant);
+                }
+              });
+}
+
 private void setupLifecycleObservers() {
   activity.getLifecycle()
           .addObserver(
               new LifecycleObserver() {
                 @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
-                void saveListPosition() {
-                  final int firstVisibleItemPosition =
-                      layoutManager.findFirstVisibleItemPositions(null)[0];
-                  appViewModel.setPosition(firstVisibleItemPosition);
-                  Log.d(TAG, "saveListPosition: " + firstVisibleItemPosition);
+                void onStop() {
+                  frameDropTracker.stop();
+                  saveListPosition();
+                  Log.d(TAG, "saveListPosition: " + appViewModel.getPosition());
                 }
 
                 @OnLifecycleEvent(Lifecycle.Event.ON_START)
@@ -189,18 +386,30 @@ private DataAdapter dataAdapter;
 private void setupDataAdapter() {
   dataAdapter =
       new DataAdapter(
-          (Media item) -> {
-            activity.startActivity(FullScreenActivity.getIntent(activity, item));
+          (Integer position) -> {
+            if (position != RecyclerView.NO_POSITION) FullScreenFragment.show(activity, position);
+          },
+          (Integer position) -> {
+            if (position != RecyclerView.NO_POSITION) toggleFavorite(position);
           });
   recyclerView.setAdapter(dataAdapter);
 }
 
+private void toggleFavorite(int position) {
+  boolean favorite = appViewModel.toggleFavorite(appViewModel.getUnderlyingData().get(position));
+  Toast.makeText(activity,
+                 favorite ? R.string.favorite_added : R.string.favorite_removed,
+                 Toast.LENGTH_SHORT).show();
+}
+
 private class DataAdapter extends RecyclerView.Adapter<RowViewHolder> {
 
-  private final ItemClickListener<Media> onItemClickHandler;
+  private final ItemClickListener<Integer> onItemClickHandler;
+  private final ItemClickListener<Integer> onItemLongClickHandler;
 
-  DataAdapter(ItemClickListener<Media> onItemClick) {
+  DataAdapter(ItemClickListener<Integer> onItemClick, ItemClickListener<Integer> onItemLongClick) {
     this.onItemClickHandler = onItemClick;
+    this.onItemLongClickHandler = onItemLongClick;
   }
 
   @NonNull
@@ -214,8 +423,17 @@ private class DataAdapter extends RecyclerView.Adapter<RowViewHolder> {
 
   @Override
   public void onBindViewHolder(@NonNull RowViewHolder holder, int position) {
+    tracer.begin(Tracer.Level.Verbose, TRACE_BIND, position);
     holder.bindDataToView(
-        appViewModel.getUnderlyingData().get(position), onItemClickHandler);
+        appViewModel.getUnderlyingData().get(position),
+        onItemClickHandler,
+        onItemLongClickHandler);
+    tracer.end(Tracer.Level.Verbose, TRACE_BIND);
+  }
+
+  @Override
+  public void onViewRecycled(@NonNull RowViewHolder holder) {
+    animatedFrameBudget.remove(holder.itemView);
   }
 
   @Override
@@ -226,27 +444,69 @@ private class DataAdapter extends RecyclerView.Adapter<RowViewHolder> {
 
 private class RowViewHolder extends RecyclerView.ViewHolder {
 
-  private final SimpleDraweeView imageView;
+  private final SimpleDraweeView  imageView;
+  private final ImageLoadListener imageLoadListener;
 
   public RowViewHolder(@NonNull View imageView) {
     super(imageView);
     this.imageView = imageView.findViewById(R.id.image_grid_cell);
+    this.imageLoadListener = new ImageLoadListener(imageView);
   }
 
-  public void bindDataToView(Media data, ItemClickListener<Media> onItemClick) {
-    imageView.setOnClickListener(v -> onItemClick.onClick(data));
-    final Uri imageUri = Uri.parse(data.getImages().getFixedWidthDownsampled().getGifUrl());
-    imageView.setAspectRatio(
-        (float) data.getImages().getFixedWidthDownsampled().getWidth()
-        / (float) data.getImages().getFixedWidthDownsampled().getHeight());
+  public void bindDataToView(
+      MediaItem data,
+      ItemClickListener<Integer> onItemClick,
+      ItemClickListener<Integer> onItemLongClick) {
+    imageView.setOnClickListener(v -> onItemClick.onClick(getAdapterPosition()));
+    imageView.setOnLongClickListener(
+        v -> {
+          onItemLongClick.onClick(getAdapterPosition());
+          return true;
+        });
+    final MediaItem.Rendition grid = data.getGrid();
+    final int spanWidthPx = getSpanWidthPx();
+    appViewModel.setGridSpanWidthPx(spanWidthPx);
+    final ImageRequest imageRequest = newGridImageRequest(grid, spanWidthPx);
+    imageView.setAspectRatio(grid.getAspectRatio());
+    imageLoadListener.boundAtMs = SystemClock.uptimeMillis();
+    animatedFrameBudget.remove(itemView);
     imageView.setController(
         Fresco.newDraweeControllerBuilder()
-              .setUri(imageUri)
-              .setAutoPlayAnimations(true)
+              .setImageRequest(imageRequest)
+              .setOldController(imageView.getController())
+              .setControllerListener(imageLoadListener)
               .build());
   }
 }
 
+/**
+ * Records the time from a bind to its image being shown, and hands animations to the {@link
+ * AnimatedFrameBudget} to be played. There's one per RowViewHolder, and it's reset on every bind,
+ * so binds don't allocate a listener. Setting a new controller detaches the previous one, so a late
+ * result from an earlier bind isn't recorded.
+ */
+private class ImageLoadListener extends BaseControllerListener<ImageInfo> {
+
+  private final View cellView;
+  long               boundAtMs;
+
+  ImageLoadListener(@NonNull View cellView) {
+    this.cellView = cellView;
+  }
+
+  @Override
+  public void onFinalImageSet(
+      String id, @Nullable ImageInfo imageInfo, @Nullable Animatable animatable) {
+    timeToFirstImageMs.record(SystemClock.uptimeMillis() - boundAtMs);
+    animatedFrameBudget.onImageSet(recyclerView, cellView, imageInfo, animatable);
+  }
+
+  @Override
+  public void onFailure(String id, Throwable throwable) {
+    imageFailures.increment();
+  }
+}
+
 interface ItemClickListener<T> {
   void onClick(T item);
 }
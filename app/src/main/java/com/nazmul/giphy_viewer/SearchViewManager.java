@@ -19,6 +19,7 @@ package com.nazmul.giphy_viewer;
 import android.util.Log;
 import android.view.MenuItem;
 import android.widget.SearchView;
+import com.nazmul.giphy_viewer.core.AppMode;
 
 import java.util.Objects;
 
@@ -36,9 +37,8 @@ void setupSearchView(
       new SearchView.OnCloseListener() {
         @Override
         public boolean onClose() {
-          Log.d(TAG, "onClose: clear search mode, and request refresh");
+          Log.d(TAG, "onClose: clear search mode, restore or refresh trending");
           appViewModel.setTrendingMode();
-          appViewModel.requestRefreshData(null);
           return false;
         }
       });
@@ -50,15 +50,16 @@ void setupSearchView(
           Log.d(TAG, "onQueryTextSubmit: " + query);
           if (!query.isEmpty()) {
             searchMenuItem.collapseActionView();
-            appViewModel.setSearchMode(query);
-            appViewModel.requestRefreshData(null);
+            appViewModel.submitSearch(query);
           }
 
           return false;
         }
 
+        /** Search as the user types (debounced by the AppViewModel). */
         @Override
         public boolean onQueryTextChange(String newText) {
+          appViewModel.onSearchQueryChanged(newText);
           return true;
         }
       });
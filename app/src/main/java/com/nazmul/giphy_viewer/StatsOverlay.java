@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.OnLifecycleEvent;
+import com.nazmul.giphy_viewer.core.Metrics;
+
+/**
+ * A debug overlay that shows the current {@link Metrics} on top of the list, and refreshes them
+ * every {@link #REFRESH_INTERVAL_MS} while it's visible and the activity is started.
+ */
+final class StatsOverlay implements LifecycleObserver {
+
+public static final long REFRESH_INTERVAL_MS = 500;
+
+private final TextView textView;
+private final Metrics  metrics;
+private final Handler  handler = new Handler(Looper.getMainLooper());
+private final Runnable refresh = this::refresh;
+private       boolean  enabled;
+private       boolean  started;
+
+StatsOverlay(@NonNull TextView textView, @NonNull Metrics metrics, @NonNull Lifecycle lifecycle) {
+  this.textView = textView;
+  this.metrics = metrics;
+  lifecycle.addObserver(this);
+}
+
+boolean isEnabled() {
+  return enabled;
+}
+
+void setEnabled(boolean enabled) {
+  this.enabled = enabled;
+  textView.setVisibility(enabled ? View.VISIBLE : View.GONE);
+  handler.removeCallbacks(refresh);
+  if (enabled && started) refresh();
+}
+
+@OnLifecycleEvent(Lifecycle.Event.ON_START)
+void onStart() {
+  started = true;
+  if (enabled) refresh();
+}
+
+@OnLifecycleEvent(Lifecycle.Event.ON_STOP)
+void onStop() {
+  started = false;
+  handler.removeCallbacks(refresh);
+}
+
+private void refresh() {
+  textView.setText(metrics.summary());
+  handler.postDelayed(refresh, REFRESH_INTERVAL_MS);
+}
+}
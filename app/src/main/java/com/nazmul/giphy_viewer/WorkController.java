@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.OnLifecycleEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.nazmul.giphy_viewer.AppViewModel.TAG;
+
+/**
+ * Pauses the app's fetch, prefetch and decode work when the app goes to the background, and
+ * resumes it when it comes back, so that a backgrounded app uses next to no CPU or network.
+ *
+ * <ol>
+ * <li>It observes the ProcessLifecycleOwner (see {@link AppViewModel}), which stops a little after
+ * the last activity does, so a configuration change doesn't pause and resume everything.
+ * <li>Participants are paused in the reverse of the order they were added, and resumed in that
+ * order. So the feed engine (added first) is running again before the list (added later) asks
+ * it for more.
+ * <li>A participant that's added while paused is paused right away.
+ * <li>Only use this on the main thread.
+ * </ol>
+ */
+final class WorkController implements LifecycleObserver {
+
+interface Participant {
+  void pause();
+
+  void resume();
+}
+
+private final List<Participant> participants = new ArrayList<>();
+private       boolean           paused;
+
+void add(@NonNull Participant participant) {
+  participants.add(participant);
+  if (paused) participant.pause();
+}
+
+void remove(@NonNull Participant participant) {
+  participants.remove(participant);
+}
+
+boolean isPaused() {
+  return paused;
+}
+
+@OnLifecycleEvent(Lifecycle.Event.ON_STOP)
+void pause() {
+  if (paused) return;
+  paused = true;
+  Log.d(TAG, "WorkController: pause " + participants.size() + " participants");
+  for (int i = participants.size() - 1; i >= 0; i--) {
+    participants.get(i).pause();
+  }
+}
+
+@OnLifecycleEvent(Lifecycle.Event.ON_START)
+void resume() {
+  if (!paused) return;
+  paused = false;
+  Log.d(TAG, "WorkController: resume " + participants.size() + " participants");
+  for (Participant participant : new ArrayList<>(participants)) {
+    participant.resume();
+  }
+}
+}
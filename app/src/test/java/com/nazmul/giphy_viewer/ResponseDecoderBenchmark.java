@@ -0,0 +1,167 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer;
+
+import com.nazmul.giphy_viewer.core.MediaItem;
+import com.nazmul.giphy_viewer.core.MediaPage;
+import com.nazmul.giphy_viewer.core.ResponseDecoder;
+import com.nazmul.giphy_viewer.core.StreamingResponseDecoder;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares {@link StreamingResponseDecoder} against the SDK decode path ({@link
+ * SdkResponseDecoder}) on sample Giphy list responses, on the host JVM.
+ *
+ * <ol>
+ * <li>The sample responses in <code>src/test/resources/giphy</code> have the full shape of the
+ * real API (all renditions, analytics, user objects), so the amount of JSON that is skipped is
+ * realistic.
+ * <li>Time and bytes allocated per decode are printed for both paths. Only the allocation
+ * comparison is asserted, since wall clock time on a shared CI host is too noisy.
+ * </ol>
+ */
+public class ResponseDecoderBenchmark {
+
+private static final String[] RESPONSES          = {"trending_page.json", "search_page.json"};
+private static final int      WARMUP_ITERATIONS  = 300;
+private static final int      MEASURE_ITERATIONS = 1_000;
+
+private static byte[][] responses;
+
+@BeforeClass
+public static void loadResponses() throws IOException {
+  responses = new byte[RESPONSES.length][];
+  for (int i = 0; i < RESPONSES.length; i++) {
+    responses[i] = readResource("/giphy/" + RESPONSES[i]);
+  }
+}
+
+@Test
+public void decoders_produceSameItems() throws IOException {
+  for (byte[] response : responses) {
+    MediaPage sdk = new SdkResponseDecoder().decode(new ByteArrayInputStream(response));
+    MediaPage streaming =
+        new StreamingResponseDecoder().decode(new ByteArrayInputStream(response));
+
+    assertEquals(sdk.getTotalCount(), streaming.getTotalCount());
+    assertEquals(sdk.getOffset(), streaming.getOffset());
+    assertEquals(sdk.getItems().size(), streaming.getItems().size());
+    for (int i = 0; i < sdk.getItems().size(); i++) {
+      MediaItem expected = sdk.getItems().get(i);
+      MediaItem actual = streaming.getItems().get(i);
+      assertEquals(expected.getId(), actual.getId());
+      assertEquals(expected.getTitle(), actual.getTitle());
+      assertEquals(expected.getSlug(), actual.getSlug());
+      assertEquals(expected.getTags(), actual.getTags());
+      assertEquals(expected.getGrid().getUrl(), actual.getGrid().getUrl());
+      assertEquals(expected.getGrid().getWidth(), actual.getGrid().getWidth());
+      assertEquals(expected.getGrid().getHeight(), actual.getGrid().getHeight());
+      assertEquals(expected.getOriginal().getUrl(), actual.getOriginal().getUrl());
+      assertEquals(expected.getOriginal().getWidth(), actual.getOriginal().getWidth());
+      assertEquals(expected.getOriginal().getHeight(), actual.getOriginal().getHeight());
+    }
+  }
+}
+
+@Test
+public void streamingDecoder_allocatesLessThanSdkDecoder() throws IOException {
+  Result sdk = measure(new SdkResponseDecoder());
+  Result streaming = measure(new StreamingResponseDecoder());
+
+  System.out.println("ResponseDecoderBenchmark: sdk       " + sdk);
+  System.out.println("ResponseDecoderBenchmark: streaming " + streaming);
+
+  assertTrue(streaming.bytesPerOp < sdk.bytesPerOp);
+}
+
+// Measurement.
+
+private static Result measure(ResponseDecoder decoder) throws IOException {
+  int sink = 0;
+  for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+    sink += decodeAll(decoder);
+  }
+
+  long startBytes = allocatedBytes();
+  long startNanos = System.nanoTime();
+  for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+    sink += decodeAll(decoder);
+  }
+  long elapsedNanos = System.nanoTime() - startNanos;
+  long bytes = allocatedBytes() - startBytes;
+
+  int ops = MEASURE_ITERATIONS * responses.length;
+  assertTrue(sink > 0);
+  return new Result(elapsedNanos / ops, bytes / ops);
+}
+
+private static int decodeAll(ResponseDecoder decoder) throws IOException {
+  int count = 0;
+  for (byte[] response : responses) {
+    count += decoder.decode(new ByteArrayInputStream(response)).getItems().size();
+  }
+  return count;
+}
+
+/**
+ * Bytes allocated by the current thread so far, via the HotSpot extension of ThreadMXBean.
+ */
+private static long allocatedBytes() {
+  return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+      .getThreadAllocatedBytes(Thread.currentThread().getId());
+}
+
+private static byte[] readResource(String name) throws IOException {
+  try (InputStream in = ResponseDecoderBenchmark.class.getResourceAsStream(name)) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
+
+private static final class Result {
+
+  final long nanosPerOp;
+  final long bytesPerOp;
+
+  Result(long nanosPerOp, long bytesPerOp) {
+    this.nanosPerOp = nanosPerOp;
+    this.bytesPerOp = bytesPerOp;
+  }
+
+  public String toString() {
+    return String.format(
+        Locale.US, "%,d us/op, %,d bytes/op", nanosPerOp / 1_000, bytesPerOp);
+  }
+}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer;
+
+import androidx.annotation.NonNull;
+import com.giphy.sdk.core.models.Image;
+import com.giphy.sdk.core.models.Media;
+import com.giphy.sdk.core.network.api.DefaultNetworkSession;
+import com.giphy.sdk.core.network.response.ListMediaResponse;
+import com.google.gson.JsonParseException;
+import com.nazmul.giphy_viewer.core.MediaItem;
+import com.nazmul.giphy_viewer.core.MediaPage;
+import com.nazmul.giphy_viewer.core.ResponseDecoder;
+import com.nazmul.giphy_viewer.core.StreamingResponseDecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decodes a Giphy list response the way the <a
+ * href="https://github.com/Giphy/giphy-android-sdk-core">Giphy Android SDK</a> does (reflection
+ * based Gson into {@link ListMediaResponse}), then converts each {@link Media} into a {@link
+ * MediaItem}. This is kept as the reference implementation for {@link StreamingResponseDecoder}.
+ */
+final class SdkResponseDecoder implements ResponseDecoder {
+
+@NonNull
+@Override
+public MediaPage decode(@NonNull InputStream body) throws IOException {
+  final ListMediaResponse response;
+  try (InputStreamReader reader = new InputStreamReader(body, "UTF-8")) {
+    response = DefaultNetworkSession.GSON_INSTANCE.fromJson(reader, ListMediaResponse.class);
+  } catch (JsonParseException e) {
+    throw new IOException("Malformed Giphy response", e);
+  }
+
+  if (response == null || response.getData() == null) {
+    return new MediaPage(Collections.emptyList(), 0, 0);
+  }
+
+  List<MediaItem> items = new ArrayList<>(response.getData().size());
+  for (Media media : response.getData()) {
+    if (media.getImages() == null) continue;
+    Image grid = media.getImages().getFixedWidthDownsampled();
+    Image original = media.getImages().getOriginal();
+    if (media.getId() == null || grid == null || original == null) continue;
+    items.add(
+        new MediaItem(
+            media.getId(),
+            media.getTitle() == null ? "" : media.getTitle(),
+            media.getSlug() == null ? "" : media.getSlug(),
+            media.getTags() == null ? Collections.<String>emptyList() : media.getTags(),
+            toRendition(grid),
+            toRendition(original),
+            toRenditions(
+                media.getImages().getDownsized(),
+                media.getImages().getDownsizedMedium(),
+                media.getImages().getDownsizedLarge())));
+  }
+
+  int totalCount = 0;
+  int offset = 0;
+  if (response.getPagination() != null) {
+    totalCount = response.getPagination().getTotalCount();
+    offset = response.getPagination().getOffset();
+  }
+  return new MediaPage(items, totalCount, offset);
+}
+
+private static MediaItem.Rendition toRendition(Image image) {
+  return new MediaItem.Rendition(
+      image.getGifUrl(), image.getWidth(), image.getHeight(), image.getGifSize());
+}
+
+private static List<MediaItem.Rendition> toRenditions(Image... images) {
+  List<MediaItem.Rendition> renditions = new ArrayList<>(images.length);
+  for (Image image : images) {
+    if (image != null && image.getGifUrl() != null) renditions.add(toRendition(image));
+  }
+  return renditions;
+}
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.benchmark;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.nazmul.giphy_viewer.core.AppMode;
+import com.nazmul.giphy_viewer.core.DataEvent;
+import com.nazmul.giphy_viewer.core.FeedEngine;
+import com.nazmul.giphy_viewer.core.GiphyApi;
+import com.nazmul.giphy_viewer.core.GiphyTransport;
+import com.nazmul.giphy_viewer.core.MediaIndex;
+import com.nazmul.giphy_viewer.core.MediaPage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The {@link FeedEngine} operations that run on the main thread for every page: appending a page
+ * (<code>updateData</code>), replacing the feed on refresh (<code>resetData</code>) and dropping
+ * duplicates.
+ *
+ * <ol>
+ * <li>Requests are answered synchronously from memory, so only the engine's own work is measured.
+ * <li>{@link #appendPage()} refreshes the feed every {@link #PAGES_PER_SESSION} pages, so the feed
+ * stays at the size of a long but realistic scroll session instead of growing for the whole run.
+ * </ol>
+ */
+@State(Scope.Thread)
+public class FeedEngineBenchmark {
+
+public static final int PAGES_PER_SESSION = 40;
+
+private ImmediateGiphyApi giphyApi;
+private FeedEngine        engine;
+private MediaPage[]       pages;
+private MediaPage         duplicatePage;
+private int               nextPage;
+private DataEvent         lastEvent;
+
+@Setup
+public void setUp() throws IOException {
+  pages = RecordedPages.feedPages(PAGES_PER_SESSION + 1);
+  giphyApi = new ImmediateGiphyApi();
+  engine = FeedEngine.Builder.builder()
+                             .giphyApi(giphyApi)
+                             .mediaIndex(new MediaIndex(1))
+                             .scheduler(new FeedEngine.Scheduler() {
+                               @Override
+                               public void postDelayed(@NonNull Runnable runnable, long delayMs) {
+                               }
+
+                               @Override
+                               public void cancel(@NonNull Runnable runnable) {
+                               }
+                             })
+                             .listener(new FeedEngine.Listener() {
+                               @Override
+                               public void onAppModeChanged(@NonNull AppMode appMode) {
+                               }
+
+                               @Override
+                               public void onDataEvent(@NonNull DataEvent dataEvent) {
+                                 lastEvent = dataEvent;
+                               }
+                             })
+                             .build();
+  refresh(pages[0]);
+  duplicatePage = pages[0];
+}
+
+/**
+ * One page of new items arrives while scrolling.
+ */
+@Benchmark
+public DataEvent appendPage() {
+  if (nextPage == PAGES_PER_SESSION) refresh(pages[0]);
+  giphyApi.next = pages[nextPage++];
+  engine.requestMoreData();
+  return lastEvent;
+}
+
+/**
+ * Pull to refresh replaces the feed with a new first page. Alternates between two pages with
+ * different ids, so every refresh does the full amount of work.
+ */
+@Benchmark
+public DataEvent refreshFeed() {
+  refresh(pages[nextPage++ & 1]);
+  return lastEvent;
+}
+
+/**
+ * A page whose items are all on screen already (eg: trending shifted by a whole page), so every
+ * item is looked up and dropped.
+ */
+@Benchmark
+public DataEvent appendDuplicatePage() {
+  giphyApi.next = duplicatePage;
+  engine.requestMoreData();
+  return lastEvent;
+}
+
+private void refresh(MediaPage firstPage) {
+  giphyApi.next = firstPage;
+  engine.requestRefreshData(null);
+  nextPage = 1;
+}
+
+/**
+ * Answers every request right away with {@link #next}.
+ */
+private static final class ImmediateGiphyApi implements GiphyApi {
+
+  private static final GiphyTransport.Call DONE = () -> {
+  };
+
+  MediaPage next;
+
+  @Override
+  public GiphyTransport.Call makeTrendingRequest(
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler,
+      @Nullable Integer offset) {
+    return respond(runOnComplete, onResponseHandler);
+  }
+
+  @Override
+  public GiphyTransport.Call makeTrendingRequest(
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler,
+      @Nullable Integer offset,
+      boolean revalidate) {
+    return respond(runOnComplete, onResponseHandler);
+  }
+
+  @Override
+  public GiphyTransport.Call makeSearchRequest(
+      @Nullable String query,
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler,
+      @Nullable Integer offset) {
+    return respond(runOnComplete, onResponseHandler);
+  }
+
+  @Override
+  public GiphyTransport.Call makeSearchRequest(
+      @Nullable String query,
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler,
+      @Nullable Integer offset,
+      boolean revalidate) {
+    return respond(runOnComplete, onResponseHandler);
+  }
+
+  @Override
+  public GiphyTransport.Call makeGetByIdsRequest(
+      @NonNull List<String> ids,
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler) {
+    return respond(runOnComplete, onResponseHandler);
+  }
+
+  private GiphyTransport.Call respond(
+      @Nullable Runnable runOnComplete, @NonNull GiphyResultsHandler onResponseHandler) {
+    onResponseHandler.onResponse(next);
+    if (runOnComplete != null) runOnComplete.run();
+    return DONE;
+  }
+
+  @Override
+  public void setPageObserver(@Nullable PageObserver pageObserver) {
+  }
+
+  @Override
+  public void shutdown() {
+  }
+}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.benchmark;
+
+import com.nazmul.giphy_viewer.core.AppMode;
+import com.nazmul.giphy_viewer.core.DataEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Short lived objects that are built for every page and every mode switch. With the gc profiler,
+ * <code>gc.alloc.rate.norm</code> shows how many bytes each of these costs.
+ */
+@State(Scope.Thread)
+public class ModelChurnBenchmark {
+
+private final Map<AppMode, Integer> feeds = new HashMap<>();
+
+private int counter;
+
+public ModelChurnBenchmark() {
+  feeds.put(AppMode.Builder.builder().mode(AppMode.Mode.Trending).build(), 0);
+  feeds.put(AppMode.Builder.builder().mode(AppMode.Mode.Search).query("cats").build(), 1);
+}
+
+/**
+ * The event that's published for every page that's appended.
+ */
+@Benchmark
+public DataEvent buildGetMoreEvent() {
+  return DataEvent.Builder.builder()
+                          .type(DataEvent.Type.GetMore)
+                          .newSize(++counter & 31)
+                          .build();
+}
+
+/**
+ * The event that's published when a feed is refreshed or swapped in.
+ */
+@Benchmark
+public DataEvent buildRefreshEvent() {
+  return DataEvent.Builder.builder()
+                          .type(DataEvent.Type.Refresh)
+                          .position(++counter & 1023)
+                          .build();
+}
+
+/**
+ * A mode switch builds an {@link AppMode} and looks up its cached feed, which hashes it and
+ * compares it with the key.
+ */
+@Benchmark
+public Integer switchModeLookup() {
+  AppMode appMode = (++counter & 1) == 0
+                    ? AppMode.Builder.builder().mode(AppMode.Mode.Trending).build()
+                    : AppMode.Builder.builder().mode(AppMode.Mode.Search).query("cats").build();
+  return feeds.get(appMode);
+}
+}
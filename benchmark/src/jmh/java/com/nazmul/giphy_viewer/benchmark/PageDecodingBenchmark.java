@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.benchmark;
+
+import com.nazmul.giphy_viewer.core.MediaPage;
+import com.nazmul.giphy_viewer.core.ResponseDecoder;
+import com.nazmul.giphy_viewer.core.StreamingResponseDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Work that's done on a transport thread for every response: decoding the body into a {@link
+ * MediaPage}, and hashing the page's ids to tell whether a refreshed first page has changed.
+ *
+ * <ol>
+ * <li>The SDK based decoder in <code>:app</code> needs Android classes, so it's compared with the
+ * streaming decoder by <code>ResponseDecoderBenchmark</code> in the app's unit tests instead.
+ * </ol>
+ */
+@State(Scope.Thread)
+public class PageDecodingBenchmark {
+
+private final ResponseDecoder decoder = new StreamingResponseDecoder();
+
+private byte[]    trendingBody;
+private byte[]    searchBody;
+private MediaPage trendingPage;
+
+@Setup
+public void setUp() throws IOException {
+  trendingBody = RecordedPages.read(RecordedPages.TRENDING);
+  searchBody = RecordedPages.read(RecordedPages.SEARCH);
+  trendingPage = RecordedPages.decode(RecordedPages.TRENDING);
+}
+
+@Benchmark
+public MediaPage decodeTrendingPage() throws IOException {
+  return decoder.decode(new ByteArrayInputStream(trendingBody));
+}
+
+@Benchmark
+public MediaPage decodeSearchPage() throws IOException {
+  return decoder.decode(new ByteArrayInputStream(searchBody));
+}
+
+/**
+ * The "has this page changed" check that revalidation falls back to when the server doesn't send
+ * HTTP validators.
+ */
+@Benchmark
+public long contentHash() {
+  return trendingPage.getContentHash();
+}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.benchmark;
+
+import androidx.annotation.NonNull;
+import com.nazmul.giphy_viewer.core.MediaItem;
+import com.nazmul.giphy_viewer.core.MediaPage;
+import com.nazmul.giphy_viewer.core.StreamingResponseDecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payloads for the benchmarks, built from Giphy responses that were recorded from the real API.
+ *
+ * <ol>
+ * <li>{@link #TRENDING} and {@link #SEARCH} are the raw response bodies.
+ * <li>{@link #feedPages(int)} turns the recorded items into any number of distinct pages (the ids
+ * are made unique per page), so that a long scroll session can be replayed without every page
+ * being dropped as a duplicate.
+ * </ol>
+ */
+final class RecordedPages {
+
+static final String TRENDING = "/giphy/trending_page.json";
+static final String SEARCH   = "/giphy/search_page.json";
+
+private RecordedPages() {
+}
+
+@NonNull
+static byte[] read(@NonNull String resource) throws IOException {
+  try (InputStream in = RecordedPages.class.getResourceAsStream(resource)) {
+    if (in == null) throw new IOException("Missing resource: " + resource);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
+
+@NonNull
+static MediaPage decode(@NonNull String resource) throws IOException {
+  return new StreamingResponseDecoder().decode(new ByteArrayInputStream(read(resource)));
+}
+
+/**
+ * @return <code>count</code> pages, each with the recorded trending items and offsets that follow
+ * on from each other.
+ */
+@NonNull
+static MediaPage[] feedPages(int count) throws IOException {
+  List<MediaItem> recorded = decode(TRENDING).getItems();
+  MediaPage[] pages = new MediaPage[count];
+  for (int page = 0; page < count; page++) {
+    List<MediaItem> items = new ArrayList<>(recorded.size());
+    for (MediaItem item : recorded) {
+      items.add(new MediaItem(item.getId() + "-" + page,
+                              item.getTitle(),
+                              item.getSlug(),
+                              item.getTags(),
+                              item.getGrid(),
+                              item.getOriginal(),
+                              item.getDownsized()));
+    }
+    pages[page] = new MediaPage(items, Integer.MAX_VALUE, page * recorded.size());
+  }
+  return pages;
+}
+}
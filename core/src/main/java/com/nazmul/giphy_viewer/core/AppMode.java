@@ -14,17 +14,21 @@
  * limitations under the License.
  */
 
-package com.nazmul.giphy_viewer;
+package com.nazmul.giphy_viewer.core;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.Objects;
+
 /**
- * Specifies whether the app is in "search" or "trending" mode.
+ * Specifies whether the app is in "search", "trending" or "favorites" mode.
  *
  * <ol>
  * <li>With Search mode enabled, the "search" API endpoint is used.
- * <li>With it disabled, the "trending" API endpoint is used.
+ * <li>With Favorites mode enabled, the saved ids are looked up using the "get GIFs by id" API
+ * endpoint.
+ * <li>Otherwise, the "trending" API endpoint is used.
  * </ol>
  */
 public class AppMode {
@@ -60,11 +64,17 @@ private AppMode(@NonNull Mode mode, @Nullable String query) {
 
 public enum Mode {
   Search,
-  Trending
+  Trending,
+  Favorites
 }
 
 private Mode mode;
 
+@NonNull
+public Mode getMode() {
+  return mode;
+}
+
 public boolean isTrendingMode() {
   return mode == Mode.Trending;
 }
@@ -73,12 +83,29 @@ public boolean isSearchingMode() {
   return mode == mode.Search;
 }
 
+public boolean isFavoritesMode() {
+  return mode == Mode.Favorites;
+}
+
 private String query;
 
 public String getSearchQuery() {
   return query;
 }
 
+@Override
+public boolean equals(Object other) {
+  if (this == other) return true;
+  if (!(other instanceof AppMode)) return false;
+  AppMode appMode = (AppMode) other;
+  return mode == appMode.mode && Objects.equals(query, appMode.query);
+}
+
+@Override
+public int hashCode() {
+  return Objects.hash(mode, query);
+}
+
 public String toString() {
   StringBuilder stringBuilder = new StringBuilder();
   switch (mode) {
@@ -88,6 +115,9 @@ public String toString() {
     case Trending:
       stringBuilder.append(Mode.Trending.name());
       break;
+    case Favorites:
+      stringBuilder.append(Mode.Favorites.name());
+      break;
   }
   return stringBuilder.toString();
 }
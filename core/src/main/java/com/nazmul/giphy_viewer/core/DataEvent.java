@@ -14,7 +14,7 @@
  * limitations under the License.
  */
 
-package com.nazmul.giphy_viewer;
+package com.nazmul.giphy_viewer.core;
 
 import androidx.annotation.NonNull;
 
@@ -24,14 +24,17 @@ import androidx.annotation.NonNull;
  * <ol>
  * <li>Refresh - entirely new data set is available.
  * <li>Update - more data was added to existing set (the amount of new data is specified).
+ * <li>NotModified - a refresh was requested, but the server's data hasn't changed, so the existing
+ * set is still current.
  * </ol>
  */
 public class DataEvent {
 
 public static final class Builder {
 
-  private Type type    = Type.Refresh;
-  private int  newSize = 0;
+  private Type type     = Type.Refresh;
+  private int  newSize  = 0;
+  private int  position = NO_POSITION;
 
   public static Builder builder() {
     return new Builder();
@@ -47,19 +50,31 @@ public static final class Builder {
     return this;
   }
 
+  /**
+   * For Refresh events, the position that the list should be scrolled to.
+   */
+  public Builder position(int position) {
+    this.position = position;
+    return this;
+  }
+
   public DataEvent build() {
-    return new DataEvent(type, newSize);
+    return new DataEvent(type, newSize, position);
   }
 }
 
-private DataEvent(@NonNull Type mode, int query) {
+public static final int NO_POSITION = -1;
+
+private DataEvent(@NonNull Type mode, int query, int position) {
   this.type = mode;
   this.newSize = query;
+  this.position = position;
 }
 
 public enum Type {
   Refresh,
   GetMore,
+  NotModified,
   Error
 }
 
@@ -81,12 +96,22 @@ public boolean isGetMoreType() {
   return type == Type.GetMore;
 }
 
+public boolean isNotModifiedType() {
+  return type == Type.NotModified;
+}
+
 private int newSize;
 
 public int getNewSize() {
   return newSize;
 }
 
+private int position;
+
+public int getPosition() {
+  return position;
+}
+
 public String toString() {
   StringBuilder stringBuilder = new StringBuilder();
   switch (type) {
@@ -94,7 +119,10 @@ public String toString() {
       stringBuilder.append(Type.Refresh.name()).append(", newSize:").append(newSize);
       break;
     case Refresh:
-      stringBuilder.append(Type.Refresh.name());
+      stringBuilder.append(Type.Refresh.name()).append(", position:").append(position);
+      break;
+    case NotModified:
+      stringBuilder.append(Type.NotModified.name());
       break;
     case Error:
       stringBuilder.append(Type.Error.name());
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads a run of consecutive pages (eg: to jump or restore deep into a feed) by requesting several
+ * of them at once, rather than one after the other.
+ *
+ * <ol>
+ * <li>At most <code>maxInFlight</code> requests are outstanding at any time, and each one needs a
+ * permit from the {@link RateLimiter}. When there isn't one, the next request is scheduled for
+ * when there will be.
+ * <li>Pages can complete in any order. Each one is kept in its slot, and the callback gets them
+ * all at once, in offset order, when the last one completes.
+ * <li>When a page fails, the pages after it are stopped (they couldn't be appended without
+ * leaving a gap), and the callback gets the pages before it.
+ * <li>Like the {@link FeedEngine}, this is only used on the main thread. Once stopped, the
+ * callback is never run.
+ * </ol>
+ */
+final class FanOutFetch {
+
+interface PageRequester {
+  GiphyTransport.Call requestPage(int offset, @NonNull GiphyApi.GiphyResultsHandler handler);
+}
+
+interface Callback {
+  /**
+   * @param pages The pages that loaded, in offset order, up to the first one that failed.
+   */
+  void onComplete(@NonNull List<MediaPage> pages);
+}
+
+private final PageRequester         requester;
+private final FeedEngine.Scheduler  scheduler;
+private final RateLimiter           rateLimiter;
+private final int                   firstOffset;
+private final int                   pageSize;
+private final int                   maxInFlight;
+private final Callback              callback;
+private final MediaPage[]           pages;
+private final GiphyTransport.Call[] calls;
+private final Runnable              requestPages = this::requestPages;
+private       int                   requested;
+private       int                   inFlight;
+private       int                   pageCount;
+private       boolean               stopped;
+
+FanOutFetch(
+    @NonNull PageRequester requester,
+    @NonNull FeedEngine.Scheduler scheduler,
+    @NonNull RateLimiter rateLimiter,
+    int firstOffset,
+    int pageSize,
+    int pageCount,
+    int maxInFlight,
+    @NonNull Callback callback) {
+  this.requester = requester;
+  this.scheduler = scheduler;
+  this.rateLimiter = rateLimiter;
+  this.firstOffset = firstOffset;
+  this.pageSize = pageSize;
+  this.pageCount = pageCount;
+  this.maxInFlight = maxInFlight;
+  this.callback = callback;
+  this.pages = new MediaPage[pageCount];
+  this.calls = new GiphyTransport.Call[pageCount];
+}
+
+void start() {
+  requestPages();
+}
+
+void cancel() {
+  stopped = true;
+  scheduler.cancel(requestPages);
+  for (GiphyTransport.Call call : calls) {
+    if (call != null) call.cancel();
+  }
+}
+
+private void requestPages() {
+  while (!stopped && requested < pageCount && inFlight < maxInFlight) {
+    if (!rateLimiter.tryAcquire()) {
+      scheduler.postDelayed(requestPages, rateLimiter.getDelayMs());
+      return;
+    }
+    final int index = requested++;
+    inFlight++;
+    calls[index] = requester.requestPage(
+        firstOffset + index * pageSize,
+        new GiphyApi.GiphyResultsHandler() {
+          @Override
+          public void onResponse(MediaPage page) {
+            pages[index] = page;
+            onPageComplete(index);
+          }
+
+          @Override
+          public void onError() {
+            dropPagesFrom(index);
+            onPageComplete(index);
+          }
+        });
+  }
+  completeIfDone();
+}
+
+private void onPageComplete(int index) {
+  calls[index] = null;
+  inFlight--;
+  requestPages();
+}
+
+/**
+ * Stops loading this page and the ones after it.
+ */
+private void dropPagesFrom(int index) {
+  for (int i = index + 1; i < requested; i++) {
+    if (calls[i] != null) {
+      calls[i].cancel();
+      calls[i] = null;
+      inFlight--;
+    }
+  }
+  pageCount = index;
+  requested = Math.min(requested, index + 1);
+}
+
+private void completeIfDone() {
+  if (stopped || inFlight > 0 || requested < pageCount) return;
+  // Nothing is left to request, or to cancel.
+  stopped = true;
+  List<MediaPage> loaded = new ArrayList<>(pageCount);
+  for (int i = 0; i < pageCount && pages[i] != null; i++) {
+    loaded.add(pages[i]);
+  }
+  callback.onComplete(loaded);
+}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The GIFs that the user has kept, stored as nothing but their ids. The items themselves are
+ * looked up when the favorites are shown (see {@link AppMode.Mode#Favorites}), from the {@link
+ * MediaIndex} if they were seen recently, and from the Giphy API otherwise.
+ *
+ * <ol>
+ * <li>An id is a short string, so thousands of favorites take tens of kilobytes on disk, and the
+ * whole set is kept in memory.
+ * <li>Favorites are listed most recently added first.
+ * <li>It's changed on the main thread and saved on a background thread, so all access is
+ * synchronized.
+ * <li>It can be changed before it's loaded (the file is read in the background at startup). Those
+ * changes are applied again on top of what's loaded, so a favorite that's removed in the meantime
+ * doesn't come back.
+ * </ol>
+ */
+public final class FavoritesStore {
+
+private static final int FILE_VERSION = 1;
+
+/**
+ * Ordered from least to most recently added.
+ */
+private final LinkedHashSet<String> ids = new LinkedHashSet<>();
+
+/**
+ * Until {@link #load(File)} is called: whether each id that was changed was last added (true) or
+ * removed (false), ordered from least to most recently changed.
+ */
+private final Map<String, Boolean> changesBeforeLoad = new LinkedHashMap<>();
+private       boolean              loaded;
+
+public synchronized int size() {
+  return ids.size();
+}
+
+public synchronized boolean contains(@NonNull String id) {
+  return ids.contains(id);
+}
+
+/**
+ * @return true if the id was added, false if it was already a favorite.
+ */
+public synchronized boolean add(@NonNull String id) {
+  recordChange(id, true);
+  return ids.add(id);
+}
+
+/**
+ * @return true if the id was removed, false if it wasn't a favorite.
+ */
+public synchronized boolean remove(@NonNull String id) {
+  recordChange(id, false);
+  return ids.remove(id);
+}
+
+/**
+ * @return true if the id is now a favorite.
+ */
+public synchronized boolean toggle(@NonNull String id) {
+  boolean added = !ids.contains(id);
+  return added ? add(id) : !remove(id);
+}
+
+/**
+ * @return A copy of the ids, most recently added first.
+ */
+@NonNull
+public synchronized List<String> getIds() {
+  List<String> copy = new ArrayList<>(ids);
+  Collections.reverse(copy);
+  return copy;
+}
+
+// Persistence.
+
+/**
+ * Written to a temporary file first, so a crash mid-write can't corrupt the existing favorites.
+ */
+public synchronized void save(@NonNull File file) throws IOException {
+  File tempFile = new File(file.getPath() + ".tmp");
+  try (DataOutputStream out =
+           new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+    out.writeInt(FILE_VERSION);
+    out.writeInt(ids.size());
+    for (String id : ids) {
+      out.writeUTF(id);
+    }
+  }
+  if (!tempFile.renameTo(file)) throw new IOException("Could not replace " + file);
+}
+
+/**
+ * Changes that were made before loading (ie, since the app started) are applied on top of the
+ * file's ids: ids that were added are kept, as the most recently added ones, and ids that were
+ * removed stay removed.
+ */
+public synchronized void load(@NonNull File file) throws IOException {
+  try {
+    if (!file.exists()) return;
+    try (DataInputStream in =
+             new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != FILE_VERSION) return;
+      int count = in.readInt();
+      ids.clear();
+      for (int i = 0; i < count; i++) {
+        ids.add(in.readUTF());
+      }
+      for (Map.Entry<String, Boolean> change : changesBeforeLoad.entrySet()) {
+        ids.remove(change.getKey());
+        if (change.getValue()) ids.add(change.getKey());
+      }
+    }
+  } finally {
+    loaded = true;
+    changesBeforeLoad.clear();
+  }
+}
+
+private void recordChange(@NonNull String id, boolean added) {
+  if (loaded) return;
+  // Re-inserted, so the map stays ordered by the most recent change.
+  changesBeforeLoad.remove(id);
+  changesBeforeLoad.put(id, added);
+}
+}
@@ -0,0 +1,991 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Paging, caching and request logic for the feed, with no dependencies on the Android framework.
+ * The app's ViewModel is a thin adapter over this class, which turns {@link Listener} callbacks
+ * into LiveData.
+ *
+ * <ol>
+ * <li>This class is not thread safe. All its methods must be called on one thread, and the
+ * {@link GiphyApi} and {@link Scheduler} it's given must run their callbacks on that same thread
+ * (the main thread, in the app).
+ * <li>Feeds for the most recently used {@link AppMode}s are kept in memory, so that switching back
+ * to one shows it right away at the position it was left at.
+ * <li>Call {@link #shutdown()} when the engine is no longer needed. It doesn't shut down the
+ * {@link GiphyApi}, which is owned by the caller.
+ * </ol>
+ */
+public final class FeedEngine {
+
+public static final class Builder {
+
+  private GiphyApi       giphyApi;
+  private MediaIndex     mediaIndex;
+  private Scheduler      scheduler;
+  private Clock          clock          = System::currentTimeMillis;
+  private Listener       listener       = null;
+  private Metrics        metrics        = null;
+  private Tracer         tracer         = null;
+  private RateLimiter    rateLimiter    = null;
+  private FavoritesStore favoritesStore = null;
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public Builder giphyApi(@NonNull GiphyApi giphyApi) {
+    this.giphyApi = giphyApi;
+    return this;
+  }
+
+  /**
+   * @param mediaIndex Used to show local results while a search request is in flight, and to show
+   *                   favorites without looking them up again. The caller is responsible for
+   *                   filling it (eg: using a {@link GiphyApi.PageObserver}) and for persisting
+   *                   it.
+   */
+  public Builder mediaIndex(@NonNull MediaIndex mediaIndex) {
+    this.mediaIndex = mediaIndex;
+    return this;
+  }
+
+  public Builder scheduler(@NonNull Scheduler scheduler) {
+    this.scheduler = scheduler;
+    return this;
+  }
+
+  public Builder clock(@NonNull Clock clock) {
+    this.clock = clock;
+    return this;
+  }
+
+  public Builder listener(@Nullable Listener listener) {
+    this.listener = listener;
+    return this;
+  }
+
+  /**
+   * @param metrics The number of feeds, pages and items that are kept in memory are published to
+   *                this as gauges. They must only be read on the engine's thread.
+   */
+  public Builder metrics(@Nullable Metrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  /**
+   * @param tracer Pages being published, and requests for more, are traced at {@link
+   *               Tracer.Level#Info}.
+   */
+  public Builder tracer(@Nullable Tracer tracer) {
+    this.tracer = tracer;
+    return this;
+  }
+
+  /**
+   * @param rateLimiter Caps how fast pages are requested when several are loaded at once (by
+   *                    {@link #requestMoreData(int)} and {@link #restore}). Single requests
+   *                    (refreshes, and loading the next page) don't wait for it, but they are
+   *                    charged to it, so share it with {@link Hedging} to keep hedges within the
+   *                    same quota. By default, {@link #RATE_LIMIT_BURST} right away and then one
+   *                    every {@link #RATE_LIMIT_REFILL_MS}.
+   */
+  public Builder rateLimiter(@Nullable RateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+    return this;
+  }
+
+  /**
+   * @param favoritesStore The ids that are shown in {@link AppMode.Mode#Favorites}. The caller is
+   *                       responsible for persisting it. By default, an empty store.
+   */
+  public Builder favoritesStore(@Nullable FavoritesStore favoritesStore) {
+    this.favoritesStore = favoritesStore;
+    return this;
+  }
+
+  public FeedEngine build() {
+    if (giphyApi == null) throw new IllegalStateException("giphyApi is required");
+    if (mediaIndex == null) throw new IllegalStateException("mediaIndex is required");
+    if (scheduler == null) throw new IllegalStateException("scheduler is required");
+    return new FeedEngine(this);
+  }
+}
+
+private final GiphyApi       giphyApi;
+private final MediaIndex     mediaIndex;
+private final Scheduler      scheduler;
+private final Clock          clock;
+private final RateLimiter    rateLimiter;
+private final FavoritesStore favoritesStore;
+@Nullable
+private final Tracer         tracer;
+@Nullable
+private       Listener       listener;
+
+private FeedEngine(@NonNull Builder builder) {
+  this.giphyApi = builder.giphyApi;
+  this.mediaIndex = builder.mediaIndex;
+  this.scheduler = builder.scheduler;
+  this.clock = builder.clock;
+  this.listener = builder.listener;
+  this.tracer = builder.tracer;
+  this.rateLimiter = builder.rateLimiter != null
+                     ? builder.rateLimiter
+                     : new RateLimiter(RATE_LIMIT_BURST, RATE_LIMIT_REFILL_MS, clock);
+  this.favoritesStore =
+      builder.favoritesStore != null ? builder.favoritesStore : new FavoritesStore();
+  if (builder.metrics != null) registerGauges(builder.metrics);
+}
+
+/**
+ * Cancels any pending search and in flight requests. No more {@link Listener} callbacks are made
+ * after this.
+ */
+public void shutdown() {
+  scheduler.cancel(debouncedSearch);
+  refreshCallbacks.clear();
+  cancelInFlightRequests();
+  listener = null;
+}
+
+// Small interfaces that the platform provides.
+
+/**
+ * Runs delayed tasks on the engine's thread (eg: an Android Handler).
+ */
+public interface Scheduler {
+  void postDelayed(@NonNull Runnable runnable, long delayMs);
+
+  void cancel(@NonNull Runnable runnable);
+}
+
+public interface Clock {
+  long currentTimeMillis();
+}
+
+public interface Listener {
+  void onAppModeChanged(@NonNull AppMode appMode);
+
+  void onDataEvent(@NonNull DataEvent dataEvent);
+}
+
+// Manage AppMode.
+
+@NonNull
+private AppMode appMode = AppMode.Builder.builder().mode(AppMode.Mode.Trending).build();
+
+@NonNull
+public AppMode getAppMode() {
+  return appMode;
+}
+
+/**
+ * Switch to trending. If trending was loaded recently, it's shown right away at the position it
+ * was left at, otherwise it's refreshed.
+ */
+public void setTrendingMode() {
+  scheduler.cancel(debouncedSearch);
+  AppMode appMode = AppMode.Builder.builder().mode(AppMode.Mode.Trending).build();
+  if (switchMode(appMode) && !hasDataFor(appMode)) {
+    requestRefreshData(null);
+  }
+}
+
+/**
+ * Switch to search mode for this query.
+ *
+ * <ol>
+ * <li>If this query was searched recently, its results are shown right away at the position they
+ * were left at.
+ * <li>Otherwise, if a prefix of this query was searched (eg: "cat" for "cats"), its results are
+ * shown while the request for this query is in flight.
+ * <li>Otherwise, matches from the local {@link MediaIndex} are shown while the request is in
+ * flight (and stay on screen if it fails, eg: when offline).
+ * </ol>
+ */
+public void setSearchMode(String query) {
+  setSearchMode(query, false);
+}
+
+/**
+ * @param provisional True for a search that was run as the user typed, see {@link
+ *                    #provisionalSearch}.
+ */
+private void setSearchMode(String query, boolean provisional) {
+  AppMode appMode = AppMode.Builder.builder().mode(AppMode.Mode.Search).query(query).build();
+  if (appMode.equals(this.appMode)) {
+    // Submitting the search that was run as the user typed settles it.
+    if (!provisional) settleSearch();
+    return;
+  }
+  switchMode(appMode);
+  if (provisional) provisionalSearch = appMode;
+  if (hasDataFor(appMode)) return;
+
+  FeedState prefix = feedStateCache.findLongestSearchPrefix(query, MIN_SEARCH_QUERY_LENGTH);
+  if (prefix == null && isSearchPrefix(currentState, query)) prefix = currentState;
+  if (prefix != null) {
+    if (prefix != currentState) showState(prefix);
+  } else {
+    List<MediaItem> localResults = mediaIndex.search(query, MAX_LOCAL_SEARCH_RESULTS);
+    if (!localResults.isEmpty()) showState(FeedState.placeholder(appMode, localResults));
+  }
+  requestRefreshData(null);
+}
+
+/**
+ * Switch to the user's favorites. Like trending, if they were loaded recently they are shown right
+ * away, otherwise they are refreshed.
+ */
+public void setFavoritesMode() {
+  scheduler.cancel(debouncedSearch);
+  AppMode appMode = AppMode.Builder.builder().mode(AppMode.Mode.Favorites).build();
+  if (switchMode(appMode) && !hasDataFor(appMode)) {
+    requestRefreshData(null);
+  }
+}
+
+/**
+ * Requests that were made for the previous mode are cancelled, so that their results don't land
+ * on top of the new mode's data. Then the new mode's cached state (if any) is swapped in, and
+ * revalidated if it's old.
+ *
+ * @return false if the engine is already in this mode.
+ */
+private boolean switchMode(@NonNull AppMode appMode) {
+  if (appMode.equals(this.appMode)) return false;
+  // Leaving search for another feed settles the search that's on screen, while going on to
+  // another search replaces it.
+  if (appMode.isSearchingMode()) {
+    provisionalSearch = null;
+  } else {
+    settleSearch();
+  }
+  cancelInFlightRequests();
+  this.appMode = appMode;
+  if (listener != null) listener.onAppModeChanged(appMode);
+
+  FeedState cached = feedStateCache.get(appMode);
+  if (cached != null && !cached.getItems().isEmpty()) {
+    showState(cached);
+    if (cached.isStale(clock.currentTimeMillis(), REVALIDATE_AFTER_MS)) {
+      requestRefreshData(null);
+    }
+  }
+  return true;
+}
+
+// Per AppMode feed states.
+
+public static final int  MAX_CACHED_FEEDS         = 8;
+public static final long REVALIDATE_AFTER_MS      = 60 * 1000;
+public static final int  MAX_LOCAL_SEARCH_RESULTS = 50;
+
+private final FeedStateCache feedStateCache = new FeedStateCache(MAX_CACHED_FEEDS);
+
+/**
+ * The feed that's on screen (null until the first refresh). Its mode can lag behind {@link
+ * #getAppMode()} between a mode change and the refresh that follows it.
+ */
+@Nullable
+private FeedState currentState;
+
+public static final String METRIC_ITEMS_RETAINED = "feed.items_retained";
+public static final String METRIC_PAGES_RETAINED = "feed.pages_retained";
+
+private void registerGauges(@NonNull Metrics metrics) {
+  metrics.gauge(METRIC_ITEMS_RETAINED, feedStateCache::getRetainedItems);
+  metrics.gauge(
+      METRIC_PAGES_RETAINED,
+      () -> feedStateCache.getRetainedPages(GiphyClient.MAX_ITEMS_PER_REQUEST));
+}
+
+private boolean hasDataFor(@NonNull AppMode appMode) {
+  return currentState != null
+         && !currentState.isPlaceholder()
+         && currentState.getMode().equals(appMode);
+}
+
+// Search as you type.
+
+public static final long SEARCH_DEBOUNCE_MS      = 300;
+public static final int  MIN_SEARCH_QUERY_LENGTH = 2;
+
+private       String   pendingQuery;
+private final Runnable debouncedSearch = () -> setSearchMode(pendingQuery, true);
+
+/**
+ * The search that was run by the debounce as the user typed (eg: "ca", "cat" on the way to
+ * "cats"), until it's settled. Its feed state isn't put in the {@link FeedStateCache}, so that one
+ * typing session doesn't evict the feeds that are there (eg: trending). It's cached once it's
+ * settled, ie: when it's submitted, or when the user leaves it for a feed that isn't a search.
+ */
+@Nullable
+private AppMode provisionalSearch;
+
+/**
+ * Called on every keystroke. The search only runs once the user has stopped typing for {@link
+ * #SEARCH_DEBOUNCE_MS}, so a burst of keystrokes results in a single request.
+ */
+public void onSearchQueryChanged(@NonNull String text) {
+  scheduler.cancel(debouncedSearch);
+  final String query = text.trim();
+  if (query.length() < MIN_SEARCH_QUERY_LENGTH || isCurrentSearch(query)) return;
+  pendingQuery = query;
+  scheduler.postDelayed(debouncedSearch, SEARCH_DEBOUNCE_MS);
+}
+
+/**
+ * Search for this query right away (eg: when the user presses enter).
+ */
+public void submitSearch(@NonNull String text) {
+  scheduler.cancel(debouncedSearch);
+  final String query = text.trim();
+  if (query.isEmpty()) return;
+  setSearchMode(query);
+}
+
+private boolean isCurrentSearch(@NonNull String query) {
+  return appMode.isSearchingMode() && query.equals(appMode.getSearchQuery());
+}
+
+private void settleSearch() {
+  if (provisionalSearch != null && currentState != null
+      && currentState.getMode().equals(provisionalSearch)) {
+    feedStateCache.put(currentState);
+  }
+  provisionalSearch = null;
+}
+
+/**
+ * @return true if the state has the results of a search for a proper prefix of this query (eg: an
+ * uncached provisional search for "cat", while typing "cats").
+ */
+private static boolean isSearchPrefix(@Nullable FeedState state, @NonNull String query) {
+  if (state == null || state.isPlaceholder() || state.getItems().isEmpty()) return false;
+  AppMode mode = state.getMode();
+  return mode.isSearchingMode()
+         && mode.getSearchQuery().length() < query.length()
+         && query.startsWith(mode.getSearchQuery());
+}
+
+// Current scrolled position of the list.
+
+public int getPosition() {
+  return currentState == null ? 0 : currentState.getPosition();
+}
+
+public void setPosition(int position) {
+  if (currentState != null) currentState.setPosition(position);
+}
+
+// Underlying data storage.
+
+public List<MediaItem> getUnderlyingData() {
+  return currentState == null ? Collections.emptyList() : currentState.getItems();
+}
+
+// In flight requests.
+
+private static final int NOT_LOADING = -1;
+
+@Nullable
+private GiphyTransport.Call refreshCall;
+@Nullable
+private GiphyTransport.Call moreCall;
+@Nullable
+private FanOutFetch         moreFetch;
+
+/**
+ * The mode that {@link #refreshCall} was made for, until it completes. Refreshes that are asked
+ * for in the meantime join it instead of making another request.
+ */
+@Nullable
+private       AppMode        refreshingMode;
+private final List<Runnable> refreshCallbacks = new ArrayList<>();
+
+/**
+ * The offset of the first page that {@link #moreCall} or {@link #moreFetch} is loading, until it
+ * completes.
+ */
+private int loadingOffset = NOT_LOADING;
+
+/**
+ * A refresh that's cancelled (eg: by switching to another feed) still completes its callers, so
+ * that (eg) the pull to refresh spinner is hidden.
+ */
+private void cancelInFlightRequests() {
+  cancelRestore();
+  cancelMore();
+  if (refreshCall != null) refreshCall.cancel();
+  refreshCall = null;
+  refreshOnResume = false;
+  moreOnResume = false;
+  onRefreshComplete();
+}
+
+private void cancelMore() {
+  if (moreCall != null) moreCall.cancel();
+  if (moreFetch != null) moreFetch.cancel();
+  moreCall = null;
+  moreFetch = null;
+  loadingOffset = NOT_LOADING;
+}
+
+// Pausing while the app is in the background.
+
+private boolean paused;
+private boolean refreshOnResume;
+private boolean moreOnResume;
+
+/**
+ * Stops making requests (eg: when the app goes to the background) until {@link #resume()}. The
+ * feed states are kept as they are.
+ *
+ * <ol>
+ * <li>A refresh that's in flight is cancelled, and so is one that's asked for while paused. Either
+ * way it's made on resume, and its <code>runOnRefreshComplete</code> callbacks run when it
+ * completes.
+ * <li>Loading more pages is cancelled, and asking for more while paused is ignored. If a load was
+ * cancelled, it's made again on resume.
+ * <li>A restore that's in flight is left to finish, so the feed that's being restored isn't lost.
+ * </ol>
+ */
+public void pause() {
+  if (paused) return;
+  paused = true;
+  if (tracer != null) tracer.instant(Tracer.Level.Info, TRACE_PAUSE, 0);
+  if (loadingOffset != NOT_LOADING) moreOnResume = true;
+  cancelMore();
+  if (refreshingMode != null) {
+    if (refreshCall != null) refreshCall.cancel();
+    refreshCall = null;
+    refreshingMode = null;
+    refreshOnResume = true;
+  }
+}
+
+/**
+ * Makes the requests that were cancelled or deferred by {@link #pause()}. The feed on screen isn't
+ * revalidated, even if it's old, since a changed first page would replace it and lose the user's
+ * place in it.
+ */
+public void resume() {
+  if (!paused) return;
+  paused = false;
+  if (tracer != null) tracer.instant(Tracer.Level.Info, TRACE_RESUME, 0);
+  boolean refresh = refreshOnResume;
+  boolean more = moreOnResume;
+  refreshOnResume = false;
+  moreOnResume = false;
+  if (refresh) {
+    requestRefreshData(null);
+  } else if (more) {
+    requestMoreData();
+  }
+}
+
+public boolean isPaused() {
+  return paused;
+}
+
+// Methods that UI can use to request API calls.
+
+/**
+ * Reload the first page for the current mode. If a refresh for this mode is already in flight
+ * (eg: pull to refresh while the first page is loading), no new request is made, and
+ * <code>runOnRefreshComplete</code> is run when the one in flight completes.
+ */
+public void requestRefreshData(@Nullable Runnable runOnRefreshComplete) {
+  final AppMode appMode = this.appMode;
+  if (runOnRefreshComplete != null) refreshCallbacks.add(runOnRefreshComplete);
+  if (paused) {
+    refreshOnResume = true;
+    return;
+  }
+  if (appMode.equals(refreshingMode)) return;
+  // Whatever was being restored is about to be replaced by the first page.
+  cancelRestore();
+  if (refreshCall != null) refreshCall.cancel();
+  refreshingMode = appMode;
+  if (tracer != null) tracer.instant(Tracer.Level.Info, TRACE_REQUEST_REFRESH, 0);
+
+  // This feed is already on screen, so only re-render it if the first page actually changed.
+  final boolean revalidate = hasDataFor(appMode) && !getUnderlyingData().isEmpty();
+  GiphyApi.GiphyResultsHandler resultsHandler = new GiphyApi.GiphyResultsHandler() {
+    @Override
+    public void onResponse(MediaPage page) {
+      resetData(appMode, page);
+    }
+
+    @Override
+    public void onNotModified() {
+      notModifiedData();
+    }
+
+    @Override
+    public void onError() {
+      if (!appMode.isSearchingMode()) errorData();
+    }
+  };
+
+  rateLimiter.charge();
+  if (appMode.isTrendingMode()) {
+    refreshCall = giphyApi.makeTrendingRequest(
+        this::onRefreshComplete, resultsHandler, null, revalidate);
+  } else if (appMode.isFavoritesMode()) {
+    // Pick up the favorites that were added or removed since the last refresh.
+    favoriteIds = favoritesStore.getIds();
+    refreshCall = requestFavoritesPage(0, this::onRefreshComplete, resultsHandler);
+  } else {
+    refreshCall = giphyApi.makeSearchRequest(
+        appMode.getSearchQuery(), this::onRefreshComplete, resultsHandler, null, revalidate);
+  }
+}
+
+private void onRefreshComplete() {
+  refreshingMode = null;
+  List<Runnable> callbacks = new ArrayList<>(refreshCallbacks);
+  refreshCallbacks.clear();
+  for (Runnable callback : callbacks) {
+    callback.run();
+  }
+}
+
+/**
+ * @return false once the feed on screen has been loaded up to its end, after which asking for more
+ * does nothing. Only the favorites feed (a list of ids) is known to end; the others are treated
+ * as endless.
+ */
+public boolean hasMore() {
+  if (!appMode.isFavoritesMode() || !hasDataFor(appMode)) return true;
+  return currentState.getNextOffset() < getFavoriteIds().size();
+}
+
+/**
+ * Load the page after the ones in the current feed. If that page is already loading (eg: the
+ * list asked for more twice while scrolling), no new request is made.
+ */
+public void requestMoreData() {
+  final AppMode appMode = this.appMode;
+  if (paused || !hasMore()) return;
+  if (!hasDataFor(appMode)) {
+    // The data on screen is a placeholder (eg: results for a prefix of the query) and the
+    // refresh that replaces it is in flight. Paging it now would mix two result sets.
+    return;
+  }
+  final FeedState state = currentState;
+  final int offset = state.getNextOffset();
+  if (offset == loadingOffset) return;
+  cancelMore();
+  loadingOffset = offset;
+  if (tracer != null) tracer.instant(Tracer.Level.Info, TRACE_REQUEST_MORE, offset);
+
+  GiphyApi.GiphyResultsHandler resultsHandler = new GiphyApi.GiphyResultsHandler() {
+    @Override
+    public void onResponse(MediaPage page) {
+      loadingOffset = NOT_LOADING;
+      updateData(state, Collections.singletonList(page));
+    }
+
+    @Override
+    public void onError() {
+      loadingOffset = NOT_LOADING;
+      if (!appMode.isSearchingMode()) errorData();
+    }
+  };
+
+  rateLimiter.charge();
+  moreCall = requestPage(appMode, offset, resultsHandler);
+}
+
+/**
+ * Load the next <code>pageCount</code> pages at once (eg: when the list is flung towards the end
+ * of the feed). They are requested in parallel, and published as a single GetMore event, in
+ * offset order, once they have all loaded.
+ */
+public void requestMoreData(int pageCount) {
+  if (pageCount <= 1) {
+    requestMoreData();
+    return;
+  }
+  final AppMode appMode = this.appMode;
+  if (paused || !hasMore() || !hasDataFor(appMode)) return;
+  final FeedState state = currentState;
+  final int offset = state.getNextOffset();
+  if (offset == loadingOffset) return;
+  cancelMore();
+  loadingOffset = offset;
+  if (tracer != null) tracer.instant(Tracer.Level.Info, TRACE_REQUEST_MORE, offset);
+
+  moreFetch = fanOut(appMode, offset, pageCount, pages -> {
+    moreFetch = null;
+    loadingOffset = NOT_LOADING;
+    if (!pages.isEmpty()) {
+      updateData(state, pages);
+    } else if (!appMode.isSearchingMode()) {
+      errorData();
+    }
+  });
+}
+
+private GiphyTransport.Call requestPage(
+    @NonNull AppMode appMode, int offset, @NonNull GiphyApi.GiphyResultsHandler resultsHandler) {
+  if (appMode.isTrendingMode()) {
+    return giphyApi.makeTrendingRequest(null, resultsHandler, offset);
+  } else if (appMode.isFavoritesMode()) {
+    return requestFavoritesPage(offset, null, resultsHandler);
+  } else {
+    return giphyApi.makeSearchRequest(appMode.getSearchQuery(), null, resultsHandler, offset);
+  }
+}
+
+/**
+ * Favorites are paged through in {@link #FAVORITES_PAGE_SIZE} ids, and every other mode in pages
+ * of {@link GiphyClient#MAX_ITEMS_PER_REQUEST} items.
+ */
+private static int pageSizeOf(@NonNull AppMode appMode) {
+  return appMode.isFavoritesMode() ? FAVORITES_PAGE_SIZE : GiphyClient.MAX_ITEMS_PER_REQUEST;
+}
+
+// Saving and restoring the feed (eg: across process death).
+
+public static final int MAX_RESTORE_PAGES = 8;
+
+@Nullable
+private FanOutFetch restoring;
+
+/**
+ * @return The offset of the page after the ones in the current feed, which is saved along with
+ * the mode and position so that a {@link FeedSnapshot} can be rebuilt without its items.
+ */
+public int getNextOffset() {
+  return currentState == null ? 0 : currentState.getNextOffset();
+}
+
+/**
+ * @return A copy of the feed that's on screen, or null if there's nothing worth restoring (it
+ * hasn't loaded yet, or it's a placeholder).
+ */
+@Nullable
+public FeedSnapshot snapshot() {
+  FeedState state = currentState;
+  if (state == null || state.isPlaceholder() || state.getItems().isEmpty()) return null;
+  return new FeedSnapshot(state.getMode(),
+                          state.getNextOffset(),
+                          state.getPosition(),
+                          state.getRefreshedAtMs(),
+                          new ArrayList<>(state.getItems()));
+}
+
+/**
+ * @return true while the pages requested by {@link #restore} are loading.
+ */
+public boolean isRestoring() {
+  return restoring != null;
+}
+
+/**
+ * Put the feed back the way it was before the process was killed. Call this on a new engine,
+ * instead of making the first refresh.
+ *
+ * <ol>
+ * <li><code>saved</code> supplies the mode, next offset and position (eg: from saved instance
+ * state); its items are ignored. <code>fromDisk</code> supplies the items, unless it's missing or
+ * for another mode.
+ * <li>If those items reach the saved position, the feed is shown right away, without any
+ * requests.
+ * <li>Otherwise, the pages from the end of those items up to the one at the saved position (at
+ * most {@link #MAX_RESTORE_PAGES}) are requested in parallel, and the feed is shown when the last
+ * of them completes. Pages after one that failed are dropped, and the position is clamped to what
+ * was loaded.
+ * <li>If nothing could be restored, the feed is refreshed instead.
+ * </ol>
+ */
+public void restore(@NonNull FeedSnapshot saved, @Nullable FeedSnapshot fromDisk) {
+  cancelInFlightRequests();
+  appMode = saved.getMode();
+  if (listener != null) listener.onAppModeChanged(appMode);
+
+  FeedSnapshot snapshot = fromDisk != null && fromDisk.getMode().equals(appMode) ? fromDisk : null;
+  List<MediaItem> items = snapshot == null ? Collections.emptyList() : snapshot.getItems();
+  int nextOffset = snapshot == null ? 0 : snapshot.getNextOffset();
+  long refreshedAtMs = snapshot == null ? 0 : snapshot.getRefreshedAtMs();
+
+  int pageCount = 0;
+  if (items.size() <= saved.getPosition()) {
+    int pageSize = pageSizeOf(appMode);
+    // Offsets also count the duplicates that were dropped, so go one page past the position.
+    int targetOffset =
+        Math.min(saved.getNextOffset(), (saved.getPosition() / pageSize + 2) * pageSize);
+    pageCount = Math.max(0, (targetOffset - nextOffset + pageSize - 1) / pageSize);
+    pageCount = Math.min(pageCount, MAX_RESTORE_PAGES);
+  }
+  if (tracer != null) tracer.instant(Tracer.Level.Info, TRACE_RESTORE, pageCount);
+
+  final int position = saved.getPosition();
+  final FeedState state = feedStateCache.getOrCreate(appMode);
+  state.restore(items, nextOffset, refreshedAtMs);
+  restoring = fanOut(appMode, nextOffset, pageCount, pages -> {
+    restoring = null;
+    for (MediaPage page : pages) {
+      state.append(page.getItems(), page.getSpan());
+    }
+    if (state.getItems().isEmpty()) {
+      requestRefreshData(null);
+      return;
+    }
+    state.setPosition(Math.min(position, state.getItems().size() - 1));
+    showState(state);
+  });
+}
+
+private void cancelRestore() {
+  if (restoring != null) restoring.cancel();
+  restoring = null;
+}
+
+// Favorites.
+
+public static final int FAVORITES_PAGE_SIZE = GiphyClient.MAX_IDS_PER_REQUEST;
+
+private static final AppMode FAVORITES =
+    AppMode.Builder.builder().mode(AppMode.Mode.Favorites).build();
+
+/**
+ * The ids that the favorites feed is paging through. It's copied from the {@link FavoritesStore}
+ * when the feed is refreshed, so that adding or removing a favorite doesn't shift the offsets of
+ * the pages that are already loaded.
+ */
+@Nullable
+private List<String> favoriteIds;
+
+/**
+ * Call this when favorites are added or removed. If the favorites feed isn't on screen, its
+ * cached copy is dropped, so it's refreshed the next time it's shown. If it is, it's left alone
+ * until the user refreshes it (so items don't disappear from under them).
+ */
+public void onFavoritesChanged() {
+  if (!appMode.isFavoritesMode()) feedStateCache.remove(FAVORITES);
+}
+
+/**
+ * @return The ids being paged through, which are taken from the store if there's no refresh to
+ * have taken them (eg: the feed was restored from a snapshot).
+ */
+@NonNull
+private List<String> getFavoriteIds() {
+  if (favoriteIds == null) favoriteIds = favoritesStore.getIds();
+  return favoriteIds;
+}
+
+/**
+ * Builds one page of favorites from the ids at this offset.
+ *
+ * <ol>
+ * <li>Items that are in the {@link MediaIndex} are used as they are. The rest are looked up with a
+ * single {@link GiphyApi#makeGetByIdsRequest} (the page size is the most that it takes).
+ * <li>The page keeps the order of the ids. Ids that the server doesn't return (eg: the GIF was
+ * deleted) are left out, but still count towards the page's span, so the next page starts after
+ * them.
+ * <li>When no lookup is needed, the page is still delivered asynchronously (through the {@link
+ * Scheduler}), like any other response.
+ * </ol>
+ */
+private GiphyTransport.Call requestFavoritesPage(
+    int offset,
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyApi.GiphyResultsHandler resultsHandler) {
+  final List<String> allIds = getFavoriteIds();
+  final int totalCount = allIds.size();
+  final List<String> ids = new ArrayList<>(
+      allIds.subList(Math.min(offset, totalCount),
+                     Math.min(offset + FAVORITES_PAGE_SIZE, totalCount)));
+  final Map<String, MediaItem> found = new HashMap<>();
+  List<String> missing = new ArrayList<>();
+  for (String id : ids) {
+    MediaItem item = mediaIndex.get(id);
+    if (item != null) {
+      found.put(id, item);
+    } else {
+      missing.add(id);
+    }
+  }
+
+  if (missing.isEmpty()) {
+    final Runnable deliver = () -> {
+      resultsHandler.onResponse(favoritesPage(ids, found, totalCount, offset));
+      if (runOnComplete != null) runOnComplete.run();
+    };
+    scheduler.postDelayed(deliver, 0);
+    return () -> scheduler.cancel(deliver);
+  }
+
+  return giphyApi.makeGetByIdsRequest(
+      missing,
+      runOnComplete,
+      new GiphyApi.GiphyResultsHandler() {
+        @Override
+        public void onResponse(MediaPage page) {
+          for (MediaItem item : page.getItems()) {
+            found.put(item.getId(), item);
+          }
+          resultsHandler.onResponse(favoritesPage(ids, found, totalCount, offset));
+        }
+
+        @Override
+        public void onError() {
+          resultsHandler.onError();
+        }
+      });
+}
+
+private static MediaPage favoritesPage(
+    @NonNull List<String> ids, @NonNull Map<String, MediaItem> found, int totalCount, int offset) {
+  List<MediaItem> items = new ArrayList<>(found.size());
+  for (String id : ids) {
+    MediaItem item = found.get(id);
+    if (item != null) items.add(item);
+  }
+  return new MediaPage(items, totalCount, offset, ids.size());
+}
+
+// Fetching several pages at once.
+
+public static final int  MAX_PAGES_IN_FLIGHT  = 4;
+public static final int  RATE_LIMIT_BURST     = 8;
+public static final long RATE_LIMIT_REFILL_MS = 250;
+
+/**
+ * Requests these pages in parallel, and hands them to the callback in offset order. If they are
+ * all available right away (ie, there are none), the callback is run before this returns.
+ *
+ * @return The fetch, so it can be cancelled. It's null if the callback has already run.
+ */
+@Nullable
+private FanOutFetch fanOut(
+    @NonNull AppMode appMode, int offset, int pageCount, @NonNull FanOutFetch.Callback callback) {
+  if (appMode.isFavoritesMode()) {
+    // Don't ask for pages past the end of the ids.
+    int idsLeft = Math.max(0, getFavoriteIds().size() - offset);
+    pageCount = Math.min(pageCount, (idsLeft + FAVORITES_PAGE_SIZE - 1) / FAVORITES_PAGE_SIZE);
+  }
+  final boolean[] completed = {false};
+  FanOutFetch fetch = new FanOutFetch(
+      (pageOffset, resultsHandler) -> requestPage(appMode, pageOffset, resultsHandler),
+      scheduler,
+      rateLimiter,
+      offset,
+      pageSizeOf(appMode),
+      pageCount,
+      MAX_PAGES_IN_FLIGHT,
+      pages -> {
+        completed[0] = true;
+        callback.onComplete(pages);
+      });
+  fetch.start();
+  return completed[0] ? null : fetch;
+}
+
+// Methods that modify the underlying data & notify the listener.
+
+private void updateData(FeedState state, List<MediaPage> pages) {
+  int added = 0;
+  for (MediaPage page : pages) {
+    added += state.append(page.getItems(), page.getSpan());
+  }
+  publish(DataEvent.Builder.builder()
+                           .type(DataEvent.Type.GetMore)
+                           .newSize(added)
+                           .build());
+}
+
+private void resetData(AppMode appMode, MediaPage firstPage) {
+  FeedState state = feedStateCache.get(appMode);
+  if (state == null) {
+    state = appMode.equals(provisionalSearch)
+            ? new FeedState(appMode)
+            : feedStateCache.getOrCreate(appMode);
+  }
+  state.reset(firstPage.getItems(), firstPage.getSpan(), clock.currentTimeMillis());
+  showState(state);
+}
+
+/**
+ * Swap in a feed and render it at its saved position.
+ */
+private void showState(FeedState state) {
+  // Any page that's still loading was requested for the data that's being replaced.
+  cancelMore();
+  currentState = state;
+  publish(DataEvent.Builder.builder()
+                           .type(DataEvent.Type.Refresh)
+                           .position(state.getPosition())
+                           .build());
+}
+
+private void notModifiedData() {
+  if (currentState != null) currentState.markRevalidated(clock.currentTimeMillis());
+  publish(DataEvent.Builder.builder().type(DataEvent.Type.NotModified).build());
+}
+
+private void errorData() {
+  publish(DataEvent.Builder.builder().type(DataEvent.Type.Error).build());
+}
+
+// Tracing.
+
+public static final String TRACE_REQUEST_REFRESH = "feed.request_refresh";
+public static final String TRACE_REQUEST_MORE    = "feed.request_more";
+public static final String TRACE_RESTORE         = "feed.restore";
+public static final String TRACE_PAUSE           = "feed.pause";
+public static final String TRACE_RESUME          = "feed.resume";
+
+/**
+ * Trace event names for publishing each {@link DataEvent.Type}, built once.
+ */
+private static final String[] TRACE_PUBLISH = new String[DataEvent.Type.values().length];
+
+static {
+  for (DataEvent.Type type : DataEvent.Type.values()) {
+    TRACE_PUBLISH[type.ordinal()] = "feed.publish_" + type.name();
+  }
+}
+
+private void publish(@NonNull DataEvent dataEvent) {
+  if (tracer != null) {
+    tracer.instant(
+        Tracer.Level.Info,
+        TRACE_PUBLISH[dataEvent.getType().ordinal()],
+        dataEvent.isGetMoreType() ? dataEvent.getNewSize() : dataEvent.getPosition());
+  }
+  if (listener != null) listener.onDataEvent(dataEvent);
+}
+}
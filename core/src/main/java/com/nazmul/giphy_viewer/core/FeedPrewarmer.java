@@ -0,0 +1,238 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Loads the first pages of trending ahead of time (eg: from a background job), so that the next
+ * launch can show them, and their thumbnails, without waiting for the network.
+ *
+ * <ol>
+ * <li>{@link #run()} blocks the calling thread until the pages have loaded, so it must not be
+ * called on the thread that the {@link GiphyApi} delivers its results on.
+ * <li>Pages are requested one after the other (there's no hurry), and kept whole: one whose
+ * thumbnails don't fit in what's left of the byte budget isn't kept, and neither are the ones
+ * after it. The first page is always kept, but only the thumbnails that fit are returned.
+ * <li>{@link #cancel()} can be called from any thread. It cancels the request in flight and makes
+ * {@link #run()} return null right away.
+ * </ol>
+ */
+public final class FeedPrewarmer {
+
+public static final class Builder {
+
+  private GiphyApi         giphyApi;
+  private int              pageCount  = DEFAULT_PAGE_COUNT;
+  private long             byteBudget = DEFAULT_BYTE_BUDGET;
+  private FeedEngine.Clock clock      = System::currentTimeMillis;
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public Builder giphyApi(@NonNull GiphyApi giphyApi) {
+    this.giphyApi = giphyApi;
+    return this;
+  }
+
+  public Builder pageCount(int pageCount) {
+    this.pageCount = pageCount;
+    return this;
+  }
+
+  /**
+   * @param byteBudget The most that the thumbnails (grid renditions) of the kept pages add up to.
+   *                   Renditions whose size the API didn't report count as {@link
+   *                   #UNKNOWN_THUMBNAIL_BYTES}.
+   */
+  public Builder byteBudget(long byteBudget) {
+    this.byteBudget = byteBudget;
+    return this;
+  }
+
+  public Builder clock(@NonNull FeedEngine.Clock clock) {
+    this.clock = clock;
+    return this;
+  }
+
+  public FeedPrewarmer build() {
+    if (giphyApi == null) throw new IllegalStateException("giphyApi is required");
+    return new FeedPrewarmer(this);
+  }
+}
+
+public static final int  DEFAULT_PAGE_COUNT      = 4;
+public static final long DEFAULT_BYTE_BUDGET     = 8 * 1024 * 1024;
+public static final int  UNKNOWN_THUMBNAIL_BYTES = 200 * 1024;
+
+private final GiphyApi         giphyApi;
+private final int              pageCount;
+private final long             byteBudget;
+private final FeedEngine.Clock clock;
+
+private FeedPrewarmer(@NonNull Builder builder) {
+  this.giphyApi = builder.giphyApi;
+  this.pageCount = builder.pageCount;
+  this.byteBudget = builder.byteBudget;
+  this.clock = builder.clock;
+}
+
+// Cancelling.
+
+private boolean             cancelled;
+@Nullable
+private GiphyTransport.Call call;
+@Nullable
+private CountDownLatch      pageLoaded;
+
+public synchronized void cancel() {
+  cancelled = true;
+  if (call != null) call.cancel();
+  if (pageLoaded != null) pageLoaded.countDown();
+}
+
+public synchronized boolean isCancelled() {
+  return cancelled;
+}
+
+// Loading.
+
+/**
+ * @return The pages that loaded, or null if none did (eg: offline) or this was cancelled.
+ */
+@Nullable
+public Result run() throws InterruptedException {
+  List<MediaItem> items = new ArrayList<>();
+  List<MediaItem.Rendition> thumbnails = new ArrayList<>();
+  Set<String> ids = new HashSet<>();
+  long thumbnailBytes = 0;
+  int nextOffset = 0;
+
+  for (int i = 0; i < pageCount; i++) {
+    MediaPage page = requestPage(nextOffset);
+    if (isCancelled()) return null;
+    if (page == null || page.getItems().isEmpty()) break;
+
+    List<MediaItem> newItems = new ArrayList<>(page.getItems().size());
+    long pageBytes = 0;
+    for (MediaItem item : page.getItems()) {
+      // Trending shifts while it's paged through, so pages can repeat items.
+      if (ids.add(item.getId())) {
+        newItems.add(item);
+        pageBytes += sizeOf(item.getGrid());
+      }
+    }
+    if (!items.isEmpty() && thumbnailBytes + pageBytes > byteBudget) break;
+
+    items.addAll(newItems);
+    nextOffset += page.getSpan();
+    for (MediaItem item : newItems) {
+      long size = sizeOf(item.getGrid());
+      if (thumbnailBytes + size > byteBudget) break;
+      thumbnails.add(item.getGrid());
+      thumbnailBytes += size;
+    }
+  }
+
+  if (items.isEmpty()) return null;
+  AppMode trending = AppMode.Builder.builder().mode(AppMode.Mode.Trending).build();
+  return new Result(
+      new FeedSnapshot(trending, nextOffset, 0, clock.currentTimeMillis(), items),
+      thumbnails,
+      thumbnailBytes);
+}
+
+/**
+ * @return The page, or null if it failed or this was cancelled.
+ */
+@Nullable
+private MediaPage requestPage(int offset) throws InterruptedException {
+  final MediaPage[] result = {null};
+  final CountDownLatch latch = new CountDownLatch(1);
+  synchronized (this) {
+    if (cancelled) return null;
+    pageLoaded = latch;
+    call = giphyApi.makeTrendingRequest(
+        null,
+        new GiphyApi.GiphyResultsHandler() {
+          @Override
+          public void onResponse(MediaPage page) {
+            result[0] = page;
+            latch.countDown();
+          }
+
+          @Override
+          public void onError() {
+            latch.countDown();
+          }
+        },
+        offset);
+  }
+  latch.await();
+  synchronized (this) {
+    call = null;
+    pageLoaded = null;
+  }
+  return result[0];
+}
+
+private static long sizeOf(@NonNull MediaItem.Rendition rendition) {
+  return rendition.getSizeBytes() > 0 ? rendition.getSizeBytes() : UNKNOWN_THUMBNAIL_BYTES;
+}
+
+/**
+ * What was loaded: a trending feed that can be restored (see {@link FeedEngine#restore}), and the
+ * thumbnails worth caching for it, in feed order.
+ */
+public static final class Result {
+
+  private final FeedSnapshot              snapshot;
+  private final List<MediaItem.Rendition> thumbnails;
+  private final long                      thumbnailBytes;
+
+  Result(@NonNull FeedSnapshot snapshot,
+         @NonNull List<MediaItem.Rendition> thumbnails,
+         long thumbnailBytes) {
+    this.snapshot = snapshot;
+    this.thumbnails = Collections.unmodifiableList(thumbnails);
+    this.thumbnailBytes = thumbnailBytes;
+  }
+
+  @NonNull
+  public FeedSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  @NonNull
+  public List<MediaItem.Rendition> getThumbnails() {
+    return thumbnails;
+  }
+
+  public long getThumbnailBytes() {
+    return thumbnailBytes;
+  }
+}
+}
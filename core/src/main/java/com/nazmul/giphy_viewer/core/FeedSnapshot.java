@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A copy of the feed that's on screen, which can be handed back to {@link FeedEngine#restore}
+ * after the process is killed.
+ *
+ * <ol>
+ * <li>The mode, next offset and position are small enough to go in the platform's saved instance
+ * state. The items aren't, so they are written to a file.
+ * <li>A snapshot without items (eg: rebuilt from saved instance state alone, when the file is
+ * missing) is enough to restore the mode and position: the pages that are needed are refetched.
+ * </ol>
+ */
+public final class FeedSnapshot {
+
+private static final int FILE_VERSION = 2;
+
+private final AppMode         mode;
+private final int             nextOffset;
+private final int             position;
+private final long            refreshedAtMs;
+private final List<MediaItem> items;
+
+public FeedSnapshot(
+    @NonNull AppMode mode,
+    int nextOffset,
+    int position,
+    long refreshedAtMs,
+    @NonNull List<MediaItem> items) {
+  this.mode = mode;
+  this.nextOffset = nextOffset;
+  this.position = position;
+  this.refreshedAtMs = refreshedAtMs;
+  this.items = items;
+}
+
+public AppMode getMode() {
+  return mode;
+}
+
+/**
+ * The offset of the page after the last one that was loaded.
+ */
+public int getNextOffset() {
+  return nextOffset;
+}
+
+public int getPosition() {
+  return position;
+}
+
+public long getRefreshedAtMs() {
+  return refreshedAtMs;
+}
+
+public List<MediaItem> getItems() {
+  return items;
+}
+
+// Persistence.
+
+/**
+ * Written to a temporary file first, so a crash mid-write can't corrupt the existing snapshot.
+ */
+public void save(@NonNull File file) throws IOException {
+  File tempFile = new File(file.getPath() + ".tmp");
+  try (DataOutputStream out =
+           new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+    out.writeInt(FILE_VERSION);
+    out.writeUTF(mode.getMode().name());
+    out.writeUTF(mode.isSearchingMode() ? mode.getSearchQuery() : "");
+    out.writeInt(nextOffset);
+    out.writeInt(position);
+    out.writeLong(refreshedAtMs);
+    out.writeInt(items.size());
+    for (MediaItem item : items) {
+      item.writeTo(out);
+    }
+  }
+  if (!tempFile.renameTo(file)) throw new IOException("Could not replace " + file);
+}
+
+/**
+ * @return The snapshot in this file, or null if there isn't one (or it's from an older version of
+ * the app).
+ */
+@Nullable
+public static FeedSnapshot load(@NonNull File file) throws IOException {
+  if (!file.exists()) return null;
+  try (DataInputStream in =
+           new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+    if (in.readInt() != FILE_VERSION) return null;
+    AppMode.Mode mode = AppMode.Mode.valueOf(in.readUTF());
+    String query = in.readUTF();
+    AppMode appMode = AppMode.Builder.builder()
+                                     .mode(mode)
+                                     .query(mode == AppMode.Mode.Search ? query : null)
+                                     .build();
+    int nextOffset = in.readInt();
+    int position = in.readInt();
+    long refreshedAtMs = in.readLong();
+    int count = in.readInt();
+    List<MediaItem> items = count == 0 ? Collections.emptyList() : new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      items.add(MediaItem.readFrom(in));
+    }
+    return new FeedSnapshot(appMode, nextOffset, position, refreshedAtMs, items);
+  }
+}
+
+public String toString() {
+  return mode + ", items:" + items.size() + ", nextOffset:" + nextOffset
+         + ", position:" + position;
+}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Everything that's needed to put a feed (trending, favorites, or the results for one search
+ * query) back on screen exactly as it was: the items loaded so far, the offset of the next page to
+ * request, and the scroll position.
+ *
+ * <ol>
+ * <li>Pages from the Giphy API can overlap (especially trending, which shifts while you scroll).
+ * Items whose id is already in the feed are dropped, but still count towards the next offset.
+ * <li>{@link #getItems()} returns the same read-only view every time, so the RecyclerView adapter
+ * can call it on every bind without allocating.
+ * </ol>
+ */
+final class FeedState {
+
+private final AppMode              mode;
+private final boolean              placeholder;
+private final ArrayList<MediaItem> items     = new ArrayList<>();
+private final List<MediaItem>      itemsView = Collections.unmodifiableList(items);
+private final HashSet<String>      ids       = new HashSet<>();
+private       int                  nextOffset;
+private       int                  position;
+private       long                 refreshedAtMs;
+
+FeedState(@NonNull AppMode mode) {
+  this(mode, false);
+}
+
+private FeedState(@NonNull AppMode mode, boolean placeholder) {
+  this.mode = mode;
+  this.placeholder = placeholder;
+}
+
+/**
+ * A read-only stand-in for a feed that's still loading (eg: local search results). It is never
+ * paged or revalidated, and is replaced as soon as the real first page arrives.
+ */
+static FeedState placeholder(@NonNull AppMode mode, @NonNull List<MediaItem> items) {
+  FeedState state = new FeedState(mode, true);
+  state.append(items);
+  return state;
+}
+
+AppMode getMode() {
+  return mode;
+}
+
+boolean isPlaceholder() {
+  return placeholder;
+}
+
+List<MediaItem> getItems() {
+  return itemsView;
+}
+
+int getNextOffset() {
+  return nextOffset;
+}
+
+int getPosition() {
+  return position;
+}
+
+void setPosition(int position) {
+  this.position = position;
+}
+
+/**
+ * Replace everything with a freshly loaded first page. The scroll position goes back to the top.
+ */
+void reset(@NonNull List<MediaItem> firstPage, long nowMs) {
+  reset(firstPage, firstPage.size(), nowMs);
+}
+
+/**
+ * @param span How far the next offset moves (see {@link MediaPage#getSpan()}).
+ */
+void reset(@NonNull List<MediaItem> firstPage, int span, long nowMs) {
+  items.clear();
+  ids.clear();
+  nextOffset = 0;
+  position = 0;
+  append(firstPage, span);
+  refreshedAtMs = nowMs;
+}
+
+/**
+ * Put back the items from a {@link FeedSnapshot}. The pages after them can then be appended as
+ * usual.
+ */
+void restore(@NonNull List<MediaItem> items, int nextOffset, long refreshedAtMs) {
+  reset(items, refreshedAtMs);
+  this.nextOffset = nextOffset;
+}
+
+/**
+ * @return The number of items that were actually added (ie, not duplicates).
+ */
+int append(@NonNull List<MediaItem> page) {
+  return append(page, page.size());
+}
+
+/**
+ * @param span How far the next offset moves (see {@link MediaPage#getSpan()}).
+ * @return The number of items that were actually added (ie, not duplicates).
+ */
+int append(@NonNull List<MediaItem> page, int span) {
+  int added = 0;
+  items.ensureCapacity(items.size() + page.size());
+  for (MediaItem item : page) {
+    if (ids.add(item.getId())) {
+      items.add(item);
+      added++;
+    }
+  }
+  nextOffset += span;
+  return added;
+}
+
+/**
+ * The server confirmed that the first page hasn't changed.
+ */
+void markRevalidated(long nowMs) {
+  refreshedAtMs = nowMs;
+}
+
+long getRefreshedAtMs() {
+  return refreshedAtMs;
+}
+
+boolean isStale(long nowMs, long maxAgeMs) {
+  return nowMs - refreshedAtMs > maxAgeMs;
+}
+
+public String toString() {
+  return mode + ", items:" + items.size() + ", nextOffset:" + nextOffset
+         + ", position:" + position;
+}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An LRU of {@link FeedState}s keyed by {@link AppMode}, so that switching between trending and
+ * recent searches is a map lookup instead of a reload. Only accessed from the main thread.
+ */
+final class FeedStateCache {
+
+private final LinkedHashMap<AppMode, FeedState> states;
+
+FeedStateCache(int maxStates) {
+  this.states =
+      new LinkedHashMap<AppMode, FeedState>(maxStates, 0.75f, /* accessOrder= */ true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<AppMode, FeedState> eldest) {
+          return size() > maxStates;
+        }
+      };
+}
+
+@Nullable
+FeedState get(@NonNull AppMode mode) {
+  return states.get(mode);
+}
+
+/**
+ * @return The cached state for this mode, or a new empty one that's now in the cache.
+ */
+@NonNull
+FeedState getOrCreate(@NonNull AppMode mode) {
+  FeedState state = states.get(mode);
+  if (state == null) {
+    state = new FeedState(mode);
+    states.put(mode, state);
+  }
+  return state;
+}
+
+void put(@NonNull FeedState state) {
+  states.put(state.getMode(), state);
+}
+
+void remove(@NonNull AppMode mode) {
+  states.remove(mode);
+}
+
+/**
+ * @return The number of items in all the cached states.
+ */
+int getRetainedItems() {
+  int items = 0;
+  for (FeedState state : states.values()) {
+    items += state.getItems().size();
+  }
+  return items;
+}
+
+/**
+ * @return The number of pages that were loaded into all the cached states.
+ */
+int getRetainedPages(int pageSize) {
+  int pages = 0;
+  for (FeedState state : states.values()) {
+    pages += (state.getNextOffset() + pageSize - 1) / pageSize;
+  }
+  return pages;
+}
+
+/**
+ * @return The state for the longest proper prefix of this search query (that is at least
+ * <code>minLength</code> characters long) that has data, or null.
+ */
+@Nullable
+FeedState findLongestSearchPrefix(@NonNull String query, int minLength) {
+  for (int length = query.length() - 1; length >= minLength; length--) {
+    FeedState state =
+        states.get(
+            AppMode.Builder.builder()
+                           .mode(AppMode.Mode.Search)
+                           .query(query.substring(0, length))
+                           .build());
+    if (state != null && !state.getItems().isEmpty()) return state;
+  }
+  return null;
+}
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares one byte budget between the frame caches of every animation on screen, giving it to the
+ * animations that are closest to the viewport first.
+ *
+ * <ol>
+ * <li>Each animation is put with the bytes its frames take up once cached, and its distance from
+ * the viewport. Distances are updated as the list scrolls, followed by {@link #rebalance()}.
+ * <li>Animations are admitted nearest first, while they fit. The rest are evicted, ie: they have to
+ * give up their frame caches, and are redrawn by decoding a frame when they need one. An animation
+ * that doesn't fit is skipped, so a nearer large one doesn't keep farther small ones out.
+ * <li>The {@link Callback} is only called for animations whose state changed.
+ * <li>This class is not thread safe. Like the {@link FeedEngine}, it's only used on the main
+ * thread.
+ * </ol>
+ */
+public final class FrameBudget<T> {
+
+public interface Callback<T> {
+  void onAdmitted(@NonNull T animation);
+
+  void onEvicted(@NonNull T animation);
+}
+
+private final long             budgetBytes;
+private final Callback<T>      callback;
+private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+private final List<Entry<T>>   sorted  = new ArrayList<>();
+private       long             admittedBytes;
+
+public FrameBudget(long budgetBytes, @NonNull Callback<T> callback) {
+  if (budgetBytes < 1) throw new IllegalArgumentException("budgetBytes must be > 0");
+  this.budgetBytes = budgetBytes;
+  this.callback = callback;
+}
+
+/**
+ * Adds the animation (which starts out evicted), or updates its bytes and distance.
+ */
+public void put(@NonNull T animation, long bytes, long distance) {
+  Entry<T> entry = entries.get(animation);
+  if (entry == null) {
+    entry = new Entry<>(animation);
+    entries.put(animation, entry);
+  }
+  entry.bytes = bytes;
+  entry.distance = distance;
+}
+
+/**
+ * Updates the distance of an animation that's already been put, otherwise does nothing.
+ */
+public void setDistance(@NonNull T animation, long distance) {
+  Entry<T> entry = entries.get(animation);
+  if (entry != null) entry.distance = distance;
+}
+
+/**
+ * Removes the animation (eg: when its view is recycled) without calling the callback.
+ */
+public void remove(@NonNull T animation) {
+  Entry<T> entry = entries.remove(animation);
+  if (entry != null && entry.admitted) admittedBytes -= entry.bytes;
+}
+
+public void rebalance() {
+  sorted.clear();
+  sorted.addAll(entries.values());
+  Collections.sort(sorted, (a, b) -> Long.compare(a.distance, b.distance));
+  long usedBytes = 0;
+  for (Entry<T> entry : sorted) {
+    boolean admit = usedBytes + entry.bytes <= budgetBytes;
+    if (admit) usedBytes += entry.bytes;
+    if (admit != entry.admitted) {
+      entry.admitted = admit;
+      if (admit) {
+        callback.onAdmitted(entry.animation);
+      } else {
+        callback.onEvicted(entry.animation);
+      }
+    }
+  }
+  sorted.clear();
+  admittedBytes = usedBytes;
+}
+
+/**
+ * Evicts every animation (eg: when the app goes to the background). They're admitted again by the
+ * next {@link #rebalance()}.
+ */
+public void evictAll() {
+  for (Entry<T> entry : entries.values()) {
+    if (!entry.admitted) continue;
+    entry.admitted = false;
+    callback.onEvicted(entry.animation);
+  }
+  admittedBytes = 0;
+}
+
+public boolean isAdmitted(@NonNull T animation) {
+  Entry<T> entry = entries.get(animation);
+  return entry != null && entry.admitted;
+}
+
+public long getBudgetBytes() {
+  return budgetBytes;
+}
+
+/**
+ * @return The bytes taken up by admitted animations, as of the last {@link #rebalance()} (less any
+ * that have been removed since).
+ */
+public long getAdmittedBytes() {
+  return admittedBytes;
+}
+
+public int size() {
+  return entries.size();
+}
+
+private static final class Entry<T> {
+  final T animation;
+  long    bytes;
+  long    distance;
+  boolean admitted;
+
+  Entry(@NonNull T animation) {
+    this.animation = animation;
+  }
+}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * The requests that the {@link FeedEngine} makes. {@link GiphyClient} implements this over HTTP,
+ * and tests or benchmarks can swap in a fake that serves pages from memory.
+ *
+ * <ol>
+ * <li>All the {@link GiphyResultsHandler} methods, and the <code>runOnComplete</code> Runnables,
+ * are run on the thread that the {@link FeedEngine} is used from.
+ * <li>Once a request is cancelled (using the returned {@link GiphyTransport.Call}), none of its
+ * callbacks are run.
+ * </ol>
+ */
+public interface GiphyApi {
+
+GiphyTransport.Call makeTrendingRequest(
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    @Nullable Integer offset);
+
+GiphyTransport.Call makeTrendingRequest(
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    @Nullable Integer offset,
+    boolean revalidate);
+
+GiphyTransport.Call makeSearchRequest(
+    @Nullable String query,
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    @Nullable Integer offset);
+
+GiphyTransport.Call makeSearchRequest(
+    @Nullable String query,
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    @Nullable Integer offset,
+    boolean revalidate);
+
+/**
+ * @param ids At most {@link GiphyClient#MAX_IDS_PER_REQUEST}. The items in the page are in the
+ *            order the server returns them, and ids that no longer exist are left out.
+ */
+GiphyTransport.Call makeGetByIdsRequest(
+    @NonNull List<String> ids,
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler);
+
+/**
+ * @param pageObserver Sees every page that's successfully decoded (including ones that are then
+ *                     delivered as not modified, or not delivered because they were cancelled). It
+ *                     may be called on a background thread.
+ */
+void setPageObserver(@Nullable PageObserver pageObserver);
+
+void shutdown();
+
+interface PageObserver {
+  void onPageDecoded(@NonNull MediaPage page);
+}
+
+interface GiphyResultsHandler {
+  void onResponse(MediaPage page);
+
+  void onError();
+
+  /**
+   * Called instead of {@link #onResponse(MediaPage)} when a revalidating request finds that the
+   * page hasn't changed. Nothing was parsed, so there is nothing to update.
+   */
+  default void onNotModified() {
+  }
+}
+}
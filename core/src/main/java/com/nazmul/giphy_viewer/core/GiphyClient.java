@@ -0,0 +1,602 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Makes requests to the <a href="https://developers.giphy.com/docs/">Giphy API</a> for use by the
+ * {@link FeedEngine}.
+ *
+ * <ol>
+ * <li>All HTTP traffic goes through a {@link GiphyTransport}. In the app this is an {@link
+ * OkHttpTransport} (pooled keep-alive connections, HTTP/2, gzip). Pass a {@link
+ * MockGiphyTransport} to measure the client offline.
+ * <li>Responses are decoded on the transport's background thread by a {@link ResponseDecoder}
+ * into {@link MediaItem}s, and results are delivered on the callback executor (the main thread,
+ * in the app). The default is the {@link StreamingResponseDecoder}.
+ * <li>The first page of trending or search can be revalidated (see {@link
+ * #makeTrendingRequest(Runnable, GiphyResultsHandler, Integer, boolean)}), so that refreshing
+ * doesn't re-download and re-render a page that hasn't changed.
+ * <li>Requests that are slower than usual can be hedged (see {@link Hedging}).
+ * <li>Call {@link #shutdown()} when the client is no longer needed, to release pooled
+ * connections and threads.
+ * </ol>
+ */
+public final class GiphyClient implements GiphyApi {
+public static final String API_KEY               = "mnVttajnx9Twmgp3vFbMQa3Gvn9Rv4Hg";
+public static final int    MAX_ITEMS_PER_REQUEST = 25;
+public static final String BASE_URL              = "https://api.giphy.com/v1/gifs/";
+public static final String RATING                = "g";
+public static final String GET_BY_IDS_URL        = "https://api.giphy.com/v1/gifs";
+public static final int    MAX_IDS_PER_REQUEST   = 100;
+
+public static final String HEADER_ETAG              = "ETag";
+public static final String HEADER_LAST_MODIFIED     = "Last-Modified";
+public static final String HEADER_IF_NONE_MATCH     = "If-None-Match";
+public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+public static final int    HTTP_NOT_MODIFIED        = 304;
+public static final int    MAX_TRACKED_VALIDATORS   = 32;
+
+// Constructor.
+
+private final GiphyTransport  transport;
+private final ResponseDecoder decoder;
+private final Executor        callbackExecutor;
+
+/**
+ * @param callbackExecutor All the {@link GiphyResultsHandler} methods, and the
+ *                         <code>runOnComplete</code> Runnables, are run on this executor.
+ */
+public GiphyClient(@NonNull GiphyTransport transport, @NonNull Executor callbackExecutor) {
+  this(transport, new StreamingResponseDecoder(), callbackExecutor);
+}
+
+public GiphyClient(
+    @NonNull GiphyTransport transport,
+    @NonNull ResponseDecoder decoder,
+    @NonNull Executor callbackExecutor) {
+  this.transport = transport;
+  this.decoder = decoder;
+  this.callbackExecutor = callbackExecutor;
+}
+
+@Override
+public void shutdown() {
+  transport.shutdown();
+}
+
+// Observing every page that's decoded.
+
+@Nullable
+private volatile PageObserver pageObserver;
+
+@Override
+public void setPageObserver(@Nullable PageObserver pageObserver) {
+  this.pageObserver = pageObserver;
+}
+
+// Metrics.
+
+public static final String METRIC_REQUESTS      = "api.requests";
+public static final String METRIC_ERRORS        = "api.errors";
+public static final String METRIC_NOT_MODIFIED  = "api.not_modified";
+public static final String METRIC_LATENCY_MS    = "api.latency_ms";
+public static final String METRIC_PAYLOAD_BYTES = "api.payload_bytes";
+public static final String METRIC_HEDGES        = "api.hedges";
+public static final String METRIC_HEDGE_WINS    = "api.hedge_wins";
+
+@Nullable
+private volatile RequestMetrics requestMetrics;
+
+/**
+ * @param metrics Every request records its latency (until its response arrives), and every
+ *                response records the size of its body (after the transport has undone gzip).
+ */
+public void setMetrics(@Nullable Metrics metrics) {
+  requestMetrics = metrics == null ? null : new RequestMetrics(metrics);
+}
+
+// Hedging.
+
+@Nullable
+private volatile Hedging hedging;
+
+/**
+ * @param hedging Requests that are slower than usual get a duplicate, and whichever one answers
+ *                first is used. Off (null) by default.
+ */
+public void setHedging(@Nullable Hedging hedging) {
+  this.hedging = hedging;
+}
+
+// Tracing.
+
+public static final String TRACE_REQUEST = "api.request";
+public static final String TRACE_DECODE  = "api.decode";
+public static final String TRACE_DELIVER = "api.deliver";
+
+@Nullable
+private volatile Tracer tracer;
+
+/**
+ * @param tracer Each request is traced (at {@link Tracer.Level#Info}) from when it's made until its
+ *               response arrives, along with decoding the response and delivering the results.
+ */
+public void setTracer(@Nullable Tracer tracer) {
+  this.tracer = tracer;
+}
+
+/**
+ * @param runOnComplete     This Runnable will be executed after the API response is received. If
+ *                          the response is an error or contains results, this will be run. This is a good place to
+ *                          put UI code that changes the state of any components that are "waiting". This code is run
+ *                          on the callback executor.
+ * @param onResponseHandler The <code>onResponse</code> method is called only if results are
+ *                          returned in the API response. Malformed responses are reported as errors.
+ * @param offset            This integer contains the next set of images that you want to load from Giphy.
+ *                          This is usually going to the size of the number of entries that are already downloaded
+ *                          (ie the size of the underlying data).
+ * @return A handle that can be used to cancel the request. Once cancelled, none of the callbacks
+ * are run.
+ */
+@Override
+public GiphyTransport.Call makeTrendingRequest(
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    @Nullable Integer offset) {
+  return makeTrendingRequest(runOnComplete, onResponseHandler, offset, false);
+}
+
+/**
+ * @param revalidate If true, and the first page of trending was fetched before, the request is
+ *                   made conditional on the page having changed since then. When it hasn't, {@link
+ *                   GiphyResultsHandler#onNotModified()} is called instead of <code>onResponse</code>.
+ *                   <ol>
+ *                   <li>If the server sent an <code>ETag</code> or <code>Last-Modified</code>
+ *                   validator last time, they are sent back and a 304 response skips the body
+ *                   entirely.
+ *                   <li>Otherwise, the ids in the new page are hashed and compared to the ids
+ *                   from last time.
+ *                   </ol>
+ * @see #makeTrendingRequest(Runnable, GiphyResultsHandler, Integer)
+ */
+@Override
+public GiphyTransport.Call makeTrendingRequest(
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    @Nullable Integer offset,
+    boolean revalidate) {
+  final int pageOffset = offset == null ? 0 : offset;
+  String url = BASE_URL + "trending?api_key=" + API_KEY
+               + "&limit=" + MAX_ITEMS_PER_REQUEST
+               + "&offset=" + pageOffset
+               + "&rating=" + RATING;
+
+  return execute(url, runOnComplete, onResponseHandler, pageOffset == 0, revalidate);
+}
+
+@Override
+public GiphyTransport.Call makeSearchRequest(
+    @Nullable String query,
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    @Nullable Integer offset) {
+  return makeSearchRequest(query, runOnComplete, onResponseHandler, offset, false);
+}
+
+/**
+ * @see #makeTrendingRequest(Runnable, GiphyResultsHandler, Integer, boolean)
+ */
+@Override
+public GiphyTransport.Call makeSearchRequest(
+    @Nullable String query,
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    @Nullable Integer offset,
+    boolean revalidate) {
+  final int pageOffset = offset == null ? 0 : offset;
+  String url = BASE_URL + "search?api_key=" + API_KEY
+               + "&q=" + encode(query == null ? "" : query)
+               + "&limit=" + MAX_ITEMS_PER_REQUEST
+               + "&offset=" + pageOffset
+               + "&rating=" + RATING;
+
+  return execute(url, runOnComplete, onResponseHandler, pageOffset == 0, revalidate);
+}
+
+/**
+ * Looks up GIFs by id (eg: to show the user's favorites). The results aren't revalidated or
+ * tracked as a first page, but they do go through the same transport and page observer as
+ * trending and search. Nothing is cached here, so callers should look ids up locally first (eg:
+ * in the {@link MediaIndex}).
+ *
+ * @throws IllegalArgumentException if there are more than {@link #MAX_IDS_PER_REQUEST} ids.
+ */
+@Override
+public GiphyTransport.Call makeGetByIdsRequest(
+    @NonNull List<String> ids,
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler) {
+  if (ids.size() > MAX_IDS_PER_REQUEST) {
+    throw new IllegalArgumentException("At most " + MAX_IDS_PER_REQUEST + " ids per request");
+  }
+  StringBuilder joinedIds = new StringBuilder();
+  for (String id : ids) {
+    if (joinedIds.length() > 0) joinedIds.append(',');
+    joinedIds.append(encode(id));
+  }
+  String url = GET_BY_IDS_URL + "?api_key=" + API_KEY + "&ids=" + joinedIds;
+
+  return execute(url, runOnComplete, onResponseHandler, false, false);
+}
+
+/**
+ * @param firstPage First pages are the only ones that are ever refreshed, so they are the only
+ *                  ones whose validators are worth tracking. They are also hedged separately.
+ */
+private GiphyTransport.Call execute(
+    @NonNull String url,
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    boolean firstPage,
+    boolean revalidate) {
+  final Hedging hedging = this.hedging;
+  final Hedging.Kind kind = firstPage ? Hedging.Kind.FirstPage : Hedging.Kind.NextPage;
+  final Exchange exchange = new Exchange(runOnComplete, onResponseHandler, hedging, kind);
+  exchange.primary = attempt(exchange, url, kind, revalidate, false);
+  if (hedging == null) return exchange;
+
+  long hedgeAfterMs = hedging.onRequest(kind);
+  if (hedgeAfterMs >= 0) {
+    exchange.hedgeTimer = () -> {
+      exchange.hedgeTimer = null;
+      if (exchange.isDone() || !hedging.tryAcquire()) return;
+      RequestMetrics metrics = requestMetrics;
+      if (metrics != null) metrics.hedges.increment();
+      exchange.hedge = attempt(exchange, url, kind, revalidate, true);
+    };
+    hedging.getScheduler().postDelayed(exchange.hedgeTimer, hedgeAfterMs);
+  }
+  return exchange;
+}
+
+/**
+ * Makes one HTTP request for the exchange (either its primary request, or its hedge).
+ */
+private GiphyTransport.Call attempt(
+    @NonNull Exchange exchange,
+    @NonNull String url,
+    @NonNull Hedging.Kind kind,
+    boolean revalidate,
+    boolean isHedge) {
+  final RequestMetrics metrics = requestMetrics;
+  final long startNs = System.nanoTime();
+  if (isHedge) {
+    exchange.hedgeStartNs = startNs;
+  } else {
+    exchange.primaryStartNs = startNs;
+  }
+  if (metrics != null) metrics.requests.increment();
+  final Tracer tracer = this.tracer;
+  final long traceId = tracer == null ? 0 : tracer.newAsyncId();
+  if (tracer != null) tracer.asyncBegin(Tracer.Level.Info, TRACE_REQUEST, traceId);
+  final boolean trackValidators = kind == Hedging.Kind.FirstPage;
+
+  GiphyTransport.Request.Builder requestBuilder = GiphyTransport.Request.Builder.builder().url(url);
+  final Validators previous = revalidate ? validators.get(url) : null;
+  if (previous != null) {
+    if (previous.etag != null) requestBuilder.header(HEADER_IF_NONE_MATCH, previous.etag);
+    if (previous.lastModified != null) {
+      requestBuilder.header(HEADER_IF_MODIFIED_SINCE, previous.lastModified);
+    }
+  }
+
+  return transport.get(
+      requestBuilder.build(),
+      new GiphyTransport.Callback() {
+        @Override
+        public void onResponse(@NonNull GiphyTransport.Response response) throws IOException {
+          // This code runs in a background thread.
+          long latencyMs = (System.nanoTime() - startNs) / 1_000_000;
+          if (metrics != null) metrics.latencyMs.record(latencyMs);
+          // A loser's latency was recorded when it was cancelled.
+          if (exchange.hedging != null && !exchange.wasCancelled(isHedge)) {
+            exchange.hedging.recordLatencyMs(kind, latencyMs);
+          }
+          if (tracer != null) {
+            tracer.asyncEnd(Tracer.Level.Info, TRACE_REQUEST, traceId, response.getCode());
+          }
+          if (previous != null && response.getCode() == HTTP_NOT_MODIFIED) {
+            if (metrics != null) metrics.notModified.increment();
+            deliver(null, true);
+            return;
+          }
+          if (!response.isSuccessful()) {
+            if (metrics != null) metrics.errors.increment();
+            deliver(null, false);
+            return;
+          }
+
+          MediaPage page;
+          if (tracer != null) tracer.begin(Tracer.Level.Info, TRACE_DECODE, traceId);
+          try {
+            if (metrics != null) {
+              CountingInputStream body = new CountingInputStream(response.getBody());
+              page = decoder.decode(body);
+              metrics.payloadBytes.record(body.count);
+            } else {
+              page = decoder.decode(response.getBody());
+            }
+          } finally {
+            if (tracer != null) tracer.end(Tracer.Level.Info, TRACE_DECODE);
+          }
+          PageObserver observer = pageObserver;
+          if (observer != null) observer.onPageDecoded(page);
+          if (trackValidators) {
+            Validators current = new Validators(
+                response.getHeader(HEADER_ETAG),
+                response.getHeader(HEADER_LAST_MODIFIED),
+                page.getContentHash());
+            validators.put(url, current);
+            if (previous != null && !current.hasHttpValidators()
+                && previous.contentHash == current.contentHash) {
+              if (metrics != null) metrics.notModified.increment();
+              deliver(null, true);
+              return;
+            }
+          }
+          deliver(page, false);
+        }
+
+        @Override
+        public void onFailure(@NonNull IOException exception) {
+          // Cancelling a request (eg: the loser of a hedge) fails it, but that's not an API error.
+          if (metrics != null && !exchange.wasCancelled(isHedge)) metrics.errors.increment();
+          if (tracer != null) tracer.asyncEnd(Tracer.Level.Info, TRACE_REQUEST, traceId, -1);
+          deliver(null, false);
+        }
+
+        private void deliver(@Nullable MediaPage results, boolean notModified) {
+          callbackExecutor.execute(
+              () -> {
+                // This code runs on the callback executor (the main thread).
+                if (!exchange.settle(isHedge, results != null || notModified)) return;
+                if (isHedge && metrics != null) metrics.hedgeWins.increment();
+                if (tracer != null) tracer.instant(Tracer.Level.Info, TRACE_DELIVER, traceId);
+                if (notModified) {
+                  exchange.onResponseHandler.onNotModified();
+                } else if (results == null) {
+                  exchange.onResponseHandler.onError();
+                } else {
+                  exchange.onResponseHandler.onResponse(results);
+                }
+                if (exchange.runOnComplete != null) exchange.runOnComplete.run();
+              });
+        }
+      });
+}
+
+// Conditional revalidation.
+
+/**
+ * An LRU keyed by request URL. Written on transport threads, read on the main thread.
+ */
+private final Map<String, Validators> validators = Collections.synchronizedMap(
+    new LinkedHashMap<String, Validators>(16, 0.75f, /* accessOrder= */ true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Validators> eldest) {
+        return size() > MAX_TRACKED_VALIDATORS;
+      }
+    });
+
+private static final class Validators {
+
+  final String etag;
+  final String lastModified;
+  final long   contentHash;
+
+  Validators(@Nullable String etag, @Nullable String lastModified, long contentHash) {
+    this.etag = etag;
+    this.lastModified = lastModified;
+    this.contentHash = contentHash;
+  }
+
+  boolean hasHttpValidators() {
+    return etag != null || lastModified != null;
+  }
+}
+
+private static String encode(@NonNull String value) {
+  try {
+    return URLEncoder.encode(value, "UTF-8");
+  } catch (UnsupportedEncodingException e) {
+    throw new IllegalStateException(e);
+  }
+}
+
+private static final class RequestMetrics {
+
+  final Metrics.Counter   requests;
+  final Metrics.Counter   errors;
+  final Metrics.Counter   notModified;
+  final Metrics.Histogram latencyMs;
+  final Metrics.Histogram payloadBytes;
+  final Metrics.Counter   hedges;
+  final Metrics.Counter   hedgeWins;
+
+  RequestMetrics(@NonNull Metrics metrics) {
+    requests = metrics.counter(METRIC_REQUESTS);
+    errors = metrics.counter(METRIC_ERRORS);
+    notModified = metrics.counter(METRIC_NOT_MODIFIED);
+    latencyMs = metrics.histogram(METRIC_LATENCY_MS);
+    payloadBytes = metrics.histogram(METRIC_PAYLOAD_BYTES);
+    hedges = metrics.counter(METRIC_HEDGES);
+    hedgeWins = metrics.counter(METRIC_HEDGE_WINS);
+  }
+}
+
+private static final class CountingInputStream extends FilterInputStream {
+
+  long count;
+
+  CountingInputStream(@NonNull InputStream in) {
+    super(in);
+  }
+
+  @Override
+  public int read() throws IOException {
+    int read = super.read();
+    if (read != -1) count++;
+    return read;
+  }
+
+  @Override
+  public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+    int read = super.read(buffer, offset, length);
+    if (read > 0) count += read;
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = super.skip(n);
+    count += skipped;
+    return skipped;
+  }
+}
+
+/**
+ * One logical request, which is the handle that's returned to the caller. It's made up of a
+ * primary HTTP request, and (if it was hedged) a duplicate of it.
+ *
+ * <ol>
+ * <li>Results are settled on the main thread right before they are delivered, so a cancelled
+ * request never reaches its handler, even if the transport had already received the response.
+ * <li>The first success (or not modified) is delivered, and the other request is cancelled. A
+ * failure is only delivered once the other request has failed too, or if there isn't one.
+ * <li>The time the cancelled request had been waiting is recorded as its latency. It would have
+ * taken at least that long, and leaving it out would skew the hedging delay towards the requests
+ * that won.
+ * </ol>
+ */
+private static final class Exchange implements GiphyTransport.Call {
+
+  @Nullable
+  final Runnable            runOnComplete;
+  final GiphyResultsHandler onResponseHandler;
+  @Nullable
+  final Hedging             hedging;
+  final Hedging.Kind        kind;
+
+  GiphyTransport.Call primary;
+  @Nullable
+  GiphyTransport.Call hedge;
+  @Nullable
+  Runnable            hedgeTimer;
+  boolean             primaryDone;
+  boolean             hedgeDone;
+  boolean             settled;
+  long                primaryStartNs;
+  long                hedgeStartNs;
+  volatile boolean    cancelled;
+  volatile boolean    primaryCancelled;
+  volatile boolean    hedgeCancelled;
+
+  Exchange(
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler,
+      @Nullable Hedging hedging,
+      @NonNull Hedging.Kind kind) {
+    this.runOnComplete = runOnComplete;
+    this.onResponseHandler = onResponseHandler;
+    this.hedging = hedging;
+    this.kind = kind;
+  }
+
+  /**
+   * Called on transport threads.
+   *
+   * @return true if this request (the hedge or the primary) was cancelled, either by the caller or
+   * because the other one won.
+   */
+  boolean wasCancelled(boolean hedge) {
+    return cancelled || (hedge ? hedgeCancelled : primaryCancelled);
+  }
+
+  boolean isDone() {
+    return settled || cancelled;
+  }
+
+  /**
+   * @return true if the result of this request should be delivered.
+   */
+  boolean settle(boolean fromHedge, boolean succeeded) {
+    if (isDone()) return false;
+    if (fromHedge) {
+      hedgeDone = true;
+    } else {
+      primaryDone = true;
+    }
+    boolean otherInFlight = fromHedge ? !primaryDone : hedge != null && !hedgeDone;
+    if (!succeeded && otherInFlight) return false;
+    settled = true;
+    stopHedging();
+    if (otherInFlight) {
+      long loserStartNs;
+      if (fromHedge) {
+        primaryCancelled = true;
+        loserStartNs = primaryStartNs;
+        primary.cancel();
+      } else {
+        hedgeCancelled = true;
+        loserStartNs = hedgeStartNs;
+        hedge.cancel();
+      }
+      if (hedging != null) {
+        hedging.recordLatencyMs(kind, (System.nanoTime() - loserStartNs) / 1_000_000);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void cancel() {
+    cancelled = true;
+    stopHedging();
+    primary.cancel();
+    if (hedge != null) hedge.cancel();
+  }
+
+  private void stopHedging() {
+    if (hedgeTimer != null && hedging != null) hedging.getScheduler().cancel(hedgeTimer);
+    hedgeTimer = null;
+  }
+}
+}
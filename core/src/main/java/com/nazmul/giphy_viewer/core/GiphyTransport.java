@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The HTTP layer that {@link GiphyClient} uses to talk to the Giphy API.
+ *
+ * <ol>
+ * <li>{@link OkHttpTransport} is the production implementation (pooled keep-alive connections,
+ * HTTP/2, gzip, configurable dispatcher concurrency).
+ * <li>{@link MockGiphyTransport} serves generated Giphy responses locally, so that latency and
+ * throughput can be measured without a network.
+ * <li>Callbacks are delivered on a background thread owned by the transport. The response body
+ * is only valid for the duration of {@link Callback#onResponse(Response)}.
+ * </ol>
+ */
+public interface GiphyTransport {
+
+@NonNull
+Call get(@NonNull Request request, @NonNull Callback callback);
+
+/**
+ * Release pooled connections and threads. No more requests can be made after this.
+ */
+void shutdown();
+
+interface Call {
+  void cancel();
+}
+
+interface Callback {
+  void onResponse(@NonNull Response response) throws IOException;
+
+  void onFailure(@NonNull IOException exception);
+}
+
+final class Request {
+
+  public static final class Builder {
+
+    private String              url;
+    private Map<String, String> headers = new HashMap<>();
+
+    public static Builder builder() {
+      return new Builder();
+    }
+
+    public Builder url(String url) {
+      this.url = url;
+      return this;
+    }
+
+    public Builder header(String name, String value) {
+      headers.put(name, value);
+      return this;
+    }
+
+    public Request build() {
+      return new Request(url, headers);
+    }
+  }
+
+  private final String              url;
+  private final Map<String, String> headers;
+
+  private Request(@NonNull String url, @NonNull Map<String, String> headers) {
+    this.url = url;
+    this.headers = Collections.unmodifiableMap(headers);
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  public String toString() {
+    return url;
+  }
+}
+
+final class Response {
+
+  private final int                 code;
+  private final Map<String, String> headers;
+  private final InputStream         body;
+
+  /**
+   * @param headers Header names must be lower case.
+   */
+  public Response(int code, @NonNull Map<String, String> headers, @NonNull InputStream body) {
+    this.code = code;
+    this.headers = headers;
+    this.body = body;
+  }
+
+  public int getCode() {
+    return code;
+  }
+
+  public boolean isSuccessful() {
+    return code >= 200 && code < 300;
+  }
+
+  @Nullable
+  public String getHeader(@NonNull String name) {
+    return headers.get(name.toLowerCase(Locale.US));
+  }
+
+  public InputStream getBody() {
+    return body;
+  }
+}
+}
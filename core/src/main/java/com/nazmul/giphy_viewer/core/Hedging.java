@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Opt-in request hedging for the {@link GiphyClient} (see {@link
+ * GiphyClient#setHedging(Hedging)}), which cuts the tail latency that comes from the occasional
+ * slow response.
+ *
+ * <ol>
+ * <li>The latency of every response is tracked separately for first pages (refreshes) and the
+ * pages after them, since they are served differently.
+ * <li>When a request hasn't completed by the p95 latency of its kind, one duplicate is made.
+ * Whichever one succeeds first is delivered, and the other is cancelled.
+ * <li>Hedges are capped at {@link Builder#maxExtraTraffic} of all requests, and each one needs a
+ * permit from the {@link RateLimiter} (if there is one). The {@link FeedEngine} charges its own
+ * requests to the same limiter, so hedges only use the permits that are left over, and everything
+ * stays within the API quota.
+ * <li>When a hedge wins, the time the cancelled primary had been waiting is recorded too (and vice
+ * versa), so the percentile isn't only made up of the requests that were fast enough to win.
+ * <li>No hedges are made until there are {@link Builder#minSamples} latencies of a kind.
+ * <li>Hedges are scheduled and made on the main thread, which is where the {@link
+ * FeedEngine.Scheduler} must run its tasks (the same thread as the client's callback executor).
+ * </ol>
+ */
+public final class Hedging {
+
+public static final class Builder {
+
+  private FeedEngine.Scheduler scheduler;
+  private RateLimiter          rateLimiter     = null;
+  private double               maxExtraTraffic = DEFAULT_MAX_EXTRA_TRAFFIC;
+  private int                  minSamples      = DEFAULT_MIN_SAMPLES;
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public Builder scheduler(@NonNull FeedEngine.Scheduler scheduler) {
+    this.scheduler = scheduler;
+    return this;
+  }
+
+  /**
+   * @param rateLimiter Shared with whatever else makes requests (eg: the {@link FeedEngine}), so
+   *                    that hedges only use permits that are left over.
+   */
+  public Builder rateLimiter(@Nullable RateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+    return this;
+  }
+
+  /**
+   * @param maxExtraTraffic The most hedges there can be, as a fraction of all the requests made.
+   */
+  public Builder maxExtraTraffic(double maxExtraTraffic) {
+    this.maxExtraTraffic = maxExtraTraffic;
+    return this;
+  }
+
+  public Builder minSamples(int minSamples) {
+    this.minSamples = minSamples;
+    return this;
+  }
+
+  public Hedging build() {
+    if (scheduler == null) throw new IllegalStateException("scheduler is required");
+    return new Hedging(this);
+  }
+}
+
+public static final double DEFAULT_MAX_EXTRA_TRAFFIC = 0.05;
+public static final int    DEFAULT_MIN_SAMPLES       = 20;
+public static final double HEDGE_AT_PERCENTILE       = 95;
+
+public enum Kind {
+  FirstPage,
+  NextPage
+}
+
+private final FeedEngine.Scheduler scheduler;
+@Nullable
+private final RateLimiter          rateLimiter;
+private final double               maxExtraTraffic;
+private final int                  minSamples;
+private final Metrics.Histogram[]  latencyMs = new Metrics.Histogram[Kind.values().length];
+private       long                 requests;
+private       long                 hedges;
+
+private Hedging(@NonNull Builder builder) {
+  this.scheduler = builder.scheduler;
+  this.rateLimiter = builder.rateLimiter;
+  this.maxExtraTraffic = builder.maxExtraTraffic;
+  this.minSamples = builder.minSamples;
+  for (Kind kind : Kind.values()) {
+    latencyMs[kind.ordinal()] = new Metrics.Histogram();
+  }
+}
+
+FeedEngine.Scheduler getScheduler() {
+  return scheduler;
+}
+
+/**
+ * Called on transport threads, and on the main thread for requests that lost to their duplicate.
+ */
+void recordLatencyMs(@NonNull Kind kind, long ms) {
+  latencyMs[kind.ordinal()].record(ms);
+}
+
+public Metrics.Histogram getLatencyMs(@NonNull Kind kind) {
+  return latencyMs[kind.ordinal()];
+}
+
+/**
+ * Called (on the main thread) for every request that isn't a hedge.
+ *
+ * @return How long to wait for the request before hedging it, or -1 if it shouldn't be.
+ */
+long onRequest(@NonNull Kind kind) {
+  requests++;
+  Metrics.Histogram histogram = latencyMs[kind.ordinal()];
+  if (histogram.getCount() < minSamples) return -1;
+  return histogram.getValueAtPercentile(HEDGE_AT_PERCENTILE);
+}
+
+/**
+ * Called on the main thread when a request is still outstanding after its delay.
+ *
+ * @return true if there's room for a hedge (and it's been counted).
+ */
+boolean tryAcquire() {
+  if (hedges + 1 > requests * maxExtraTraffic) return false;
+  if (rateLimiter != null && !rateLimiter.tryAcquire()) return false;
+  hedges++;
+  return true;
+}
+
+public long getRequests() {
+  return requests;
+}
+
+public long getHedges() {
+  return hedges;
+}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An on-device inverted index over every {@link MediaItem} that the {@link GiphyClient} has
+ * returned, so that search can show local results immediately (and offline) while the network
+ * search is in flight, and favorites can be shown without looking them up again.
+ *
+ * <ol>
+ * <li>Terms come from the title, the slug (minus its trailing id) and the tags. They are kept in a
+ * sorted map, so a query term matches every indexed term that it's a prefix of ("ca" finds "cat"
+ * and "cake").
+ * <li>The index holds at most <code>maxItems</code> items. When it's full, the item that was seen
+ * least recently is evicted, along with its postings.
+ * <li>It's persisted to a single file as a flat list of items; the postings are rebuilt on load.
+ * <li>Items are added from transport threads and searched from the main thread, so all access is
+ * synchronized.
+ * </ol>
+ */
+public final class MediaIndex {
+
+private static final int         FILE_VERSION    = 2;
+private static final int         MIN_TERM_LENGTH = 2;
+private static final Set<String> STOP_WORDS      =
+    new HashSet<>(Arrays.asList("gif", "gifs", "by", "the", "and", "for", "of", "on", "in"));
+
+private final int maxItems;
+
+/**
+ * Ordered from least to most recently seen.
+ */
+private final LinkedHashMap<String, Entry> entries  = new LinkedHashMap<>();
+private final TreeMap<String, Set<String>> postings = new TreeMap<>();
+private       int                          unsavedChanges;
+
+public MediaIndex(int maxItems) {
+  this.maxItems = maxItems;
+}
+
+public synchronized int size() {
+  return entries.size();
+}
+
+/**
+ * @return The number of items added or refreshed since the index was last saved or loaded.
+ */
+public synchronized int getUnsavedChanges() {
+  return unsavedChanges;
+}
+
+public synchronized void addAll(@NonNull List<MediaItem> items, long nowMs) {
+  for (MediaItem item : items) {
+    add(item, nowMs);
+  }
+}
+
+private void add(@NonNull MediaItem item, long nowMs) {
+  unsavedChanges++;
+  Entry entry = entries.remove(item.getId());
+  if (entry != null) {
+    // Seen again: move it to the most recently seen end, with the latest copy of the item.
+    entries.put(item.getId(), new Entry(item, entry.terms, nowMs));
+    return;
+  }
+
+  String[] terms = termsOf(item);
+  entries.put(item.getId(), new Entry(item, terms, nowMs));
+  for (String term : terms) {
+    Set<String> ids = postings.get(term);
+    if (ids == null) {
+      ids = new HashSet<>();
+      postings.put(term, ids);
+    }
+    ids.add(item.getId());
+  }
+
+  while (entries.size() > maxItems) {
+    evictEldest();
+  }
+}
+
+private void evictEldest() {
+  Iterator<Entry> iterator = entries.values().iterator();
+  Entry eldest = iterator.next();
+  iterator.remove();
+  for (String term : eldest.terms) {
+    Set<String> ids = postings.get(term);
+    if (ids == null) continue;
+    ids.remove(eldest.item.getId());
+    if (ids.isEmpty()) postings.remove(term);
+  }
+}
+
+/**
+ * Looking an item up doesn't count as seeing it, so it doesn't protect the item from eviction.
+ */
+@Nullable
+public synchronized MediaItem get(@NonNull String id) {
+  Entry entry = entries.get(id);
+  return entry == null ? null : entry.item;
+}
+
+/**
+ * @return Up to <code>limit</code> items that match every term in the query (each query term as
+ * a prefix), most recently seen first.
+ */
+@NonNull
+public synchronized List<MediaItem> search(@NonNull String query, int limit) {
+  Set<String> matches = null;
+  for (String queryTerm : tokenize(query)) {
+    Set<String> termMatches = new HashSet<>();
+    SortedMap<String, Set<String>> range =
+        postings.subMap(queryTerm, queryTerm + Character.MAX_VALUE);
+    for (Set<String> ids : range.values()) {
+      termMatches.addAll(ids);
+    }
+    if (matches == null) {
+      matches = termMatches;
+    } else {
+      matches.retainAll(termMatches);
+    }
+    if (matches.isEmpty()) break;
+  }
+  if (matches == null || matches.isEmpty()) return Collections.emptyList();
+
+  List<Entry> matchedEntries = new ArrayList<>(matches.size());
+  for (String id : matches) {
+    matchedEntries.add(entries.get(id));
+  }
+  Collections.sort(matchedEntries, (a, b) -> Long.compare(b.lastSeenMs, a.lastSeenMs));
+
+  List<MediaItem> results = new ArrayList<>(Math.min(limit, matchedEntries.size()));
+  for (int i = 0; i < matchedEntries.size() && i < limit; i++) {
+    results.add(matchedEntries.get(i).item);
+  }
+  return results;
+}
+
+// Tokenizing.
+
+private static String[] termsOf(MediaItem item) {
+  Set<String> terms = new HashSet<>();
+  terms.addAll(tokenize(item.getTitle()));
+  // Slugs look like "happy-cat-originals-<id>", where the id adds nothing searchable.
+  String slug = item.getSlug();
+  if (slug.endsWith(item.getId())) slug = slug.substring(0, slug.length() - item.getId().length());
+  terms.addAll(tokenize(slug));
+  for (String tag : item.getTags()) {
+    terms.addAll(tokenize(tag));
+  }
+  return terms.toArray(new String[0]);
+}
+
+static List<String> tokenize(@NonNull String text) {
+  List<String> terms = new ArrayList<>();
+  String lowerCase = text.toLowerCase(Locale.US);
+  int start = -1;
+  for (int i = 0; i <= lowerCase.length(); i++) {
+    boolean isWordChar = i < lowerCase.length() && Character.isLetterOrDigit(lowerCase.charAt(i));
+    if (isWordChar && start < 0) {
+      start = i;
+    } else if (!isWordChar && start >= 0) {
+      String term = lowerCase.substring(start, i);
+      if (term.length() >= MIN_TERM_LENGTH && !STOP_WORDS.contains(term)) terms.add(term);
+      start = -1;
+    }
+  }
+  return terms;
+}
+
+// Persistence.
+
+/**
+ * Written to a temporary file first, so a crash mid-write can't corrupt the existing index.
+ */
+public synchronized void save(@NonNull File file) throws IOException {
+  File tempFile = new File(file.getPath() + ".tmp");
+  try (DataOutputStream out =
+           new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+    out.writeInt(FILE_VERSION);
+    out.writeInt(entries.size());
+    for (Entry entry : entries.values()) {
+      entry.item.writeTo(out);
+      out.writeLong(entry.lastSeenMs);
+    }
+  }
+  if (!tempFile.renameTo(file)) throw new IOException("Could not replace " + file);
+  unsavedChanges = 0;
+}
+
+/**
+ * Items that are already in the index (ie, seen since the app started) take precedence over the
+ * ones in the file.
+ */
+public synchronized void load(@NonNull File file) throws IOException {
+  if (!file.exists()) return;
+  try (DataInputStream in =
+           new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+    if (in.readInt() != FILE_VERSION) return;
+    int count = in.readInt();
+    Map<String, Entry> current = new LinkedHashMap<>(entries);
+    entries.clear();
+    postings.clear();
+    for (int i = 0; i < count; i++) {
+      MediaItem item = MediaItem.readFrom(in);
+      long lastSeenMs = in.readLong();
+      if (!current.containsKey(item.getId())) add(item, lastSeenMs);
+    }
+    for (Entry entry : current.values()) {
+      add(entry.item, entry.lastSeenMs);
+    }
+  }
+  unsavedChanges = 0;
+}
+
+private static final class Entry {
+
+  final MediaItem item;
+  final String[]  terms;
+  final long      lastSeenMs;
+
+  Entry(MediaItem item, String[] terms, long lastSeenMs) {
+    this.item = item;
+    this.terms = terms;
+    this.lastSeenMs = lastSeenMs;
+  }
+}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The compact model of a Giphy GIF that the app keeps in memory. It holds only what the grid and
+ * the full screen view need, rather than the full <a
+ * href="http://tinyurl.com/ydac4992">Media</a> tree that the API returns (which has ~25
+ * renditions, analytics URLs, user info, etc). The title, slug and tags are kept so the item can
+ * be found again by the {@link MediaIndex}. The <code>downsized</code> renditions are kept so the
+ * full screen view can pick one that's sized to the display.
+ */
+public final class MediaItem {
+
+private final String       id;
+private final String       title;
+private final String       slug;
+private final List<String> tags;
+private final Rendition       grid;
+private final Rendition       original;
+private final List<Rendition> downsized;
+
+public MediaItem(
+    @NonNull String id,
+    @NonNull String title,
+    @NonNull String slug,
+    @NonNull List<String> tags,
+    @NonNull Rendition grid,
+    @NonNull Rendition original) {
+  this(id, title, slug, tags, grid, original, Collections.emptyList());
+}
+
+public MediaItem(
+    @NonNull String id,
+    @NonNull String title,
+    @NonNull String slug,
+    @NonNull List<String> tags,
+    @NonNull Rendition grid,
+    @NonNull Rendition original,
+    @NonNull List<Rendition> downsized) {
+  this.id = id;
+  this.title = title;
+  this.slug = slug;
+  this.tags = tags;
+  this.grid = grid;
+  this.original = original;
+  this.downsized = downsized;
+}
+
+public String getId() {
+  return id;
+}
+
+public String getTitle() {
+  return title;
+}
+
+public String getSlug() {
+  return slug;
+}
+
+public List<String> getTags() {
+  return tags;
+}
+
+/**
+ * The <code>fixed_width_downsampled</code> rendition, which is what's displayed in the grid.
+ */
+public Rendition getGrid() {
+  return grid;
+}
+
+public Rendition getOriginal() {
+  return original;
+}
+
+/**
+ * The <code>downsized</code>, <code>downsized_medium</code> and <code>downsized_large</code>
+ * renditions (the ones that were in the response). They are capped in file size, rather than in
+ * dimensions, so they are often as large as the original on screen at a fraction of the bytes.
+ */
+public List<Rendition> getDownsized() {
+  return downsized;
+}
+
+/**
+ * @return The smallest rendition that fills a display this many pixels wide without being scaled
+ * up (or that's as wide as the original, if the original is narrower). Renditions are compared by
+ * file size when it's known, and by pixel count otherwise.
+ */
+public Rendition getFullScreen(int displayWidth) {
+  int minWidth = Math.min(displayWidth, original.getWidth());
+  Rendition best = original;
+  for (Rendition rendition : downsized) {
+    if (rendition.getWidth() >= minWidth && rendition.isSmallerThan(best)) best = rendition;
+  }
+  return best;
+}
+
+public String toString() {
+  return id;
+}
+
+// Persistence.
+
+/**
+ * The binary form that's shared by the {@link MediaIndex} and {@link FeedSnapshot} files.
+ */
+void writeTo(@NonNull DataOutputStream out) throws IOException {
+  out.writeUTF(id);
+  out.writeUTF(title);
+  out.writeUTF(slug);
+  out.writeInt(tags.size());
+  for (String tag : tags) {
+    out.writeUTF(tag);
+  }
+  grid.writeTo(out);
+  original.writeTo(out);
+  out.writeInt(downsized.size());
+  for (Rendition rendition : downsized) {
+    rendition.writeTo(out);
+  }
+}
+
+static MediaItem readFrom(@NonNull DataInputStream in) throws IOException {
+  String id = in.readUTF();
+  String title = in.readUTF();
+  String slug = in.readUTF();
+  int tagCount = in.readInt();
+  List<String> tags = tagCount == 0 ? Collections.emptyList() : new ArrayList<>(tagCount);
+  for (int t = 0; t < tagCount; t++) {
+    tags.add(in.readUTF());
+  }
+  Rendition grid = Rendition.readFrom(in);
+  Rendition original = Rendition.readFrom(in);
+  int downsizedCount = in.readInt();
+  List<Rendition> downsized =
+      downsizedCount == 0 ? Collections.emptyList() : new ArrayList<>(downsizedCount);
+  for (int r = 0; r < downsizedCount; r++) {
+    downsized.add(Rendition.readFrom(in));
+  }
+  return new MediaItem(id, title, slug, tags, grid, original, downsized);
+}
+
+public static final class Rendition {
+
+  private final String url;
+  private final int    width;
+  private final int    height;
+  private final int    sizeBytes;
+
+  public Rendition(@NonNull String url, int width, int height) {
+    this(url, width, height, 0);
+  }
+
+  /**
+   * @param sizeBytes The size of the file, or 0 if it's not known.
+   */
+  public Rendition(@NonNull String url, int width, int height, int sizeBytes) {
+    this.url = url;
+    this.width = width;
+    this.height = height;
+    this.sizeBytes = sizeBytes;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getSizeBytes() {
+    return sizeBytes;
+  }
+
+  public float getAspectRatio() {
+    return height == 0 ? 1f : (float) width / (float) height;
+  }
+
+  boolean isSmallerThan(@NonNull Rendition other) {
+    if (sizeBytes > 0 && other.sizeBytes > 0) return sizeBytes < other.sizeBytes;
+    return (long) width * height < (long) other.width * other.height;
+  }
+
+  void writeTo(@NonNull DataOutputStream out) throws IOException {
+    out.writeUTF(url);
+    out.writeInt(width);
+    out.writeInt(height);
+    out.writeInt(sizeBytes);
+  }
+
+  static Rendition readFrom(@NonNull DataInputStream in) throws IOException {
+    return new Rendition(in.readUTF(), in.readInt(), in.readInt(), in.readInt());
+  }
+}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * One page of results from a Giphy list endpoint (trending or search), along with the pagination
+ * info that came with it.
+ *
+ * <ol>
+ * <li>A page of favorites covers one offset (in the list of favorite ids) per id that was looked
+ * up, even when some of them no longer exist and are missing from the page. Its {@link #getSpan()}
+ * says how many.
+ * </ol>
+ */
+public final class MediaPage {
+
+private final List<MediaItem> items;
+private final int             totalCount;
+private final int             offset;
+private final int             span;
+
+public MediaPage(@NonNull List<MediaItem> items, int totalCount, int offset) {
+  this(items, totalCount, offset, items.size());
+}
+
+public MediaPage(@NonNull List<MediaItem> items, int totalCount, int offset, int span) {
+  this.items = items;
+  this.totalCount = totalCount;
+  this.offset = offset;
+  this.span = span;
+}
+
+public List<MediaItem> getItems() {
+  return items;
+}
+
+/**
+ * Total number of results available on the server for this request.
+ */
+public int getTotalCount() {
+  return totalCount;
+}
+
+public int getOffset() {
+  return offset;
+}
+
+/**
+ * The number of offsets that this page covers, ie: how far the next page's offset is from this
+ * one's. The number of items, unless the page was built from a list of ids.
+ */
+public int getSpan() {
+  return span;
+}
+
+/**
+ * A 64 bit FNV-1a hash of the ids in this page, in order. Used to tell whether a page has changed
+ * when the server doesn't provide HTTP validators.
+ */
+public long getContentHash() {
+  long hash = 0xcbf29ce484222325L;
+  for (MediaItem item : items) {
+    String id = item.getId();
+    for (int i = 0; i < id.length(); i++) {
+      hash ^= id.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    // Separator, so that ["ab", "c"] and ["a", "bc"] hash differently.
+    hash ^= ',';
+    hash *= 0x100000001b3L;
+  }
+  return hash;
+}
+
+public String toString() {
+  return "offset:" + offset + ", count:" + items.size() + ", totalCount:" + totalCount;
+}
+}
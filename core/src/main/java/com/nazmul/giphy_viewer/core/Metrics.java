@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A registry of named counters, latency histograms and gauges that are cheap enough to update on
+ * hot paths (transport threads, binds, frame callbacks).
+ *
+ * <ol>
+ * <li>Recording is lock-free and doesn't allocate. Look up a {@link Counter} or {@link Histogram}
+ * once (eg: in a constructor) and keep it, rather than looking it up by name every time.
+ * <li>{@link Histogram}s use HDR style log-linear buckets: 16 buckets per power of two, so any
+ * percentile is reported to within about 6% of the real value, over the whole range of longs, in a
+ * fixed amount of memory.
+ * <li>{@link Gauge}s are sampled when the metrics are read (eg: to show them or dump them), on the
+ * thread that reads them.
+ * </ol>
+ */
+public final class Metrics {
+
+private final ConcurrentHashMap<String, Counter>   counters   = new ConcurrentHashMap<>();
+private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+private final ConcurrentHashMap<String, Gauge>     gauges     = new ConcurrentHashMap<>();
+
+@NonNull
+public Counter counter(@NonNull String name) {
+  Counter counter = counters.get(name);
+  if (counter == null) {
+    counters.putIfAbsent(name, new Counter());
+    counter = counters.get(name);
+  }
+  return counter;
+}
+
+@NonNull
+public Histogram histogram(@NonNull String name) {
+  Histogram histogram = histograms.get(name);
+  if (histogram == null) {
+    histograms.putIfAbsent(name, new Histogram());
+    histogram = histograms.get(name);
+  }
+  return histogram;
+}
+
+/**
+ * Registers (or replaces) the gauge with this name.
+ */
+public void gauge(@NonNull String name, @NonNull Gauge gauge) {
+  gauges.put(name, gauge);
+}
+
+public void removeGauge(@NonNull String name) {
+  gauges.remove(name);
+}
+
+// Reading.
+
+/**
+ * One line per metric, sorted by name, for showing on screen.
+ */
+@NonNull
+public String summary() {
+  StringBuilder summary = new StringBuilder();
+  for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+    summary.append(entry.getKey()).append(": ").append(entry.getValue().get()).append('\n');
+  }
+  for (Map.Entry<String, Gauge> entry : new TreeMap<>(gauges).entrySet()) {
+    summary.append(entry.getKey()).append(": ").append(entry.getValue().value()).append('\n');
+  }
+  for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+    Histogram histogram = entry.getValue();
+    summary.append(String.format(
+        Locale.US,
+        "%s: n=%d p50=%d p95=%d p99=%d max=%d%n",
+        entry.getKey(),
+        histogram.getCount(),
+        histogram.getValueAtPercentile(50),
+        histogram.getValueAtPercentile(95),
+        histogram.getValueAtPercentile(99),
+        histogram.getMax()));
+  }
+  return summary.toString();
+}
+
+/**
+ * Writes every metric as a JSON object, with counters and gauges as numbers, and histograms as
+ * objects with their count, mean, max and percentiles.
+ */
+public void writeJson(@NonNull Writer writer, long timestampMs) throws IOException {
+  JsonWriter json = new JsonWriter(writer);
+  json.setIndent("  ");
+  json.beginObject();
+  json.name("timestampMs").value(timestampMs);
+
+  json.name("counters").beginObject();
+  for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+    json.name(entry.getKey()).value(entry.getValue().get());
+  }
+  json.endObject();
+
+  json.name("gauges").beginObject();
+  for (Map.Entry<String, Gauge> entry : new TreeMap<>(gauges).entrySet()) {
+    json.name(entry.getKey()).value(entry.getValue().value());
+  }
+  json.endObject();
+
+  json.name("histograms").beginObject();
+  for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+    Histogram histogram = entry.getValue();
+    json.name(entry.getKey()).beginObject();
+    json.name("count").value(histogram.getCount());
+    json.name("mean").value(histogram.getMean());
+    json.name("max").value(histogram.getMax());
+    json.name("p50").value(histogram.getValueAtPercentile(50));
+    json.name("p90").value(histogram.getValueAtPercentile(90));
+    json.name("p95").value(histogram.getValueAtPercentile(95));
+    json.name("p99").value(histogram.getValueAtPercentile(99));
+    json.name("p999").value(histogram.getValueAtPercentile(99.9));
+    json.endObject();
+  }
+  json.endObject();
+
+  json.endObject();
+  json.flush();
+}
+
+// Metric types.
+
+public interface Gauge {
+  long value();
+}
+
+public static final class Counter {
+
+  private final AtomicLong value = new AtomicLong();
+
+  public void increment() {
+    value.incrementAndGet();
+  }
+
+  public void add(long delta) {
+    value.addAndGet(delta);
+  }
+
+  public long get() {
+    return value.get();
+  }
+}
+
+/**
+ * Records non-negative values (negative values are recorded as 0).
+ */
+public static final class Histogram {
+
+  private static final int SUB_BUCKET_BITS  = 4;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKET_COUNT     =
+      SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong      count   = new AtomicLong();
+  private final AtomicLong      sum     = new AtomicLong();
+  private final AtomicLong      max     = new AtomicLong();
+
+  public void record(long value) {
+    if (value < 0) value = 0;
+    buckets.incrementAndGet(bucketOf(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long currentMax;
+    while (value > (currentMax = max.get())) {
+      if (max.compareAndSet(currentMax, value)) break;
+    }
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public double getMean() {
+    long n = count.get();
+    return n == 0 ? 0 : (double) sum.get() / n;
+  }
+
+  /**
+   * @param percentile 0..100
+   * @return The highest value that's in the same bucket as the value at this percentile (so it
+   * over-reports by up to one bucket width), or 0 if nothing has been recorded.
+   */
+  public long getValueAtPercentile(double percentile) {
+    long n = count.get();
+    if (n == 0) return 0;
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      seen += buckets.get(bucket);
+      if (seen >= rank) return Math.min(highestValueIn(bucket), max.get());
+    }
+    return max.get();
+  }
+
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKET_COUNT) return (int) value;
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  static long highestValueIn(int bucket) {
+    if (bucket < SUB_BUCKET_COUNT) return bucket;
+    int shift = (bucket - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+    long subBucket = (bucket - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+    long lowest = (SUB_BUCKET_COUNT + subBucket) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
+}
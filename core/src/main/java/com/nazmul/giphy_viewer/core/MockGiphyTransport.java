@@ -0,0 +1,242 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A local, in-process stand-in for api.giphy.com. It answers trending and search requests with
+ * generated pages in the same JSON shape as the real API, after a configurable delay.
+ *
+ * <ol>
+ * <li>Use it to measure latency and throughput of the request/decode/publish path offline, by
+ * passing it to {@link GiphyClient#GiphyClient(GiphyTransport)}.
+ * <li>Ids are deterministic (derived from the query and the item's offset), so repeated runs
+ * produce the same feed.
+ * <li>Unless disabled, each page carries an <code>ETag</code>, and a matching <code>
+ * If-None-Match</code> is answered with an empty 304, like a well behaved CDN would.
+ * </ol>
+ */
+public final class MockGiphyTransport implements GiphyTransport {
+
+public static final class Builder {
+
+  private long    latencyMs  = 150;
+  private long    jitterMs   = 50;
+  private int     totalCount = 10_000;
+  private double  errorRate  = 0;
+  private int     threads    = 4;
+  private boolean etags      = true;
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public Builder latencyMs(long latencyMs) {
+    this.latencyMs = latencyMs;
+    return this;
+  }
+
+  public Builder jitterMs(long jitterMs) {
+    this.jitterMs = jitterMs;
+    return this;
+  }
+
+  public Builder totalCount(int totalCount) {
+    this.totalCount = totalCount;
+    return this;
+  }
+
+  public Builder errorRate(double errorRate) {
+    this.errorRate = errorRate;
+    return this;
+  }
+
+  public Builder threads(int threads) {
+    this.threads = threads;
+    return this;
+  }
+
+  public Builder etags(boolean etags) {
+    this.etags = etags;
+    return this;
+  }
+
+  public MockGiphyTransport build() {
+    return new MockGiphyTransport(this);
+  }
+}
+
+private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+private final long                     latencyMs;
+private final long                     jitterMs;
+private final int                      totalCount;
+private final double                   errorRate;
+private final boolean                  etags;
+private final ScheduledExecutorService executor;
+private final Random                   random = new Random(42);
+
+private MockGiphyTransport(Builder builder) {
+  latencyMs = builder.latencyMs;
+  jitterMs = builder.jitterMs;
+  totalCount = builder.totalCount;
+  errorRate = builder.errorRate;
+  etags = builder.etags;
+  executor = Executors.newScheduledThreadPool(builder.threads);
+}
+
+@NonNull
+@Override
+public Call get(@NonNull Request request, @NonNull Callback callback) {
+  final AtomicBoolean cancelled = new AtomicBoolean(false);
+  final long delayMs;
+  final boolean fail;
+  synchronized (random) {
+    delayMs = latencyMs + (jitterMs > 0 ? (long) (random.nextDouble() * jitterMs) : 0);
+    fail = random.nextDouble() < errorRate;
+  }
+
+  ScheduledFuture<?> future =
+      executor.schedule(
+          () -> {
+            if (cancelled.get()) return;
+            if (fail) {
+              callback.onFailure(new IOException("MockGiphyTransport: simulated failure"));
+              return;
+            }
+            try {
+              byte[] body = renderPage(parseQuery(request.getUrl())).getBytes(UTF_8);
+              Map<String, String> headers = new HashMap<>();
+              if (etags) {
+                String etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+                headers.put("etag", etag);
+                if (etag.equals(request.getHeaders().get(GiphyClient.HEADER_IF_NONE_MATCH))) {
+                  InputStream empty = new ByteArrayInputStream(new byte[0]);
+                  callback.onResponse(
+                      new Response(GiphyClient.HTTP_NOT_MODIFIED, headers, empty));
+                  return;
+                }
+              }
+              headers.put("content-type", "application/json");
+              headers.put("content-length", String.valueOf(body.length));
+              callback.onResponse(new Response(200, headers, new ByteArrayInputStream(body)));
+            } catch (IOException exception) {
+              callback.onFailure(exception);
+            }
+          },
+          delayMs,
+          TimeUnit.MILLISECONDS);
+
+  return () -> {
+    cancelled.set(true);
+    future.cancel(false);
+  };
+}
+
+@Override
+public void shutdown() {
+  executor.shutdownNow();
+}
+
+// Response generation.
+
+private String renderPage(Map<String, String> query) {
+  final String q = query.containsKey("q") ? query.get("q") : "trending";
+  final int offset = parseInt(query.get("offset"), 0);
+  final int limit = parseInt(query.get("limit"), GiphyClient.MAX_ITEMS_PER_REQUEST);
+  final int count = Math.max(0, Math.min(limit, totalCount - offset));
+
+  StringBuilder json = new StringBuilder(count * 1024);
+  json.append("{\"data\":[");
+  for (int i = 0; i < count; i++) {
+    if (i > 0) json.append(',');
+    renderItem(json, q, offset + i);
+  }
+  json.append("],\"pagination\":{\"total_count\":").append(totalCount)
+      .append(",\"count\":").append(count)
+      .append(",\"offset\":").append(offset)
+      .append("},\"meta\":{\"status\":200,\"msg\":\"OK\",\"response_id\":\"mock\"}}");
+  return json.toString();
+}
+
+private static void renderItem(StringBuilder json, String query, int index) {
+  final String id = String.format("%s%08x", "mock", (query.hashCode() * 31) ^ index);
+  final String slug = query.replace(' ', '-') + "-" + index + "-" + id;
+  final int gridHeight = 100 + (index * 37) % 200;
+  final int originalWidth = 480;
+  final int originalHeight = gridHeight * originalWidth / 200;
+  json.append("{\"type\":\"gif\",\"id\":\"").append(id)
+      .append("\",\"slug\":\"").append(slug)
+      .append("\",\"url\":\"https://giphy.com/gifs/").append(slug)
+      .append("\",\"title\":\"").append(query).append(" GIF #").append(index)
+      .append("\",\"tags\":[\"").append(query).append("\",\"mock\"]")
+      .append(",\"rating\":\"g\",\"import_datetime\":\"2018-11-20 12:00:00\",\"images\":{");
+  renderImage(json, "fixed_width_downsampled", id, "200w_d.gif", 200, gridHeight, 80_000);
+  json.append(',');
+  renderImage(json, "original", id, "giphy.gif", originalWidth, originalHeight, 2_000_000);
+  json.append("}}");
+}
+
+private static void renderImage(
+    StringBuilder json, String name, String id, String file, int width, int height, int size) {
+  json.append('"').append(name).append("\":{\"url\":\"https://media.giphy.com/media/")
+      .append(id).append('/').append(file)
+      .append("\",\"width\":\"").append(width)
+      .append("\",\"height\":\"").append(height)
+      .append("\",\"size\":\"").append(size)
+      .append("\"}");
+}
+
+private static Map<String, String> parseQuery(String url) throws UnsupportedEncodingException {
+  Map<String, String> params = new HashMap<>();
+  int start = url.indexOf('?');
+  if (start < 0) return params;
+  for (String pair : url.substring(start + 1).split("&")) {
+    int equals = pair.indexOf('=');
+    if (equals > 0) {
+      params.put(
+          pair.substring(0, equals), URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+    }
+  }
+  return params;
+}
+
+private static int parseInt(String value, int defaultValue) {
+  try {
+    return value == null ? defaultValue : Integer.parseInt(value);
+  } catch (NumberFormatException e) {
+    return defaultValue;
+  }
+}
+}
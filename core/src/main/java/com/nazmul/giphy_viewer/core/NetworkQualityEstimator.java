@@ -0,0 +1,205 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A live estimate of the network's bandwidth and latency, from the sizes and durations of real
+ * transfers (API responses and image fetches), classified into a {@link Tier} that the paging and
+ * image layers can adapt to.
+ *
+ * <ol>
+ * <li>Bandwidth is an exponentially decaying average of the log of each sample, ie: a geometric
+ * mean that weights recent samples most, so one very fast or very slow transfer doesn't swing it.
+ * Transfers smaller than {@link #MIN_TRANSFER_BYTES} are ignored, since their duration is mostly
+ * latency.
+ * <li>Latency (time to the response headers) is an exponentially decaying average too.
+ * <li>The tier is the lower of the bandwidth and latency tiers. It's {@link Tier#Unknown} until
+ * {@link #MIN_SAMPLES} samples are in, and it only changes once {@link #CONFIRM_SAMPLES} samples in
+ * a row agree on the new tier, so it doesn't flap between two neighbors.
+ * <li>Samples come from transport and image threads, so all access is synchronized. The {@link
+ * Listener} is called on the thread that recorded the sample that changed the tier.
+ * </ol>
+ */
+public final class NetworkQualityEstimator {
+
+public enum Tier {
+  Unknown,
+  Poor,
+  Moderate,
+  Good,
+  Excellent
+}
+
+public interface Listener {
+  void onTierChanged(@NonNull Tier tier);
+}
+
+public static final double DECAY              = 0.25;
+public static final int    MIN_SAMPLES        = 3;
+public static final int    CONFIRM_SAMPLES    = 3;
+public static final long   MIN_TRANSFER_BYTES = 10 * 1024;
+
+/**
+ * The lowest bandwidth (in kbps) for {@link Tier#Moderate}, {@link Tier#Good} and {@link
+ * Tier#Excellent}.
+ */
+public static final long[] BANDWIDTH_KBPS_TIERS = {150, 550, 2_000};
+
+/**
+ * The highest latency (in ms) for {@link Tier#Moderate}, {@link Tier#Good} and {@link
+ * Tier#Excellent}.
+ */
+public static final long[] LATENCY_MS_TIERS = {1_000, 400, 150};
+
+private double logBandwidthKbps;
+private int    bandwidthSamples;
+private double latencyMs;
+private int    latencySamples;
+
+private Tier tier = Tier.Unknown;
+private Tier candidateTier;
+private int  candidateSamples;
+
+@Nullable
+private Listener listener;
+
+public synchronized void setListener(@Nullable Listener listener) {
+  this.listener = listener;
+}
+
+// Samples.
+
+/**
+ * @param bytes      The size of the body that was read.
+ * @param durationMs How long it took to read it.
+ */
+public void recordTransfer(long bytes, long durationMs) {
+  if (bytes < MIN_TRANSFER_BYTES) return;
+  // Bits per ms is kbps.
+  double logKbps = Math.log(bytes * 8.0 / Math.max(1, durationMs));
+  Tier newTier;
+  synchronized (this) {
+    logBandwidthKbps = bandwidthSamples == 0
+                       ? logKbps
+                       : logBandwidthKbps + DECAY * (logKbps - logBandwidthKbps);
+    bandwidthSamples++;
+    newTier = updateTier();
+  }
+  notifyListener(newTier);
+}
+
+/**
+ * @param latencyMs The time from making a request to getting its response headers.
+ */
+public void recordLatency(long latencyMs) {
+  Tier newTier;
+  synchronized (this) {
+    this.latencyMs = latencySamples == 0
+                     ? latencyMs
+                     : this.latencyMs + DECAY * (latencyMs - this.latencyMs);
+    latencySamples++;
+    newTier = updateTier();
+  }
+  notifyListener(newTier);
+}
+
+// Estimates.
+
+@NonNull
+public synchronized Tier getTier() {
+  return tier;
+}
+
+/**
+ * @return The estimated bandwidth, or 0 if there are no samples yet.
+ */
+public synchronized long getBandwidthKbps() {
+  return bandwidthSamples == 0 ? 0 : Math.round(Math.exp(logBandwidthKbps));
+}
+
+/**
+ * @return The estimated latency, or 0 if there are no samples yet.
+ */
+public synchronized long getLatencyMs() {
+  return Math.round(latencyMs);
+}
+
+public static final String METRIC_BANDWIDTH_KBPS = "net.bandwidth_kbps";
+public static final String METRIC_LATENCY_MS     = "net.latency_ms";
+public static final String METRIC_TIER           = "net.tier";
+
+public void registerGauges(@NonNull Metrics metrics) {
+  metrics.gauge(METRIC_BANDWIDTH_KBPS, this::getBandwidthKbps);
+  metrics.gauge(METRIC_LATENCY_MS, this::getLatencyMs);
+  metrics.gauge(METRIC_TIER, () -> getTier().ordinal());
+}
+
+// Classification.
+
+/**
+ * @return The new tier if this sample changed it, otherwise null.
+ */
+@Nullable
+private Tier updateTier() {
+  if (bandwidthSamples + latencySamples < MIN_SAMPLES) return null;
+  Tier classified = classify();
+  if (classified == tier) {
+    candidateTier = null;
+    return null;
+  }
+  if (classified != candidateTier) {
+    candidateTier = classified;
+    candidateSamples = 0;
+  }
+  // The first tier is taken right away; after that, a change has to be confirmed.
+  if (++candidateSamples < CONFIRM_SAMPLES && tier != Tier.Unknown) return null;
+  tier = classified;
+  candidateTier = null;
+  return tier;
+}
+
+private Tier classify() {
+  Tier bandwidthTier = Tier.Excellent;
+  if (bandwidthSamples > 0) {
+    double kbps = Math.exp(logBandwidthKbps);
+    bandwidthTier = Tier.Poor;
+    for (int i = 0; i < BANDWIDTH_KBPS_TIERS.length && kbps >= BANDWIDTH_KBPS_TIERS[i]; i++) {
+      bandwidthTier = Tier.values()[Tier.Moderate.ordinal() + i];
+    }
+  }
+  Tier latencyTier = Tier.Excellent;
+  if (latencySamples > 0) {
+    latencyTier = Tier.Poor;
+    for (int i = 0; i < LATENCY_MS_TIERS.length && latencyMs <= LATENCY_MS_TIERS[i]; i++) {
+      latencyTier = Tier.values()[Tier.Moderate.ordinal() + i];
+    }
+  }
+  return bandwidthTier.compareTo(latencyTier) < 0 ? bandwidthTier : latencyTier;
+}
+
+private void notifyListener(@Nullable Tier newTier) {
+  if (newTier == null) return;
+  Listener listener;
+  synchronized (this) {
+    listener = this.listener;
+  }
+  if (listener != null) listener.onTierChanged(newTier);
+}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+
+/**
+ * Feeds a {@link NetworkQualityEstimator} from every response that an OkHttp client gets. It's
+ * added as a network interceptor (see {@link OkHttpTransport.Builder#networkQualityEstimator}), so
+ * API requests and image fetches that share the client are both measured.
+ *
+ * <ol>
+ * <li>Network interceptors run below OkHttp's transparent gzip, so the bytes that are counted are
+ * the ones that came over the wire, not the decompressed ones.
+ * <li>Only the time spent blocked reading from the connection is counted, not the time that the
+ * caller spends between reads (eg: decoding JSON as it streams in).
+ * <li>The latency is the time from sending the request to getting the response headers, on a
+ * connection that's already been set up, so waiting in the dispatcher and connecting aren't
+ * counted.
+ * <li>The transfer is recorded when the body has been read to the end, or closed before that (eg:
+ * the JSON decoder stops at the closing brace). A partial body still makes a fair sample, since
+ * only the bytes that arrived are divided by the time spent waiting for them.
+ * </ol>
+ */
+public final class NetworkQualityInterceptor implements Interceptor {
+
+private final NetworkQualityEstimator estimator;
+
+public NetworkQualityInterceptor(@NonNull NetworkQualityEstimator estimator) {
+  this.estimator = estimator;
+}
+
+@Override
+public Response intercept(@NonNull Chain chain) throws IOException {
+  long startNs = System.nanoTime();
+  Response response = chain.proceed(chain.request());
+  estimator.recordLatency((System.nanoTime() - startNs) / 1_000_000);
+  ResponseBody body = response.body();
+  if (body == null) return response;
+  return response.newBuilder()
+                 .body(ResponseBody.create(body.contentType(),
+                                           body.contentLength(),
+                                           Okio.buffer(new TimedSource(body.source()))))
+                 .build();
+}
+
+/**
+ * Counts the bytes read from the connection, and the time spent waiting for them.
+ */
+private final class TimedSource extends ForwardingSource {
+
+  private long    bytes;
+  private long    readNs;
+  private boolean recorded;
+
+  TimedSource(@NonNull BufferedSource delegate) {
+    super(delegate);
+  }
+
+  @Override
+  public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+    long startNs = System.nanoTime();
+    long read = super.read(sink, byteCount);
+    readNs += System.nanoTime() - startNs;
+    if (read == -1) {
+      record();
+    } else {
+      bytes += read;
+    }
+    return read;
+  }
+
+  @Override
+  public void close() throws IOException {
+    record();
+    super.close();
+  }
+
+  private void record() {
+    if (recorded) return;
+    recorded = true;
+    estimator.recordTransfer(bytes, readNs / 1_000_000);
+  }
+}
+}
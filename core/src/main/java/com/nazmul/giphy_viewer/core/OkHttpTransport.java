@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Headers;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link GiphyTransport} backed by a single, shared <a href="https://square.github.io/okhttp/">OkHttp</a>
+ * client.
+ *
+ * <ol>
+ * <li>Connections to api.giphy.com are kept alive in a {@link ConnectionPool} and reused across
+ * pages, instead of a new TLS handshake per request.
+ * <li>HTTP/2 is negotiated when the server supports it, so concurrent page requests are
+ * multiplexed over one connection.
+ * <li>OkHttp transparently sends <code>Accept-Encoding: gzip</code> and decompresses the body, which
+ * shrinks the (very repetitive) Giphy JSON considerably.
+ * <li>The {@link Dispatcher} bounds how many requests are in flight at once.
+ * <li>If it's given a {@link NetworkQualityEstimator}, every response feeds it (see {@link
+ * NetworkQualityInterceptor}). Other clients made from {@link #getClient()} (eg: for images) share
+ * the connection pool and the estimator.
+ * </ol>
+ */
+public final class OkHttpTransport implements GiphyTransport {
+
+public static final class Builder {
+
+  private int  maxRequests        = 8;
+  private int  maxRequestsPerHost = 4;
+  private int  maxIdleConnections = 4;
+  private long keepAliveMs        = TimeUnit.MINUTES.toMillis(5);
+  private long connectTimeoutMs   = TimeUnit.SECONDS.toMillis(10);
+  private long readTimeoutMs      = TimeUnit.SECONDS.toMillis(15);
+
+  @Nullable
+  private NetworkQualityEstimator networkQuality;
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public Builder maxRequests(int maxRequests) {
+    this.maxRequests = maxRequests;
+    return this;
+  }
+
+  public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+    this.maxRequestsPerHost = maxRequestsPerHost;
+    return this;
+  }
+
+  public Builder maxIdleConnections(int maxIdleConnections) {
+    this.maxIdleConnections = maxIdleConnections;
+    return this;
+  }
+
+  public Builder keepAliveMs(long keepAliveMs) {
+    this.keepAliveMs = keepAliveMs;
+    return this;
+  }
+
+  public Builder connectTimeoutMs(long connectTimeoutMs) {
+    this.connectTimeoutMs = connectTimeoutMs;
+    return this;
+  }
+
+  public Builder readTimeoutMs(long readTimeoutMs) {
+    this.readTimeoutMs = readTimeoutMs;
+    return this;
+  }
+
+  public Builder networkQualityEstimator(@Nullable NetworkQualityEstimator networkQuality) {
+    this.networkQuality = networkQuality;
+    return this;
+  }
+
+  public OkHttpTransport build() {
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(maxRequests);
+    dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+    OkHttpClient.Builder clientBuilder =
+        new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(
+                new ConnectionPool(maxIdleConnections, keepAliveMs, TimeUnit.MILLISECONDS))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+            .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+            .retryOnConnectionFailure(true);
+    if (networkQuality != null) {
+      clientBuilder.addNetworkInterceptor(new NetworkQualityInterceptor(networkQuality));
+    }
+    return new OkHttpTransport(clientBuilder.build());
+  }
+}
+
+private final OkHttpClient client;
+
+private OkHttpTransport(@NonNull OkHttpClient client) {
+  this.client = client;
+}
+
+/**
+ * @return The underlying client. Use {@link OkHttpClient#newBuilder()} to make one that shares its
+ * connection pool and interceptors, but has its own dispatcher (so its requests don't queue behind
+ * this transport's, or the other way around).
+ */
+@NonNull
+public OkHttpClient getClient() {
+  return client;
+}
+
+@NonNull
+@Override
+public Call get(@NonNull Request request, @NonNull Callback callback) {
+  okhttp3.Request.Builder requestBuilder = new okhttp3.Request.Builder().url(request.getUrl());
+  for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+    requestBuilder.header(header.getKey(), header.getValue());
+  }
+
+  okhttp3.Call call = client.newCall(requestBuilder.build());
+  call.enqueue(
+      new okhttp3.Callback() {
+        @Override
+        public void onFailure(@NonNull okhttp3.Call call, @NonNull IOException exception) {
+          callback.onFailure(exception);
+        }
+
+        @Override
+        public void onResponse(@NonNull okhttp3.Call call, @NonNull okhttp3.Response response) {
+          try (ResponseBody body = response.body()) {
+            callback.onResponse(
+                new Response(response.code(), toMap(response.headers()), body.byteStream()));
+          } catch (IOException exception) {
+            callback.onFailure(exception);
+          }
+        }
+      });
+  return call::cancel;
+}
+
+@Override
+public void shutdown() {
+  client.dispatcher().cancelAll();
+  client.dispatcher().executorService().shutdown();
+  client.connectionPool().evictAll();
+}
+
+private static Map<String, String> toMap(Headers headers) {
+  Map<String, String> map = new HashMap<>(headers.size());
+  for (int i = 0; i < headers.size(); i++) {
+    map.put(headers.name(i).toLowerCase(Locale.US), headers.value(i));
+  }
+  return map;
+}
+}
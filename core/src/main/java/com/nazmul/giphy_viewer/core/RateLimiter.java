@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A token bucket that caps how fast requests can be made: up to <code>burst</code> of them right
+ * away, and then one every <code>refillIntervalMs</code>.
+ *
+ * <ol>
+ * <li>It never blocks. Callers that don't get a permit ask for {@link #getDelayMs()} and try again
+ * after that (eg: using a {@link FeedEngine.Scheduler}).
+ * <li>Requests that can't wait (eg: a refresh the user asked for) are {@link #charge()}d instead,
+ * which can leave the bucket owing permits. Those are paid back by refills before {@link
+ * #tryAcquire()} succeeds again, so the requests that can wait (hedges, pages loaded in parallel)
+ * only use what's left over.
+ * <li>This class is not thread safe. Like the {@link FeedEngine}, it's only used on the main
+ * thread.
+ * </ol>
+ */
+public final class RateLimiter {
+
+private final int              burst;
+private final long             refillIntervalMs;
+private final FeedEngine.Clock clock;
+private       int              permits;
+private       long             lastRefillMs;
+
+public RateLimiter(int burst, long refillIntervalMs, @NonNull FeedEngine.Clock clock) {
+  if (burst < 1) throw new IllegalArgumentException("burst must be at least 1");
+  if (refillIntervalMs < 1) throw new IllegalArgumentException("refillIntervalMs must be > 0");
+  this.burst = burst;
+  this.refillIntervalMs = refillIntervalMs;
+  this.clock = clock;
+  this.permits = burst;
+  this.lastRefillMs = clock.currentTimeMillis();
+}
+
+/**
+ * @return true if a request can be made now (and it's been counted).
+ */
+public boolean tryAcquire() {
+  refill();
+  if (permits <= 0) return false;
+  permits--;
+  return true;
+}
+
+/**
+ * Counts a request that's made whether or not there's a permit for it.
+ */
+public void charge() {
+  refill();
+  permits--;
+}
+
+/**
+ * @return How long until {@link #tryAcquire()} succeeds, or 0 if it would succeed now.
+ */
+public long getDelayMs() {
+  refill();
+  if (permits > 0) return 0;
+  return lastRefillMs + (1 - permits) * refillIntervalMs - clock.currentTimeMillis();
+}
+
+private void refill() {
+  long nowMs = clock.currentTimeMillis();
+  if (permits == burst) {
+    lastRefillMs = nowMs;
+    return;
+  }
+  long refills = (nowMs - lastRefillMs) / refillIntervalMs;
+  if (refills == 0) return;
+  permits = (int) Math.min(burst, permits + refills);
+  lastRefillMs += refills * refillIntervalMs;
+}
+}
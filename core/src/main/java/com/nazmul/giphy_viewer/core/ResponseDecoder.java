@@ -0,0 +1,40 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Turns the body of a Giphy list response (trending or search) into a {@link MediaPage}. This runs
+ * on the transport's background thread.
+ *
+ * <ol>
+ * <li>{@link StreamingResponseDecoder} reads the JSON token by token and keeps only the fields in
+ * {@link MediaItem}. This is what {@link GiphyClient} uses by default.
+ * <li>The app's <code>SdkResponseDecoder</code> (in its unit tests, as the benchmark's reference)
+ * deserializes the full Giphy Android SDK model and then converts it.
+ * </ol>
+ */
+public interface ResponseDecoder {
+
+@NonNull
+MediaPage decode(@NonNull InputStream body) throws IOException;
+}
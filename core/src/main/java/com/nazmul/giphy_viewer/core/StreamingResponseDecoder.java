@@ -0,0 +1,232 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decodes a Giphy list response straight into {@link MediaItem}s with a pull parser ({@link
+ * JsonReader}), instead of reflectively building the whole SDK model.
+ *
+ * <ol>
+ * <li>Only <code>data[].id</code>, <code>title</code>, <code>slug</code>, <code>tags</code>,
+ * <code>images.fixed_width_downsampled</code>, <code>images.original</code>, <code>
+ * images.downsized*</code> and <code>pagination</code> are read.
+ * <li>Everything else (the other ~20 renditions, analytics, user, meta, etc) is passed over with
+ * {@link JsonReader#skipValue()}, which doesn't materialize any strings or objects.
+ * </ol>
+ */
+public final class StreamingResponseDecoder implements ResponseDecoder {
+
+private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+@NonNull
+@Override
+public MediaPage decode(@NonNull InputStream body) throws IOException {
+  JsonReader reader = new JsonReader(new InputStreamReader(body, UTF_8));
+  try {
+    return readResponse(reader);
+  } catch (IllegalStateException | NumberFormatException e) {
+    throw new IOException("Malformed Giphy response", e);
+  }
+}
+
+private static MediaPage readResponse(JsonReader reader) throws IOException {
+  List<MediaItem> items = new ArrayList<>(GiphyClient.MAX_ITEMS_PER_REQUEST);
+  int totalCount = 0;
+  int offset = 0;
+
+  reader.beginObject();
+  while (reader.hasNext()) {
+    switch (reader.nextName()) {
+      case "data":
+        reader.beginArray();
+        while (reader.hasNext()) {
+          MediaItem item = readItem(reader);
+          if (item != null) items.add(item);
+        }
+        reader.endArray();
+        break;
+      case "pagination":
+        reader.beginObject();
+        while (reader.hasNext()) {
+          switch (reader.nextName()) {
+            case "total_count":
+              totalCount = reader.nextInt();
+              break;
+            case "offset":
+              offset = reader.nextInt();
+              break;
+            default:
+              reader.skipValue();
+          }
+        }
+        reader.endObject();
+        break;
+      default:
+        reader.skipValue();
+    }
+  }
+  reader.endObject();
+
+  return new MediaPage(items, totalCount, offset);
+}
+
+/**
+ * @return null if the item is missing any of the fields that the app needs.
+ */
+private static MediaItem readItem(JsonReader reader) throws IOException {
+  String id = null;
+  String title = "";
+  String slug = "";
+  List<String> tags = Collections.emptyList();
+  MediaItem.Rendition grid = null;
+  MediaItem.Rendition original = null;
+  List<MediaItem.Rendition> downsized = Collections.emptyList();
+
+  reader.beginObject();
+  while (reader.hasNext()) {
+    switch (reader.nextName()) {
+      case "id":
+        id = reader.nextString();
+        break;
+      case "title":
+        title = readString(reader);
+        break;
+      case "slug":
+        slug = readString(reader);
+        break;
+      case "tags":
+        tags = readStrings(reader);
+        break;
+      case "images":
+        reader.beginObject();
+        while (reader.hasNext()) {
+          switch (reader.nextName()) {
+            case "fixed_width_downsampled":
+              grid = readRendition(reader);
+              break;
+            case "original":
+              original = readRendition(reader);
+              break;
+            case "downsized":
+            case "downsized_medium":
+            case "downsized_large":
+              MediaItem.Rendition rendition = readRendition(reader);
+              if (rendition == null) break;
+              if (downsized.isEmpty()) downsized = new ArrayList<>(3);
+              downsized.add(rendition);
+              break;
+            default:
+              reader.skipValue();
+          }
+        }
+        reader.endObject();
+        break;
+      default:
+        reader.skipValue();
+    }
+  }
+  reader.endObject();
+
+  if (id == null || grid == null || original == null) return null;
+  return new MediaItem(id, title, slug, tags, grid, original, downsized);
+}
+
+private static String readString(JsonReader reader) throws IOException {
+  if (reader.peek() == JsonToken.NULL) {
+    reader.nextNull();
+    return "";
+  }
+  return reader.nextString();
+}
+
+/**
+ * Tags are almost always empty, in which case the shared empty list is returned.
+ */
+private static List<String> readStrings(JsonReader reader) throws IOException {
+  if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+    reader.skipValue();
+    return Collections.emptyList();
+  }
+  List<String> strings = null;
+  reader.beginArray();
+  while (reader.hasNext()) {
+    if (reader.peek() != JsonToken.STRING) {
+      reader.skipValue();
+      continue;
+    }
+    if (strings == null) strings = new ArrayList<>();
+    strings.add(reader.nextString());
+  }
+  reader.endArray();
+  return strings == null ? Collections.emptyList() : strings;
+}
+
+private static MediaItem.Rendition readRendition(JsonReader reader) throws IOException {
+  String url = null;
+  int width = 0;
+  int height = 0;
+  int sizeBytes = 0;
+
+  reader.beginObject();
+  while (reader.hasNext()) {
+    switch (reader.nextName()) {
+      case "url":
+        url = reader.nextString();
+        break;
+      case "width":
+        width = readInt(reader);
+        break;
+      case "height":
+        height = readInt(reader);
+        break;
+      case "size":
+        sizeBytes = readInt(reader);
+        break;
+      default:
+        reader.skipValue();
+    }
+  }
+  reader.endObject();
+
+  return url == null ? null : new MediaItem.Rendition(url, width, height, sizeBytes);
+}
+
+/**
+ * Giphy sends dimensions as quoted strings (<code>"width": "200"</code>). {@link
+ * JsonReader#nextInt()} accepts both forms; empty strings are treated as 0.
+ */
+private static int readInt(JsonReader reader) throws IOException {
+  if (reader.peek() == JsonToken.STRING) {
+    String value = reader.nextString();
+    return value.isEmpty() ? 0 : Integer.parseInt(value);
+  }
+  return reader.nextInt();
+}
+}
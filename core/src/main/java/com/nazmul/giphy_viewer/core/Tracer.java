@@ -0,0 +1,222 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records structured trace events (request start and end, binds, pages being published) into a
+ * preallocated ring buffer, and exports them in the Chrome trace event format, which can be opened
+ * in Perfetto (ui.perfetto.dev) or chrome://tracing.
+ *
+ * <ol>
+ * <li>Every event has a {@link Level}, and is dropped unless the tracer is at that level or
+ * above. Events are named by string constants and carry a single long argument, so recording an
+ * event doesn't allocate, and a disabled event costs one volatile read.
+ * <li>The buffer holds the last {@link #getCapacity()} events. Recording is lock-free and safe
+ * from any thread. An export that runs while events are being recorded may see a few torn
+ * entries, which is fine for a trace.
+ * </ol>
+ */
+public final class Tracer {
+
+public enum Level {
+  /**
+   * Nothing is recorded.
+   */
+  Off,
+  /**
+   * Requests and pages being published: a handful of events per page.
+   */
+  Info,
+  /**
+   * Per item events too (eg: binds).
+   */
+  Verbose
+}
+
+public static final int DEFAULT_CAPACITY = 16_384;
+
+private static final byte PHASE_BEGIN       = 'B';
+private static final byte PHASE_END         = 'E';
+private static final byte PHASE_ASYNC_BEGIN = 'b';
+private static final byte PHASE_ASYNC_END   = 'e';
+private static final byte PHASE_INSTANT     = 'i';
+private static final byte PHASE_COUNTER     = 'C';
+
+private final int        mask;
+private final byte[]     phases;
+private final String[]   names;
+private final long[]     timestampsNs;
+private final long[]     threadIds;
+private final long[]     ids;
+private final long[]     args;
+private final AtomicLong next    = new AtomicLong();
+private final AtomicLong asyncId = new AtomicLong();
+private final long       startNs = System.nanoTime();
+private volatile int     level;
+
+/**
+ * @param capacity Rounded up to a power of two.
+ */
+public Tracer(@NonNull Level level, int capacity) {
+  int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+  this.mask = size - 1;
+  this.phases = new byte[size];
+  this.names = new String[size];
+  this.timestampsNs = new long[size];
+  this.threadIds = new long[size];
+  this.ids = new long[size];
+  this.args = new long[size];
+  setLevel(level);
+}
+
+public Tracer(@NonNull Level level) {
+  this(level, DEFAULT_CAPACITY);
+}
+
+public void setLevel(@NonNull Level level) {
+  this.level = level.ordinal();
+}
+
+@NonNull
+public Level getLevel() {
+  return Level.values()[level];
+}
+
+/**
+ * Use this to skip work that's only needed to build an event's argument.
+ */
+public boolean isEnabled(@NonNull Level level) {
+  return level != Level.Off && level.ordinal() <= this.level;
+}
+
+public int getCapacity() {
+  return mask + 1;
+}
+
+/**
+ * @return The number of events recorded since this tracer was created (including ones that have
+ * since been overwritten).
+ */
+public long getRecordedCount() {
+  return next.get();
+}
+
+// Recording.
+
+/**
+ * Starts a slice on this thread. Must be followed by {@link #end(Level, String)} on the same
+ * thread.
+ */
+public void begin(@NonNull Level level, @NonNull String name, long arg) {
+  if (isEnabled(level)) record(PHASE_BEGIN, name, 0, arg);
+}
+
+public void end(@NonNull Level level, @NonNull String name) {
+  if (isEnabled(level)) record(PHASE_END, name, 0, 0);
+}
+
+/**
+ * @return A new id for a pair of {@link #asyncBegin} and {@link #asyncEnd} events.
+ */
+public long newAsyncId() {
+  return asyncId.incrementAndGet();
+}
+
+/**
+ * Starts a slice that can end on another thread (eg: a request).
+ */
+public void asyncBegin(@NonNull Level level, @NonNull String name, long id) {
+  if (isEnabled(level)) record(PHASE_ASYNC_BEGIN, name, id, 0);
+}
+
+public void asyncEnd(@NonNull Level level, @NonNull String name, long id, long arg) {
+  if (isEnabled(level)) record(PHASE_ASYNC_END, name, id, arg);
+}
+
+public void instant(@NonNull Level level, @NonNull String name, long arg) {
+  if (isEnabled(level)) record(PHASE_INSTANT, name, 0, arg);
+}
+
+public void counter(@NonNull Level level, @NonNull String name, long value) {
+  if (isEnabled(level)) record(PHASE_COUNTER, name, 0, value);
+}
+
+private void record(byte phase, @NonNull String name, long id, long arg) {
+  int slot = (int) (next.getAndIncrement() & mask);
+  phases[slot] = phase;
+  names[slot] = name;
+  timestampsNs[slot] = System.nanoTime();
+  threadIds[slot] = Thread.currentThread().getId();
+  ids[slot] = id;
+  args[slot] = arg;
+}
+
+// Exporting.
+
+/**
+ * Writes the events that are in the buffer, oldest first, as a Chrome trace JSON object.
+ */
+public void writeChromeTrace(@NonNull Writer writer) throws IOException {
+  long end = next.get();
+  long start = Math.max(0, end - getCapacity());
+
+  JsonWriter json = new JsonWriter(writer);
+  json.beginObject();
+  json.name("displayTimeUnit").value("ms");
+  json.name("traceEvents").beginArray();
+  for (long index = start; index < end; index++) {
+    int slot = (int) (index & mask);
+    String name = names[slot];
+    if (name == null) continue;
+    byte phase = phases[slot];
+    json.beginObject();
+    json.name("name").value(name);
+    json.name("cat").value(category(name));
+    json.name("ph").value(String.valueOf((char) phase));
+    json.name("ts").value((timestampsNs[slot] - startNs) / 1_000.0);
+    json.name("pid").value(1);
+    json.name("tid").value(threadIds[slot]);
+    if (phase == PHASE_ASYNC_BEGIN || phase == PHASE_ASYNC_END) {
+      json.name("id").value(ids[slot]);
+    }
+    if (phase == PHASE_INSTANT) json.name("s").value("t");
+    if (phase != PHASE_END && phase != PHASE_ASYNC_BEGIN) {
+      json.name("args").beginObject().name("value").value(args[slot]).endObject();
+    }
+    json.endObject();
+  }
+  json.endArray();
+  json.endObject();
+  json.flush();
+}
+
+/**
+ * Events are named "category.event" (eg: "api.request").
+ */
+private static String category(@NonNull String name) {
+  int dot = name.indexOf('.');
+  return dot == -1 ? name : name.substring(0, dot);
+}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FavoritesStoreTest {
+
+@Rule
+public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+@Test
+public void toggle_addsAndRemoves_mostRecentFirst() {
+  FavoritesStore store = new FavoritesStore();
+  assertTrue(store.toggle("a"));
+  assertTrue(store.toggle("b"));
+  assertTrue(store.toggle("c"));
+  assertFalse(store.toggle("b"));
+
+  assertEquals(Arrays.asList("c", "a"), store.getIds());
+  assertTrue(store.contains("a"));
+  assertFalse(store.contains("b"));
+}
+
+@Test
+public void saveAndLoad_keepsOrder_andIdsAddedBeforeLoading() throws IOException {
+  File file = temporaryFolder.newFile("favorites.bin");
+  FavoritesStore saved = new FavoritesStore();
+  for (int i = 0; i < 1_000; i++) {
+    saved.add("id" + i);
+  }
+  saved.save(file);
+
+  FavoritesStore loaded = new FavoritesStore();
+  loaded.add("new");
+  loaded.add("id0");
+  loaded.load(file);
+
+  assertEquals(1_001, loaded.size());
+  assertEquals(Arrays.asList("id0", "new", "id999", "id998"), loaded.getIds().subList(0, 4));
+}
+
+@Test
+public void load_keepsIdsRemovedBeforeLoadingRemoved() throws IOException {
+  File file = temporaryFolder.newFile("favorites.bin");
+  FavoritesStore saved = new FavoritesStore();
+  saved.add("a");
+  saved.add("b");
+  saved.add("c");
+  saved.save(file);
+
+  // The user unstars "b" (and stars and unstars "d") before the file has been read.
+  FavoritesStore loaded = new FavoritesStore();
+  assertTrue(loaded.toggle("d"));
+  assertFalse(loaded.toggle("d"));
+  assertFalse(loaded.remove("b"));
+  loaded.load(file);
+
+  assertEquals(Arrays.asList("c", "a"), loaded.getIds());
+}
+}
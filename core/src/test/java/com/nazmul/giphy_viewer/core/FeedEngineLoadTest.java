@@ -0,0 +1,255 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Long, synthetic sessions against the {@link FeedEngine}, with ceilings on the things that have
+ * gone wrong in production: memory that grows with every feed visited, duplicate rows and
+ * duplicate requests. Pages are served by a {@link SimulatedGiphyApi} on {@link VirtualTime}, so
+ * tens of thousands of items take a few seconds to run.
+ *
+ * <ol>
+ * <li>Retained heap is measured around the whole engine after a full GC. It's noisy, so the
+ * ceilings are set well above today's numbers, but far below what unbounded growth would cost.
+ * <li>Scrolling is simulated the way the list does it: the list asks for more (twice, since
+ * Paginate can call back again before the page arrives), and asks again if a page fails.
+ * </ol>
+ */
+public class FeedEngineLoadTest {
+
+/**
+ * Retained heap per item in the feeds that are kept in memory.
+ */
+public static final long MAX_BYTES_PER_ITEM = 2_048;
+
+/**
+ * Retained heap that doesn't depend on the number of items (the engine, the caches, slack for
+ * GC noise).
+ */
+public static final long HEAP_SLACK_BYTES = 4 * 1024 * 1024;
+
+/**
+ * One request per page, plus 10% for duplicates and failed requests.
+ */
+public static final double MAX_CALLS_PER_ITEM = 1.1 / SimulatedGiphyApi.PAGE_SIZE / 0.9;
+
+private static final long STEP_MS = 10;
+
+private final VirtualTime virtualTime = new VirtualTime();
+private final List<Long>  pageTimes   = new ArrayList<>();
+
+private SimulatedGiphyApi giphyApi;
+private FeedEngine        engine;
+private int               pagesShown;
+private int               refreshes;
+
+@Test
+public void longScrollSession_staysWithinBudgets() {
+  long heapBefore = usedHeapAfterGc();
+  start(SimulatedGiphyApi.Builder.builder().errorRate(0.02).duplicateRate(0.1));
+
+  engine.requestRefreshData(null);
+  virtualTime.runUntilIdle();
+  refreshUntilShown("trending");
+  scrollTo(20_000);
+
+  List<MediaItem> shown = engine.getUnderlyingData();
+  long retained = usedHeapAfterGc() - heapBefore;
+  assertNoDuplicateRows(shown);
+  assertTrue("calls per item: " + callsPerItem(shown.size()),
+             callsPerItem(shown.size()) <= MAX_CALLS_PER_ITEM);
+  assertEquals(0, giphyApi.cancelled);
+  assertTrue("retained: " + retained,
+             retained <= HEAP_SLACK_BYTES + shown.size() * MAX_BYTES_PER_ITEM);
+
+  // A page normally arrives within one request's latency. The slowest ones (2%) had to be
+  // retried.
+  Collections.sort(pageTimes);
+  long maxPageMs = giphyApi.getMaxLatencyMs() + STEP_MS;
+  assertTrue("p95: " + percentile(0.95), percentile(0.95) <= maxPageMs);
+  assertTrue("max: " + percentile(1), percentile(1) <= 3 * maxPageMs);
+}
+
+@Test
+public void modeSwitchStorm_retainsOnlyCachedFeeds() {
+  final int itemsPerFeed = 250;
+  long heapBefore = usedHeapAfterGc();
+  start(SimulatedGiphyApi.Builder.builder().errorRate(0.02).duplicateRate(0.1));
+
+  int itemsShown = 0;
+  for (int i = 0; i < 200; i++) {
+    String query = "query" + i;
+    // Type the query one letter at a time, faster than the debounce.
+    for (int end = 1; end <= query.length(); end++) {
+      engine.onSearchQueryChanged(query.substring(0, end));
+      virtualTime.advance(50);
+    }
+    // Change our mind before the results arrive.
+    engine.submitSearch(query + "x");
+    engine.submitSearch(query);
+    virtualTime.runUntilIdle();
+    refreshUntilShown(query);
+    itemsShown += scrollTo(itemsPerFeed);
+    assertOnlyResultsFor(query);
+
+    if (i % 10 == 0) {
+      engine.setTrendingMode();
+      virtualTime.runUntilIdle();
+      refreshUntilShown("trending");
+      assertOnlyResultsFor("trending");
+    }
+  }
+
+  long retained = usedHeapAfterGc() - heapBefore;
+  long ceiling =
+      HEAP_SLACK_BYTES + (FeedEngine.MAX_CACHED_FEEDS + 1) * itemsPerFeed * MAX_BYTES_PER_ITEM;
+  assertTrue("items shown: " + itemsShown + ", retained: " + retained, retained <= ceiling);
+  assertNoDuplicateRows(engine.getUnderlyingData());
+}
+
+@Test
+public void refreshStorm_coalescesRequests() {
+  start(SimulatedGiphyApi.Builder.builder().latencyMs(150).jitterMs(50));
+  engine.requestRefreshData(null);
+  virtualTime.runUntilIdle();
+  int requestsBefore = giphyApi.requests;
+
+  // Pull to refresh over and over, for longer than a request takes.
+  final int[] completed = {0};
+  for (int i = 0; i < 50; i++) {
+    engine.requestRefreshData(() -> completed[0]++);
+    virtualTime.advance(8);
+  }
+  virtualTime.runUntilIdle();
+
+  assertEquals(50, completed[0]);
+  // 400ms of pulling, with requests that take at least 150ms each.
+  assertTrue("requests: " + (giphyApi.requests - requestsBefore),
+             giphyApi.requests - requestsBefore <= 3);
+  assertNoDuplicateRows(engine.getUnderlyingData());
+}
+
+// Helpers.
+
+private void start(@NonNull SimulatedGiphyApi.Builder builder) {
+  giphyApi = builder.build(virtualTime);
+  engine = FeedEngine.Builder.builder()
+                             .giphyApi(giphyApi)
+                             .mediaIndex(new MediaIndex(1))
+                             .scheduler(virtualTime)
+                             .clock(virtualTime)
+                             .listener(new FeedEngine.Listener() {
+                               @Override
+                               public void onAppModeChanged(@NonNull AppMode appMode) {
+                               }
+
+                               @Override
+                               public void onDataEvent(@NonNull DataEvent dataEvent) {
+                                 if (dataEvent.isGetMoreType()) pagesShown++;
+                                 if (dataEvent.isRefreshType()) refreshes++;
+                               }
+                             })
+                             .build();
+}
+
+/**
+ * A failed search leaves the previous results on screen, so pull to refresh until the results for
+ * this query arrive.
+ */
+private void refreshUntilShown(@NonNull String query) {
+  List<MediaItem> shown = engine.getUnderlyingData();
+  while (shown.isEmpty() || !query.equals(SimulatedGiphyApi.queryOf(shown.get(0)))) {
+    engine.requestRefreshData(null);
+    virtualTime.runUntilIdle();
+    shown = engine.getUnderlyingData();
+  }
+}
+
+/**
+ * Scroll down until the feed has at least <code>items</code> items, recording how long each page
+ * took to arrive.
+ *
+ * @return The number of items that were added.
+ */
+private int scrollTo(int items) {
+  int before = engine.getUnderlyingData().size();
+  while (engine.getUnderlyingData().size() < items) {
+    int pages = pagesShown;
+    long requestedAtMs = virtualTime.currentTimeMillis();
+    engine.requestMoreData();
+    engine.requestMoreData();
+    while (pagesShown == pages) {
+      // Nothing in flight means the request failed, so scrolling asks for the page again.
+      if (virtualTime.pendingTasks() == 0) engine.requestMoreData();
+      virtualTime.advance(STEP_MS);
+    }
+    pageTimes.add(virtualTime.currentTimeMillis() - requestedAtMs);
+  }
+  return engine.getUnderlyingData().size() - before;
+}
+
+private double callsPerItem(int items) {
+  return giphyApi.requests / (double) items;
+}
+
+private long percentile(double fraction) {
+  int index = (int) Math.ceil(fraction * pageTimes.size()) - 1;
+  return pageTimes.get(Math.max(0, index));
+}
+
+private void assertOnlyResultsFor(@NonNull String query) {
+  List<MediaItem> shown = engine.getUnderlyingData();
+  assertTrue(!shown.isEmpty());
+  for (MediaItem item : shown) {
+    assertEquals(query, SimulatedGiphyApi.queryOf(item));
+  }
+}
+
+private static void assertNoDuplicateRows(@NonNull List<MediaItem> shown) {
+  HashSet<String> ids = new HashSet<>();
+  for (MediaItem item : shown) {
+    assertTrue("duplicate row: " + item.getId(), ids.add(item.getId()));
+  }
+}
+
+private static long usedHeapAfterGc() {
+  Runtime runtime = Runtime.getRuntime();
+  long used = Long.MAX_VALUE;
+  for (int i = 0; i < 4; i++) {
+    System.gc();
+    try {
+      Thread.sleep(20);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+  }
+  return used;
+}
+}
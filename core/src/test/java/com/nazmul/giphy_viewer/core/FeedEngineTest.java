@@ -0,0 +1,624 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FeedEngineTest {
+
+@Rule
+public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+private FakeGiphyApi    giphyApi;
+private FakeScheduler   scheduler;
+private MediaIndex      mediaIndex;
+private FavoritesStore  favoritesStore;
+private List<DataEvent> dataEvents;
+private long            now;
+private FeedEngine      engine;
+
+@Before
+public void setUp() {
+  giphyApi = new FakeGiphyApi();
+  scheduler = new FakeScheduler();
+  mediaIndex = new MediaIndex(100);
+  favoritesStore = new FavoritesStore();
+  dataEvents = new ArrayList<>();
+  now = 1_000;
+  engine = buildEngine(null);
+}
+
+private FeedEngine buildEngine(@Nullable RateLimiter rateLimiter) {
+  return FeedEngine.Builder.builder()
+                           .giphyApi(giphyApi)
+                           .mediaIndex(mediaIndex)
+                           .favoritesStore(favoritesStore)
+                           .scheduler(scheduler)
+                           .clock(() -> now)
+                           .rateLimiter(rateLimiter)
+                           .listener(new FeedEngine.Listener() {
+                             @Override
+                             public void onAppModeChanged(@NonNull AppMode appMode) {
+                             }
+
+                             @Override
+                             public void onDataEvent(@NonNull DataEvent dataEvent) {
+                               dataEvents.add(dataEvent);
+                             }
+                           })
+                           .build();
+}
+
+@Test
+public void refreshThenMore_appendsOnlyNewItems() {
+  engine.requestRefreshData(null);
+  giphyApi.last().respond(page(0, 25));
+  assertEquals(25, engine.getUnderlyingData().size());
+  assertTrue(lastEvent().isRefreshType());
+
+  engine.requestMoreData();
+  FakeGiphyApi.Request more = giphyApi.last();
+  assertEquals(25, more.offset);
+  // The feed shifted by 5 items, so the first 5 of this page were already shown.
+  more.respond(page(20, 25));
+
+  assertEquals(45, engine.getUnderlyingData().size());
+  assertTrue(lastEvent().isGetMoreType());
+  assertEquals(20, lastEvent().getNewSize());
+}
+
+@Test
+public void switchingBack_restoresCachedFeedWithoutRequest() {
+  engine.requestRefreshData(null);
+  giphyApi.last().respond(page(0, 25));
+  engine.setPosition(12);
+
+  engine.submitSearch("cats");
+  giphyApi.last().respond(page(100, 25));
+  int requests = giphyApi.requests.size();
+
+  engine.setTrendingMode();
+
+  assertEquals(requests, giphyApi.requests.size());
+  assertEquals("id0", engine.getUnderlyingData().get(0).getId());
+  assertEquals(12, lastEvent().getPosition());
+}
+
+@Test
+public void switchingBack_revalidatesStaleFeed() {
+  engine.requestRefreshData(null);
+  giphyApi.last().respond(page(0, 25));
+  engine.submitSearch("cats");
+
+  now += FeedEngine.REVALIDATE_AFTER_MS + 1;
+  engine.setTrendingMode();
+
+  assertTrue(giphyApi.last().isTrending());
+  assertTrue(giphyApi.last().revalidate);
+}
+
+@Test
+public void typing_runsOneSearchAfterDebounce() {
+  engine.onSearchQueryChanged("c");
+  engine.onSearchQueryChanged("ca");
+  engine.onSearchQueryChanged("cat");
+  engine.onSearchQueryChanged("cats");
+  assertTrue(giphyApi.requests.isEmpty());
+
+  scheduler.runPending();
+
+  assertEquals(1, giphyApi.requests.size());
+  assertEquals("cats", giphyApi.last().query);
+}
+
+@Test
+public void typing_doesNotEvictCachedFeeds_andCachesTheSearchItSettlesOn() {
+  engine.requestRefreshData(null);
+  giphyApi.last().respond(page(0, 25));
+
+  // More searches than the cache holds, each one run by the debounce.
+  String query = "c";
+  for (int i = 0; i < FeedEngine.MAX_CACHED_FEEDS + 2; i++) {
+    query += "a";
+    engine.onSearchQueryChanged(query);
+    scheduler.runPending();
+    giphyApi.last().respond(page(100 * (i + 1), 25));
+  }
+  assertEquals(query, engine.getAppMode().getSearchQuery());
+  int requests = giphyApi.requests.size();
+
+  engine.setTrendingMode();
+  assertEquals(requests, giphyApi.requests.size());
+  assertEquals("id0", engine.getUnderlyingData().get(0).getId());
+
+  engine.submitSearch(query);
+  assertEquals(requests, giphyApi.requests.size());
+  engine.submitSearch("caa");
+  assertEquals(requests + 1, giphyApi.requests.size());
+}
+
+@Test
+public void modeSwitch_dropsResultsOfPreviousMode() {
+  engine.requestRefreshData(null);
+  FakeGiphyApi.Request trending = giphyApi.last();
+
+  engine.submitSearch("cats");
+
+  assertTrue(trending.cancelled);
+  assertFalse(giphyApi.last().cancelled);
+  assertNull(trending.respond(page(0, 25)));
+  assertTrue(engine.getUnderlyingData().isEmpty());
+}
+
+@Test
+public void refreshStorm_makesOneRequestAndCompletesEveryCaller() {
+  final int[] completed = {0};
+  for (int i = 0; i < 10; i++) {
+    engine.requestRefreshData(() -> completed[0]++);
+  }
+  assertEquals(1, giphyApi.requests.size());
+
+  giphyApi.last().respond(page(0, 25));
+  assertEquals(10, completed[0]);
+
+  engine.requestRefreshData(null);
+  assertEquals(2, giphyApi.requests.size());
+}
+
+@Test
+public void refreshThenSwitchMode_completesTheCancelledRefresh() {
+  final int[] completed = {0};
+  engine.requestRefreshData(() -> completed[0]++);
+  FakeGiphyApi.Request trending = giphyApi.last();
+
+  engine.setFavoritesMode();
+  assertEquals(1, completed[0]);
+
+  // The cancelled refresh doesn't complete it again if its response arrives anyway.
+  trending.respond(page(0, 25));
+  assertEquals(1, completed[0]);
+}
+
+@Test
+public void requestMoreTwice_loadsThePageOnce() {
+  engine.requestRefreshData(null);
+  giphyApi.last().respond(page(0, 25));
+
+  engine.requestMoreData();
+  engine.requestMoreData();
+  assertEquals(2, giphyApi.requests.size());
+
+  giphyApi.last().respond(page(25, 25));
+  engine.requestMoreData();
+  assertEquals(3, giphyApi.requests.size());
+  assertEquals(50, giphyApi.last().offset);
+}
+
+@Test
+public void restore_fromDisk_showsSavedPositionWithoutRequests() throws IOException {
+  engine.requestRefreshData(null);
+  giphyApi.last().respond(page(0, 25));
+  engine.requestMoreData();
+  giphyApi.last().respond(page(25, 25));
+  engine.setPosition(40);
+  File file = new File(temporaryFolder.getRoot(), "snapshot.bin");
+  engine.snapshot().save(file);
+
+  setUp();
+  FeedSnapshot snapshot = FeedSnapshot.load(file);
+  engine.restore(withoutItems(snapshot), snapshot);
+
+  assertTrue(giphyApi.requests.isEmpty());
+  assertEquals(50, engine.getUnderlyingData().size());
+  assertEquals(40, lastEvent().getPosition());
+  engine.requestMoreData();
+  assertEquals(50, giphyApi.last().offset);
+}
+
+@Test
+public void restore_withoutDisk_fetchesPagesUpToPositionInParallel() {
+  AppMode cats = AppMode.Builder.builder().mode(AppMode.Mode.Search).query("cats").build();
+  engine.restore(new FeedSnapshot(cats, 500, 60, 0, new ArrayList<>()), null);
+
+  // Pages 0-75 cover position 60 (plus a page for duplicates); the rest aren't needed yet.
+  assertEquals(4, giphyApi.requests.size());
+  assertTrue(engine.isRestoring());
+  List<FakeGiphyApi.Request> requests = new ArrayList<>(giphyApi.requests);
+  requests.get(3).respond(page(75, 25));
+  requests.get(1).respond(page(25, 25));
+  requests.get(0).respond(page(0, 25));
+  assertTrue(dataEvents.isEmpty());
+  requests.get(2).respond(page(50, 25));
+
+  assertFalse(engine.isRestoring());
+  assertEquals(cats, engine.getAppMode());
+  assertEquals(100, engine.getUnderlyingData().size());
+  assertEquals("id99", engine.getUnderlyingData().get(99).getId());
+  assertEquals(60, lastEvent().getPosition());
+}
+
+@Test
+public void requestMorePages_publishesOneEventInOffsetOrder() {
+  engine.requestRefreshData(null);
+  giphyApi.last().respond(page(0, 25));
+  dataEvents.clear();
+
+  engine.requestMoreData(3);
+  List<FakeGiphyApi.Request> requests = new ArrayList<>(giphyApi.requests.subList(1, 4));
+  assertEquals(50, requests.get(1).offset);
+  requests.get(2).respond(page(75, 25));
+  requests.get(0).respond(page(25, 25));
+  assertTrue(dataEvents.isEmpty());
+  requests.get(1).respond(page(50, 25));
+
+  assertEquals(1, dataEvents.size());
+  assertEquals(75, lastEvent().getNewSize());
+  for (int i = 0; i < 100; i++) {
+    assertEquals("id" + i, engine.getUnderlyingData().get(i).getId());
+  }
+}
+
+@Test
+public void requestMorePages_waitsForTheRateLimiter() {
+  engine = buildEngine(new RateLimiter(2, 100, () -> now));
+  engine.requestRefreshData(null);
+  giphyApi.last().respond(page(0, 25));
+  // The refresh was charged a permit, which is back by now.
+  now += 100;
+
+  engine.requestMoreData(4);
+  assertEquals(1 + 2, giphyApi.requests.size());
+  now += 100;
+  scheduler.runPending();
+  assertEquals(1 + 3, giphyApi.requests.size());
+  now += 100;
+  scheduler.runPending();
+  assertEquals(1 + 4, giphyApi.requests.size());
+}
+
+@Test
+public void singleRequests_areChargedToTheRateLimiter() {
+  RateLimiter rateLimiter = new RateLimiter(2, 100, () -> now);
+  engine = buildEngine(rateLimiter);
+  engine.requestRefreshData(null);
+  giphyApi.last().respond(page(0, 25));
+  engine.requestMoreData();
+  giphyApi.last().respond(page(25, 25));
+  engine.requestMoreData();
+
+  // Three requests were made, so one permit is owed, and the next is two refills away.
+  assertEquals(3, giphyApi.requests.size());
+  assertFalse(rateLimiter.tryAcquire());
+  assertEquals(200, rateLimiter.getDelayMs());
+}
+
+@Test
+public void favorites_useIndexedItemsAndLookUpTheRestInOneRequest() {
+  for (int i = 0; i < 5; i++) {
+    favoritesStore.add("id" + i);
+  }
+  mediaIndex.addAll(page(3, 1).getItems(), now);
+  mediaIndex.addAll(page(1, 1).getItems(), now);
+
+  engine.setFavoritesMode();
+
+  assertEquals(1, giphyApi.requests.size());
+  assertEquals(list("id4", "id2", "id0"), giphyApi.last().ids);
+  // "id2" was deleted, so the server leaves it out.
+  giphyApi.last().respond(new MediaPage(list(page(0, 1), page(4, 1)), 2, 0));
+
+  assertEquals(list("id4", "id3", "id1", "id0"), idsOf(engine.getUnderlyingData()));
+  assertEquals(5, engine.getNextOffset());
+}
+
+@Test
+public void favorites_areRequestedAtIdOffsets() {
+  for (int i = 0; i < 150; i++) {
+    favoritesStore.add("id" + i);
+  }
+  engine.setFavoritesMode();
+  List<String> firstIds = giphyApi.last().ids;
+  assertEquals(FeedEngine.FAVORITES_PAGE_SIZE, firstIds.size());
+  // One of the favorites was deleted.
+  giphyApi.last().respond(page(51, 99));
+  assertEquals(99, engine.getUnderlyingData().size());
+
+  engine.requestMoreData();
+
+  assertEquals(50, giphyApi.last().ids.size());
+  assertEquals("id49", giphyApi.last().ids.get(0));
+}
+
+@Test
+public void favorites_showIndexedItemsWithoutRequests() {
+  favoritesStore.add("id0");
+  mediaIndex.addAll(page(0, 1).getItems(), now);
+
+  engine.setFavoritesMode();
+  assertTrue(engine.getUnderlyingData().isEmpty());
+  scheduler.runPending();
+
+  assertTrue(giphyApi.requests.isEmpty());
+  assertEquals(list("id0"), idsOf(engine.getUnderlyingData()));
+}
+
+@Test
+public void favorites_endAfterTheLastId() {
+  for (int i = 0; i < 3; i++) {
+    favoritesStore.add("id" + i);
+  }
+  engine.setFavoritesMode();
+  assertTrue(engine.hasMore());
+  giphyApi.last().respond(page(0, 3));
+  int events = dataEvents.size();
+
+  assertFalse(engine.hasMore());
+  engine.requestMoreData();
+  engine.requestMoreData(3);
+  scheduler.runPending();
+
+  assertEquals(1, giphyApi.requests.size());
+  assertEquals(events, dataEvents.size());
+  // Other feeds don't end.
+  engine.setTrendingMode();
+  giphyApi.last().respond(page(0, 25));
+  assertTrue(engine.hasMore());
+}
+
+@Test
+public void favoritesChanged_dropsTheCachedFeed() {
+  favoritesStore.add("id0");
+  engine.setFavoritesMode();
+  giphyApi.last().respond(page(0, 1));
+  engine.setTrendingMode();
+  giphyApi.last().respond(page(0, 25));
+
+  favoritesStore.add("id1");
+  engine.onFavoritesChanged();
+  engine.setFavoritesMode();
+
+  assertEquals(list("id1", "id0"), giphyApi.last().ids);
+}
+
+@Test
+public void pause_cancelsLoads_andResumeMakesThemAgain() {
+  engine.requestRefreshData(null);
+  giphyApi.last().respond(page(0, 25));
+  engine.requestMoreData();
+  FakeGiphyApi.Request more = giphyApi.last();
+
+  engine.pause();
+  assertTrue(more.cancelled);
+  int requests = giphyApi.requests.size();
+  engine.requestMoreData();
+  assertEquals(requests, giphyApi.requests.size());
+
+  engine.resume();
+  assertEquals(requests + 1, giphyApi.requests.size());
+  assertEquals(25, giphyApi.last().offset);
+  giphyApi.last().respond(page(25, 25));
+  assertEquals(50, engine.getUnderlyingData().size());
+}
+
+@Test
+public void refreshWhilePaused_isMadeOnResume_andCompletesItsCaller() {
+  final int[] completed = {0};
+  engine.pause();
+  engine.requestRefreshData(() -> completed[0]++);
+  assertTrue(giphyApi.requests.isEmpty());
+
+  engine.resume();
+  assertEquals(1, giphyApi.requests.size());
+  giphyApi.last().respond(page(0, 25));
+  assertEquals(1, completed[0]);
+  assertEquals(25, engine.getUnderlyingData().size());
+}
+
+// Helpers.
+
+private static List<String> list(String... ids) {
+  return Arrays.asList(ids);
+}
+
+private static List<MediaItem> list(MediaPage... pages) {
+  List<MediaItem> items = new ArrayList<>();
+  for (MediaPage page : pages) {
+    items.addAll(page.getItems());
+  }
+  return items;
+}
+
+private static List<String> idsOf(List<MediaItem> items) {
+  List<String> ids = new ArrayList<>();
+  for (MediaItem item : items) {
+    ids.add(item.getId());
+  }
+  return ids;
+}
+
+private static FeedSnapshot withoutItems(FeedSnapshot snapshot) {
+  return new FeedSnapshot(snapshot.getMode(),
+                          snapshot.getNextOffset(),
+                          snapshot.getPosition(),
+                          0,
+                          new ArrayList<>());
+}
+
+private DataEvent lastEvent() {
+  return dataEvents.get(dataEvents.size() - 1);
+}
+
+private static MediaPage page(int firstId, int count) {
+  List<MediaItem> items = new ArrayList<>();
+  for (int i = firstId; i < firstId + count; i++) {
+    MediaItem.Rendition rendition = new MediaItem.Rendition("https://example.com/" + i, 200, 150);
+    items.add(new MediaItem("id" + i, "Item " + i, "item-" + i, new ArrayList<>(), rendition,
+                            rendition));
+  }
+  return new MediaPage(items, 10_000, firstId);
+}
+
+/**
+ * Records every request, and completes it (synchronously) only when the test says so.
+ */
+private static final class FakeGiphyApi implements GiphyApi {
+
+  final List<Request> requests = new ArrayList<>();
+
+  Request last() {
+    return requests.get(requests.size() - 1);
+  }
+
+  @Override
+  public GiphyTransport.Call makeTrendingRequest(
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler,
+      @Nullable Integer offset) {
+    return makeTrendingRequest(runOnComplete, onResponseHandler, offset, false);
+  }
+
+  @Override
+  public GiphyTransport.Call makeTrendingRequest(
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler,
+      @Nullable Integer offset,
+      boolean revalidate) {
+    return makeSearchRequest(null, runOnComplete, onResponseHandler, offset, revalidate);
+  }
+
+  @Override
+  public GiphyTransport.Call makeSearchRequest(
+      @Nullable String query,
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler,
+      @Nullable Integer offset) {
+    return makeSearchRequest(query, runOnComplete, onResponseHandler, offset, false);
+  }
+
+  @Override
+  public GiphyTransport.Call makeSearchRequest(
+      @Nullable String query,
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler,
+      @Nullable Integer offset,
+      boolean revalidate) {
+    Request request = new Request(
+        query, offset == null ? 0 : offset, revalidate, runOnComplete, onResponseHandler);
+    requests.add(request);
+    return request;
+  }
+
+  @Override
+  public GiphyTransport.Call makeGetByIdsRequest(
+      @NonNull List<String> ids,
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler) {
+    Request request = new Request(null, 0, false, runOnComplete, onResponseHandler);
+    request.ids = ids;
+    requests.add(request);
+    return request;
+  }
+
+  @Override
+  public void setPageObserver(@Nullable PageObserver pageObserver) {
+  }
+
+  @Override
+  public void shutdown() {
+  }
+
+  static final class Request implements GiphyTransport.Call {
+
+    final String              query;
+    final int                 offset;
+    final boolean             revalidate;
+    final Runnable            runOnComplete;
+    final GiphyResultsHandler handler;
+    List<String>              ids;
+    boolean                   cancelled;
+
+    Request(String query,
+            int offset,
+            boolean revalidate,
+            Runnable runOnComplete,
+            GiphyResultsHandler handler) {
+      this.query = query;
+      this.offset = offset;
+      this.revalidate = revalidate;
+      this.runOnComplete = runOnComplete;
+      this.handler = handler;
+    }
+
+    boolean isTrending() {
+      return query == null && ids == null;
+    }
+
+    /**
+     * @return the page if it was delivered, or null if the request was cancelled.
+     */
+    MediaPage respond(MediaPage page) {
+      if (cancelled) return null;
+      handler.onResponse(page);
+      if (runOnComplete != null) runOnComplete.run();
+      return page;
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+  }
+}
+
+private static final class FakeScheduler implements FeedEngine.Scheduler {
+
+  private final List<Runnable> pending = new ArrayList<>();
+
+  @Override
+  public void postDelayed(@NonNull Runnable runnable, long delayMs) {
+    pending.add(runnable);
+  }
+
+  @Override
+  public void cancel(@NonNull Runnable runnable) {
+    pending.remove(runnable);
+  }
+
+  void runPending() {
+    List<Runnable> runnables = new ArrayList<>(pending);
+    pending.clear();
+    for (Runnable runnable : runnables) runnable.run();
+  }
+}
+}
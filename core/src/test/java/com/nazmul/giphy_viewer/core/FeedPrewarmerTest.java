@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FeedPrewarmerTest {
+
+private static final int THUMBNAIL_BYTES = 1_000;
+
+@Test
+public void run_keepsWholePagesThatFitTheBudget() throws InterruptedException {
+  PageServer server = new PageServer();
+  FeedPrewarmer prewarmer = FeedPrewarmer.Builder.builder()
+                                                 .giphyApi(server)
+                                                 .pageCount(4)
+                                                 .byteBudget(60 * THUMBNAIL_BYTES)
+                                                 .clock(() -> 5_000)
+                                                 .build();
+
+  FeedPrewarmer.Result result = prewarmer.run();
+
+  // The third page would go over the budget.
+  assertEquals(3, server.requests);
+  FeedSnapshot snapshot = result.getSnapshot();
+  assertTrue(snapshot.getMode().isTrendingMode());
+  assertEquals(50, snapshot.getItems().size());
+  assertEquals(50, snapshot.getNextOffset());
+  assertEquals(5_000, snapshot.getRefreshedAtMs());
+  assertEquals(50, result.getThumbnails().size());
+  assertEquals(50 * THUMBNAIL_BYTES, result.getThumbnailBytes());
+}
+
+@Test
+public void run_keepsThePagesBeforeOneThatFailed() throws InterruptedException {
+  PageServer server = new PageServer();
+  server.failAtOffset = 25;
+  FeedPrewarmer prewarmer = FeedPrewarmer.Builder.builder().giphyApi(server).build();
+
+  FeedPrewarmer.Result result = prewarmer.run();
+
+  assertEquals(25, result.getSnapshot().getItems().size());
+  assertEquals(25, result.getSnapshot().getNextOffset());
+}
+
+@Test
+public void run_returnsNullWhenOffline() throws InterruptedException {
+  PageServer server = new PageServer();
+  server.failAtOffset = 0;
+
+  assertNull(FeedPrewarmer.Builder.builder().giphyApi(server).build().run());
+}
+
+@Test
+public void cancel_stopsTheRequestInFlight() throws InterruptedException {
+  PageServer server = new PageServer();
+  server.hold = true;
+  FeedPrewarmer prewarmer = FeedPrewarmer.Builder.builder().giphyApi(server).build();
+  AtomicReference<FeedPrewarmer.Result> result = new AtomicReference<>();
+  Thread thread = new Thread(() -> {
+    try {
+      result.set(prewarmer.run());
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+  });
+  thread.start();
+  while (server.requests == 0) Thread.sleep(1);
+
+  prewarmer.cancel();
+  thread.join(5_000);
+
+  assertTrue(server.cancelled);
+  assertNull(result.get());
+}
+
+/**
+ * Serves trending pages of 25 items (ids "id0", "id1", ...) on the caller's thread, unless it's
+ * told to hold on to them.
+ */
+private static final class PageServer implements GiphyApi {
+
+  volatile int     requests;
+  volatile boolean cancelled;
+  int              failAtOffset = -1;
+  boolean          hold;
+
+  @Override
+  public GiphyTransport.Call makeTrendingRequest(
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler,
+      @Nullable Integer offset) {
+    requests++;
+    int pageOffset = offset == null ? 0 : offset;
+    if (!hold) {
+      if (pageOffset == failAtOffset) {
+        onResponseHandler.onError();
+      } else {
+        onResponseHandler.onResponse(page(pageOffset));
+      }
+    }
+    return () -> cancelled = true;
+  }
+
+  @Override
+  public GiphyTransport.Call makeTrendingRequest(
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler,
+      @Nullable Integer offset,
+      boolean revalidate) {
+    return makeTrendingRequest(runOnComplete, onResponseHandler, offset);
+  }
+
+  @Override
+  public GiphyTransport.Call makeSearchRequest(
+      @Nullable String query,
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler,
+      @Nullable Integer offset) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public GiphyTransport.Call makeSearchRequest(
+      @Nullable String query,
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler,
+      @Nullable Integer offset,
+      boolean revalidate) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public GiphyTransport.Call makeGetByIdsRequest(
+      @NonNull List<String> ids,
+      @Nullable Runnable runOnComplete,
+      @NonNull GiphyResultsHandler onResponseHandler) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setPageObserver(@Nullable PageObserver pageObserver) {
+  }
+
+  @Override
+  public void shutdown() {
+  }
+
+  private static MediaPage page(int offset) {
+    List<MediaItem> items = new ArrayList<>();
+    for (int i = offset; i < offset + 25; i++) {
+      MediaItem.Rendition grid =
+          new MediaItem.Rendition("https://example.com/" + i, 200, 150, THUMBNAIL_BYTES);
+      items.add(new MediaItem("id" + i, "Item " + i, "item-" + i, new ArrayList<>(), grid, grid));
+    }
+    return new MediaPage(items, 10_000, offset);
+  }
+}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameBudgetTest {
+
+private final List<String> admitted = new ArrayList<>();
+private final List<String> evicted  = new ArrayList<>();
+
+private final FrameBudget<String> budget =
+    new FrameBudget<>(100, new FrameBudget.Callback<String>() {
+      @Override
+      public void onAdmitted(String animation) {
+        admitted.add(animation);
+      }
+
+      @Override
+      public void onEvicted(String animation) {
+        evicted.add(animation);
+      }
+    });
+
+@Test
+public void rebalance_admitsNearestFirst_andSkipsOnesThatDontFit() {
+  budget.put("far", 30, 300);
+  budget.put("near", 50, 0);
+  budget.put("big", 80, 100);
+  budget.put("middle", 40, 200);
+  budget.rebalance();
+
+  // Evicted is the initial state, so only admissions are reported.
+  assertEquals(Arrays.asList("near", "middle"), admitted);
+  assertEquals(Collections.emptyList(), evicted);
+  assertEquals(90, budget.getAdmittedBytes());
+  assertFalse(budget.isAdmitted("big"));
+  assertFalse(budget.isAdmitted("far"));
+}
+
+@Test
+public void rebalance_afterScrolling_evictsTheFarthest_andOnlyReportsChanges() {
+  budget.put("a", 60, 0);
+  budget.put("b", 60, 100);
+  budget.rebalance();
+  assertEquals(Collections.singletonList("a"), admitted);
+
+  // Scrolling brings b into the middle of the viewport, and a moves away.
+  budget.setDistance("a", 200);
+  budget.setDistance("b", 0);
+  budget.rebalance();
+  assertEquals(Arrays.asList("a", "b"), admitted);
+  assertEquals(Collections.singletonList("a"), evicted);
+
+  budget.rebalance();
+  assertEquals(2, admitted.size());
+  assertEquals(1, evicted.size());
+
+  budget.remove("b");
+  assertEquals(0, budget.getAdmittedBytes());
+  budget.rebalance();
+  assertTrue(budget.isAdmitted("a"));
+
+  budget.evictAll();
+  assertEquals(Arrays.asList("a", "a"), evicted);
+  assertEquals(0, budget.getAdmittedBytes());
+}
+}
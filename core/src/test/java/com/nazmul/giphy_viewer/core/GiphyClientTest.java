@@ -0,0 +1,211 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GiphyClientTest {
+
+private ScriptedTransport transport;
+private List<Runnable>    timers;
+private GiphyClient       client;
+private List<String>      results;
+
+@Before
+public void setUp() {
+  transport = new ScriptedTransport();
+  timers = new ArrayList<>();
+  results = new ArrayList<>();
+  client = new GiphyClient(transport, Runnable::run);
+}
+
+@Test
+public void slowRequest_isHedged_andTheFirstAnswerWins() throws IOException {
+  client.setHedging(hedging(1.0));
+  request();
+  transport.last().respond();
+  assertTrue(timers.isEmpty());
+
+  request();
+  runTimers();
+  assertEquals(3, transport.exchanges.size());
+  ScriptedTransport.Exchange primary = transport.exchanges.get(1);
+  ScriptedTransport.Exchange hedge = transport.exchanges.get(2);
+
+  hedge.respond();
+  assertTrue(primary.cancelled);
+  assertFalse(hedge.cancelled);
+  assertEquals(2, results.size());
+}
+
+@Test
+public void cancelledLoser_isRecordedAsALatency_butNotAsAnError() throws IOException {
+  Metrics metrics = new Metrics();
+  client.setMetrics(metrics);
+  Hedging hedging = hedging(1.0);
+  client.setHedging(hedging);
+  request();
+  transport.last().respond();
+
+  request();
+  runTimers();
+  transport.exchanges.get(2).respond();
+  // The transport fails the request that was cancelled.
+  transport.exchanges.get(1).fail();
+
+  assertEquals(3, hedging.getLatencyMs(Hedging.Kind.FirstPage).getCount());
+  assertEquals(0, metrics.counter(GiphyClient.METRIC_ERRORS).get());
+  assertEquals(list("response", "response"), results);
+}
+
+@Test
+public void failure_waitsForTheOtherRequest() throws IOException {
+  client.setHedging(hedging(1.0));
+  request();
+  transport.last().respond();
+
+  request();
+  runTimers();
+  transport.exchanges.get(1).fail();
+  assertEquals(1, results.size());
+  transport.exchanges.get(2).respond();
+
+  assertEquals(list("response", "response"), results);
+}
+
+@Test
+public void hedges_areCappedToAFractionOfRequests() throws IOException {
+  client.setHedging(hedging(0.05));
+  request();
+  transport.last().respond();
+
+  for (int i = 0; i < 40; i++) {
+    request();
+    runTimers();
+  }
+
+  // 41 requests allow for 2 hedges.
+  assertEquals(41 + 2, transport.exchanges.size());
+}
+
+// Helpers.
+
+private Hedging hedging(double maxExtraTraffic) {
+  return Hedging.Builder.builder()
+                        .scheduler(new FeedEngine.Scheduler() {
+                          @Override
+                          public void postDelayed(@NonNull Runnable runnable, long delayMs) {
+                            timers.add(runnable);
+                          }
+
+                          @Override
+                          public void cancel(@NonNull Runnable runnable) {
+                            timers.remove(runnable);
+                          }
+                        })
+                        .maxExtraTraffic(maxExtraTraffic)
+                        .minSamples(1)
+                        .build();
+}
+
+private void runTimers() {
+  List<Runnable> pending = new ArrayList<>(timers);
+  timers.clear();
+  for (Runnable timer : pending) timer.run();
+}
+
+private void request() {
+  client.makeTrendingRequest(null, new GiphyApi.GiphyResultsHandler() {
+    @Override
+    public void onResponse(MediaPage page) {
+      results.add("response");
+    }
+
+    @Override
+    public void onError() {
+      results.add("error");
+    }
+  }, 0);
+}
+
+private static List<String> list(String... items) {
+  List<String> list = new ArrayList<>();
+  Collections.addAll(list, items);
+  return list;
+}
+
+/**
+ * Records every request, and completes it (on the test's thread) only when the test says so.
+ */
+private static final class ScriptedTransport implements GiphyTransport {
+
+  final List<Exchange> exchanges = new ArrayList<>();
+
+  Exchange last() {
+    return exchanges.get(exchanges.size() - 1);
+  }
+
+  @NonNull
+  @Override
+  public Call get(@NonNull Request request, @NonNull Callback callback) {
+    Exchange exchange = new Exchange(callback);
+    exchanges.add(exchange);
+    return exchange;
+  }
+
+  @Override
+  public void shutdown() {
+  }
+
+  static final class Exchange implements Call {
+
+    final Callback callback;
+    boolean        cancelled;
+
+    Exchange(Callback callback) {
+      this.callback = callback;
+    }
+
+    void respond() throws IOException {
+      callback.onResponse(new Response(
+          200,
+          Collections.emptyMap(),
+          getClass().getResourceAsStream("/giphy/trending_page.json")));
+    }
+
+    void fail() {
+      callback.onFailure(new IOException("timeout"));
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+  }
+}
+}
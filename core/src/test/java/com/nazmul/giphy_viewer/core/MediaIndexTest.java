@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MediaIndexTest {
+
+@Rule
+public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+@Test
+public void search_matchesTitleSlugAndTagPrefixes() {
+  MediaIndex index = new MediaIndex(100);
+  index.addAll(
+      Arrays.asList(
+          item("a1", "Happy Cat GIF by Originals", "happy-cat-originals-a1"),
+          item("b2", "Dancing Dog GIF", "dancing-dog-b2", "puppy"),
+          item("c3", "Cake Party GIF", "cake-party-c3")),
+      1_000);
+
+  // All three were seen at the same time, so the order of the matches is unspecified.
+  assertEquals(new HashSet<>(ids("a1", "c3")), new HashSet<>(idsOf(index.search("ca", 10))));
+  assertEquals(ids("a1"), idsOf(index.search("happy cat", 10)));
+  assertEquals(ids("b2"), idsOf(index.search("pup", 10)));
+  assertTrue(index.search("gif", 10).isEmpty());
+  assertTrue(index.search("b2", 10).isEmpty());
+}
+
+@Test
+public void search_returnsMostRecentlySeenFirst() {
+  MediaIndex index = new MediaIndex(100);
+  index.addAll(Collections.singletonList(item("old", "Cat One", "cat-one-old")), 1_000);
+  index.addAll(Collections.singletonList(item("new", "Cat Two", "cat-two-new")), 2_000);
+
+  assertEquals(ids("new", "old"), idsOf(index.search("cat", 10)));
+  assertEquals(ids("new"), idsOf(index.search("cat", 1)));
+}
+
+@Test
+public void add_evictsLeastRecentlySeen() {
+  MediaIndex index = new MediaIndex(2);
+  index.addAll(Collections.singletonList(item("a", "Cat A", "cat-a")), 1_000);
+  index.addAll(Collections.singletonList(item("b", "Cat B", "cat-b")), 2_000);
+  // Seeing "a" again makes "b" the least recently seen.
+  index.addAll(Collections.singletonList(item("a", "Cat A", "cat-a")), 3_000);
+  index.addAll(Collections.singletonList(item("c", "Dog C", "dog-c")), 4_000);
+
+  assertEquals(2, index.size());
+  assertEquals(ids("a"), idsOf(index.search("cat", 10)));
+  assertEquals(ids("c"), idsOf(index.search("dog", 10)));
+}
+
+@Test
+public void saveAndLoad_roundTrips() throws IOException {
+  File file = new File(temporaryFolder.getRoot(), "index.bin");
+  MediaIndex index = new MediaIndex(100);
+  index.addAll(
+      Arrays.asList(
+          item("a1", "Happy Cat", "happy-cat-a1", "kitten"),
+          item("b2", "Dancing Dog", "dancing-dog-b2")),
+      1_000);
+  index.save(file);
+  assertEquals(0, index.getUnsavedChanges());
+
+  MediaIndex loaded = new MediaIndex(100);
+  loaded.load(file);
+
+  assertEquals(2, loaded.size());
+  assertEquals(ids("a1"), idsOf(loaded.search("kit", 10)));
+  MediaItem item = loaded.search("dog", 10).get(0);
+  assertEquals("https://media.giphy.com/b2/200w_d.gif", item.getGrid().getUrl());
+  assertEquals(150, item.getGrid().getHeight());
+}
+
+// Helpers.
+
+private static MediaItem item(String id, String title, String slug, String... tags) {
+  return new MediaItem(
+      id,
+      title,
+      slug,
+      Arrays.asList(tags),
+      new MediaItem.Rendition("https://media.giphy.com/" + id + "/200w_d.gif", 200, 150),
+      new MediaItem.Rendition("https://media.giphy.com/" + id + "/giphy.gif", 480, 360));
+}
+
+private static List<String> ids(String... ids) {
+  return Arrays.asList(ids);
+}
+
+private static List<String> idsOf(List<MediaItem> items) {
+  String[] ids = new String[items.size()];
+  for (int i = 0; i < items.size(); i++) {
+    ids[i] = items.get(i).getId();
+  }
+  return Arrays.asList(ids);
+}
+}
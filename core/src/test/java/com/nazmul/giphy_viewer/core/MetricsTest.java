@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+@Test
+public void histogram_percentilesAreWithinOneBucket() {
+  Metrics.Histogram histogram = new Metrics().histogram("latency");
+  for (int value = 1; value <= 10_000; value++) {
+    histogram.record(value);
+  }
+
+  assertEquals(10_000, histogram.getCount());
+  assertEquals(10_000, histogram.getMax());
+  assertEquals(5_000.5, histogram.getMean(), 0.001);
+  assertWithin(5_000, histogram.getValueAtPercentile(50));
+  assertWithin(9_900, histogram.getValueAtPercentile(99));
+  assertEquals(10_000, histogram.getValueAtPercentile(100));
+}
+
+@Test
+public void histogram_bucketsCoverEveryValue() {
+  long[] values = {0, 1, 15, 16, 17, 31, 32, 1_000, 123_456_789, Long.MAX_VALUE};
+  for (long value : values) {
+    int bucket = Metrics.Histogram.bucketOf(value);
+    assertTrue(value + " is above its bucket", value <= Metrics.Histogram.highestValueIn(bucket));
+    if (bucket > 0) {
+      assertTrue(value + " is below its bucket",
+                 value > Metrics.Histogram.highestValueIn(bucket - 1));
+    }
+  }
+}
+
+@Test
+public void writeJson_includesEveryMetric() throws IOException {
+  Metrics metrics = new Metrics();
+  metrics.counter("requests").add(3);
+  metrics.histogram("latency").record(120);
+  metrics.gauge("items", () -> 42);
+
+  StringWriter writer = new StringWriter();
+  metrics.writeJson(writer, 1_000);
+  JsonObject json = new JsonParser().parse(writer.toString()).getAsJsonObject();
+
+  assertEquals(3, json.getAsJsonObject("counters").get("requests").getAsLong());
+  assertEquals(42, json.getAsJsonObject("gauges").get("items").getAsLong());
+  JsonObject latency = json.getAsJsonObject("histograms").getAsJsonObject("latency");
+  assertEquals(1, latency.get("count").getAsLong());
+  assertEquals(120, latency.get("max").getAsLong());
+}
+
+private static void assertWithin(long expected, long actual) {
+  // 16 buckets per power of two.
+  assertTrue("expected ~" + expected + " got " + actual,
+             actual >= expected && actual <= expected + expected / 16);
+}
+}
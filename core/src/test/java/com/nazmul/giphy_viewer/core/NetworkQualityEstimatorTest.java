@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.nazmul.giphy_viewer.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.nazmul.giphy_viewer.core.NetworkQualityEstimator.Tier;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkQualityEstimatorTest {
+
+@Test
+public void tier_isUnknownUntilEnoughSamples_thenTheLowerOfBandwidthAndLatency() {
+  NetworkQualityEstimator estimator = new NetworkQualityEstimator();
+  // 100 KB in 100 ms is 8000 kbps.
+  estimator.recordTransfer(100_000, 100);
+  estimator.recordLatency(500);
+  assertEquals(Tier.Unknown, estimator.getTier());
+
+  // Transfers this small are ignored.
+  estimator.recordTransfer(1_000, 1_000);
+  assertEquals(Tier.Unknown, estimator.getTier());
+
+  estimator.recordLatency(500);
+  assertEquals(8_000, estimator.getBandwidthKbps());
+  assertEquals(500, estimator.getLatencyMs());
+  assertEquals(Tier.Moderate, estimator.getTier());
+}
+
+@Test
+public void tier_changesOnlyAfterConfirmingSamples() {
+  NetworkQualityEstimator estimator = new NetworkQualityEstimator();
+  List<Tier> changes = new ArrayList<>();
+  estimator.setListener(changes::add);
+  for (int i = 0; i < NetworkQualityEstimator.MIN_SAMPLES; i++) {
+    estimator.recordTransfer(100_000, 100);
+  }
+  assertEquals(Tier.Excellent, estimator.getTier());
+
+  // One slow transfer isn't enough to move the average down a tier.
+  estimator.recordTransfer(100_000, 10_000);
+  assertEquals(Tier.Excellent, estimator.getTier());
+
+  // A run of them is, but only once the new tier has been seen enough times in a row.
+  int samples = 0;
+  while (estimator.getTier() == Tier.Excellent) {
+    estimator.recordTransfer(20_000, 10_000);
+    samples++;
+  }
+  assertTrue(samples >= NetworkQualityEstimator.CONFIRM_SAMPLES);
+  assertEquals(Arrays.asList(Tier.Excellent, estimator.getTier()), changes);
+}
+}
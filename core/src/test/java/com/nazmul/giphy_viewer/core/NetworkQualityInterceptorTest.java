@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class NetworkQualityInterceptorTest {
+
+private static final int BODY_BYTES = 100_000;
+private static final int WAIT_MS    = 50;
+
+@Test
+public void transfer_countsOnlyTheTimeSpentWaitingForTheNetwork() throws Exception {
+  NetworkQualityEstimator estimator = new NetworkQualityEstimator();
+  Response response = new NetworkQualityInterceptor(estimator).intercept(new FakeChain());
+
+  BufferedSource body = response.body().source();
+  Buffer sink = new Buffer();
+  while (body.read(sink, 8 * 1024) != -1) {
+    // Decoding what's been read, which isn't network time.
+    Thread.sleep(WAIT_MS);
+  }
+  response.close();
+
+  // 100 KB that took 50 ms to arrive is 16000 kbps. If the 12 pauses between reads were counted
+  // too, it would be under 1300 kbps.
+  long kbps = estimator.getBandwidthKbps();
+  assertTrue("bandwidth was " + kbps, kbps > 8_000);
+}
+
+/**
+ * Responds right away with a body that takes {@link #WAIT_MS} to start arriving.
+ */
+private static final class FakeChain implements Interceptor.Chain {
+
+  private final Request request = new Request.Builder().url("https://api.giphy.com/").build();
+
+  @Override
+  public Request request() {
+    return request;
+  }
+
+  @Override
+  public Response proceed(Request request) {
+    ForwardingSource slowSource = new ForwardingSource(new Buffer().write(new byte[BODY_BYTES])) {
+      private boolean waited;
+
+      @Override
+      public long read(Buffer sink, long byteCount) throws IOException {
+        if (!waited) {
+          waited = true;
+          try {
+            Thread.sleep(WAIT_MS);
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+        }
+        return super.read(sink, byteCount);
+      }
+    };
+    return new Response.Builder()
+        .request(request)
+        .protocol(Protocol.HTTP_2)
+        .code(200)
+        .message("OK")
+        .body(ResponseBody.create(null, BODY_BYTES, Okio.buffer(slowSource)))
+        .build();
+  }
+
+  @Override
+  public Connection connection() {
+    return null;
+  }
+
+  @Override
+  public Call call() {
+    return null;
+  }
+
+  @Override
+  public int connectTimeoutMillis() {
+    return 0;
+  }
+
+  @Override
+  public Interceptor.Chain withConnectTimeout(int timeout, TimeUnit unit) {
+    return this;
+  }
+
+  @Override
+  public int readTimeoutMillis() {
+    return 0;
+  }
+
+  @Override
+  public Interceptor.Chain withReadTimeout(int timeout, TimeUnit unit) {
+    return this;
+  }
+
+  @Override
+  public int writeTimeoutMillis() {
+    return 0;
+  }
+
+  @Override
+  public Interceptor.Chain withWriteTimeout(int timeout, TimeUnit unit) {
+    return this;
+  }
+}
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * A {@link GiphyApi} that serves generated pages on a {@link VirtualTime} loop, for load testing
+ * the {@link FeedEngine} without a network.
+ *
+ * <ol>
+ * <li>Every item id has the form <code>query:n</code> (<code>trending:n</code> for trending), so a
+ * test can tell which request an item on screen came from.
+ * <li>Pages can overlap the page before them (like trending does when it shifts while you scroll),
+ * fail, and take a random amount of time, all driven by a seeded Random.
+ * <li>Counts every request, and how each one ended.
+ * </ol>
+ */
+final class SimulatedGiphyApi implements GiphyApi {
+
+public static final class Builder {
+
+  private long   latencyMs     = 150;
+  private long   jitterMs      = 50;
+  private double errorRate     = 0;
+  private double duplicateRate = 0;
+  private long   seed          = 42;
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public Builder latencyMs(long latencyMs) {
+    this.latencyMs = latencyMs;
+    return this;
+  }
+
+  public Builder jitterMs(long jitterMs) {
+    this.jitterMs = jitterMs;
+    return this;
+  }
+
+  /**
+   * @param errorRate The fraction of requests (0..1) that fail.
+   */
+  public Builder errorRate(double errorRate) {
+    this.errorRate = errorRate;
+    return this;
+  }
+
+  /**
+   * @param duplicateRate The fraction of items (0..1) in a page that repeat an item from the page
+   *                      before it.
+   */
+  public Builder duplicateRate(double duplicateRate) {
+    this.duplicateRate = duplicateRate;
+    return this;
+  }
+
+  public Builder seed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  public SimulatedGiphyApi build(@NonNull VirtualTime virtualTime) {
+    return new SimulatedGiphyApi(this, virtualTime);
+  }
+}
+
+public static final int PAGE_SIZE = GiphyClient.MAX_ITEMS_PER_REQUEST;
+
+private final long        latencyMs;
+private final long        jitterMs;
+private final double      errorRate;
+private final double      duplicateRate;
+private final Random      random;
+private final VirtualTime virtualTime;
+
+int requests;
+int delivered;
+int failed;
+int cancelled;
+
+private SimulatedGiphyApi(@NonNull Builder builder, @NonNull VirtualTime virtualTime) {
+  this.latencyMs = builder.latencyMs;
+  this.jitterMs = builder.jitterMs;
+  this.errorRate = builder.errorRate;
+  this.duplicateRate = builder.duplicateRate;
+  this.random = new Random(builder.seed);
+  this.virtualTime = virtualTime;
+}
+
+/**
+ * The longest that any request takes.
+ */
+long getMaxLatencyMs() {
+  return latencyMs + jitterMs;
+}
+
+static String queryOf(@NonNull MediaItem item) {
+  return item.getId().substring(0, item.getId().lastIndexOf(':'));
+}
+
+@Override
+public GiphyTransport.Call makeTrendingRequest(
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    @Nullable Integer offset) {
+  return makeTrendingRequest(runOnComplete, onResponseHandler, offset, false);
+}
+
+@Override
+public GiphyTransport.Call makeTrendingRequest(
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    @Nullable Integer offset,
+    boolean revalidate) {
+  return enqueue("trending", runOnComplete, onResponseHandler, offset);
+}
+
+@Override
+public GiphyTransport.Call makeSearchRequest(
+    @Nullable String query,
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    @Nullable Integer offset) {
+  return makeSearchRequest(query, runOnComplete, onResponseHandler, offset, false);
+}
+
+@Override
+public GiphyTransport.Call makeSearchRequest(
+    @Nullable String query,
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    @Nullable Integer offset,
+    boolean revalidate) {
+  return enqueue(String.valueOf(query), runOnComplete, onResponseHandler, offset);
+}
+
+/**
+ * Ids in the <code>query:n</code> form come back as the item that the query's page would have
+ * had at that offset. Any other id is treated as deleted.
+ */
+@Override
+public GiphyTransport.Call makeGetByIdsRequest(
+    @NonNull List<String> ids,
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler) {
+  final List<String> requestedIds = new ArrayList<>(ids);
+  return enqueue(runOnComplete, onResponseHandler, () -> {
+    List<MediaItem> items = new ArrayList<>(requestedIds.size());
+    for (String id : requestedIds) {
+      int separator = id.lastIndexOf(':');
+      if (separator < 0) continue;
+      try {
+        items.add(item(id.substring(0, separator), Integer.parseInt(id.substring(separator + 1))));
+      } catch (NumberFormatException e) {
+        // Not an id that this API made up.
+      }
+    }
+    return new MediaPage(items, items.size(), 0);
+  });
+}
+
+@Override
+public void setPageObserver(@Nullable PageObserver pageObserver) {
+}
+
+@Override
+public void shutdown() {
+}
+
+private GiphyTransport.Call enqueue(
+    @NonNull String query,
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    @Nullable Integer offset) {
+  final int pageOffset = offset == null ? 0 : offset;
+  return enqueue(runOnComplete, onResponseHandler, () -> page(query, pageOffset));
+}
+
+private GiphyTransport.Call enqueue(
+    @Nullable Runnable runOnComplete,
+    @NonNull GiphyResultsHandler onResponseHandler,
+    @NonNull Supplier<MediaPage> response) {
+  requests++;
+  final boolean fail = random.nextDouble() < errorRate;
+  final long delayMs = latencyMs + (jitterMs == 0 ? 0 : (long) (random.nextDouble() * jitterMs));
+
+  final boolean[] done = {false};
+  final Runnable completion = () -> {
+    done[0] = true;
+    if (fail) {
+      failed++;
+      onResponseHandler.onError();
+    } else {
+      delivered++;
+      onResponseHandler.onResponse(response.get());
+    }
+    if (runOnComplete != null) runOnComplete.run();
+  };
+  virtualTime.postDelayed(completion, delayMs);
+  return () -> {
+    if (done[0]) return;
+    done[0] = true;
+    cancelled++;
+    virtualTime.cancel(completion);
+  };
+}
+
+private MediaPage page(@NonNull String query, int offset) {
+  List<MediaItem> items = new ArrayList<>(PAGE_SIZE);
+  for (int i = 0; i < PAGE_SIZE; i++) {
+    int n = offset + i;
+    if (offset > 0 && random.nextDouble() < duplicateRate) {
+      // Repeat one of the items from the page before.
+      n = offset - 1 - random.nextInt(PAGE_SIZE);
+    }
+    items.add(item(query, n));
+  }
+  return new MediaPage(items, Integer.MAX_VALUE, offset);
+}
+
+/**
+ * An item with strings about as long as the ones in real responses.
+ */
+private static MediaItem item(@NonNull String query, int n) {
+  String id = query + ":" + n;
+  String url = "https://media2.giphy.com/media/" + Integer.toHexString(id.hashCode()) + n;
+  return new MediaItem(
+      id,
+      "Animated " + query + " GIF number " + n,
+      query + "-animated-" + n,
+      Collections.singletonList(query),
+      new MediaItem.Rendition(url + "/200w_d.gif", 200, 150),
+      new MediaItem.Rendition(url + "/giphy.gif", 480, 360));
+}
+}
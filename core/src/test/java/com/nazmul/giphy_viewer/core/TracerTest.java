@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TracerTest {
+
+@Test
+public void disabledLevels_recordNothing() {
+  Tracer tracer = new Tracer(Tracer.Level.Info, 64);
+  tracer.instant(Tracer.Level.Verbose, "list.bind", 1);
+  assertEquals(0, tracer.getRecordedCount());
+
+  tracer.setLevel(Tracer.Level.Off);
+  tracer.instant(Tracer.Level.Info, "feed.publish", 1);
+  assertEquals(0, tracer.getRecordedCount());
+}
+
+@Test
+public void disabledTracing_doesNotAllocate() {
+  com.sun.management.ThreadMXBean threadMXBean =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  Tracer tracer = new Tracer(Tracer.Level.Off, 64);
+  // Warm up, so that class loading and JIT compilation aren't measured.
+  for (int i = 0; i < 100_000; i++) {
+    traceEverything(tracer, i);
+  }
+
+  long threadId = Thread.currentThread().getId();
+  long before = threadMXBean.getThreadAllocatedBytes(threadId);
+  for (int i = 0; i < 100_000; i++) {
+    traceEverything(tracer, i);
+  }
+  long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+  // getThreadAllocatedBytes itself allocates a little.
+  assertTrue("allocated: " + allocated, allocated < 1_024);
+}
+
+@Test
+public void ringBuffer_keepsTheNewestEvents() throws IOException {
+  Tracer tracer = new Tracer(Tracer.Level.Info, 4);
+  for (int i = 0; i < 10; i++) {
+    tracer.instant(Tracer.Level.Info, "feed.publish", i);
+  }
+
+  JsonArray events = export(tracer);
+  assertEquals(4, events.size());
+  assertEquals(6, argOf(events.get(0).getAsJsonObject()));
+  assertEquals(9, argOf(events.get(3).getAsJsonObject()));
+}
+
+@Test
+public void chromeTrace_hasPhasesIdsAndCategories() throws IOException {
+  Tracer tracer = new Tracer(Tracer.Level.Verbose, 16);
+  long id = tracer.newAsyncId();
+  tracer.asyncBegin(Tracer.Level.Info, "api.request", id);
+  tracer.begin(Tracer.Level.Verbose, "list.bind", 3);
+  tracer.end(Tracer.Level.Verbose, "list.bind");
+  tracer.asyncEnd(Tracer.Level.Info, "api.request", id, 200);
+
+  JsonArray events = export(tracer);
+  assertEquals(4, events.size());
+  JsonObject begin = events.get(0).getAsJsonObject();
+  assertEquals("b", begin.get("ph").getAsString());
+  assertEquals("api", begin.get("cat").getAsString());
+  assertEquals(id, begin.get("id").getAsLong());
+  assertEquals("B", events.get(1).getAsJsonObject().get("ph").getAsString());
+  assertEquals("E", events.get(2).getAsJsonObject().get("ph").getAsString());
+  JsonObject end = events.get(3).getAsJsonObject();
+  assertEquals("e", end.get("ph").getAsString());
+  assertEquals(200, argOf(end));
+  assertTrue(end.get("ts").getAsDouble() >= begin.get("ts").getAsDouble());
+}
+
+// Helpers.
+
+private static void traceEverything(Tracer tracer, int i) {
+  long id = tracer.newAsyncId();
+  tracer.asyncBegin(Tracer.Level.Info, "api.request", id);
+  tracer.begin(Tracer.Level.Verbose, "list.bind", i);
+  tracer.end(Tracer.Level.Verbose, "list.bind");
+  tracer.instant(Tracer.Level.Info, "feed.publish", i);
+  tracer.asyncEnd(Tracer.Level.Info, "api.request", id, 200);
+}
+
+private static long argOf(JsonObject event) {
+  return event.getAsJsonObject("args").get("value").getAsLong();
+}
+
+private static JsonArray export(Tracer tracer) throws IOException {
+  StringWriter writer = new StringWriter();
+  tracer.writeChromeTrace(writer);
+  return new JsonParser().parse(writer.toString())
+                         .getAsJsonObject()
+                         .getAsJsonArray("traceEvents");
+}
+}
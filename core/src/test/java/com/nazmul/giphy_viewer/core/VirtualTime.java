@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Nazmul Idris. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.nazmul.giphy_viewer.core;
+
+import androidx.annotation.NonNull;
+
+import java.util.PriorityQueue;
+
+/**
+ * A single threaded event loop with a virtual clock, standing in for the main thread's Handler.
+ * Simulated network latency passes instantly, so a session that would take hours runs in
+ * seconds, and every run with the same seed is identical.
+ */
+final class VirtualTime implements FeedEngine.Scheduler, FeedEngine.Clock {
+
+private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+
+private long nowMs = 1_000;
+private long sequence;
+
+@Override
+public long currentTimeMillis() {
+  return nowMs;
+}
+
+@Override
+public void postDelayed(@NonNull Runnable runnable, long delayMs) {
+  tasks.add(new Task(nowMs + delayMs, sequence++, runnable));
+}
+
+@Override
+public void cancel(@NonNull Runnable runnable) {
+  tasks.removeIf(task -> task.runnable == runnable);
+}
+
+/**
+ * Run tasks in time order until there are none left.
+ */
+void runUntilIdle() {
+  Task task;
+  while ((task = tasks.poll()) != null) {
+    nowMs = Math.max(nowMs, task.atMs);
+    task.runnable.run();
+  }
+}
+
+/**
+ * Run the tasks that are due in the next <code>ms</code>, then move the clock to the end of it.
+ */
+void advance(long ms) {
+  long untilMs = nowMs + ms;
+  while (!tasks.isEmpty() && tasks.peek().atMs <= untilMs) {
+    Task task = tasks.poll();
+    nowMs = Math.max(nowMs, task.atMs);
+    task.runnable.run();
+  }
+  nowMs = untilMs;
+}
+
+int pendingTasks() {
+  return tasks.size();
+}
+
+private static final class Task implements Comparable<Task> {
+
+  final long     atMs;
+  final long     sequence;
+  final Runnable runnable;
+
+  Task(long atMs, long sequence, Runnable runnable) {
+    this.atMs = atMs;
+    this.sequence = sequence;
+    this.runnable = runnable;
+  }
+
+  @Override
+  public int compareTo(Task other) {
+    if (atMs != other.atMs) return Long.compare(atMs, other.atMs);
+    return Long.compare(sequence, other.sequence);
+  }
+}
+}